@@ -0,0 +1,21 @@
+#!/bin/bash
+# Compares two result files written by run.sh, e.g. scripts/compare.sh results/abc123.json results/def456.json
+# Prints one line per benchmark, parameter set and thread count with the relative change of the score.
+set -e
+
+if [ $# -ne 2 ]; then
+  echo "Usage: $0 <baseline.json> <candidate.json>" >&2
+  exit 1
+fi
+
+jq -r -n --slurpfile base "$1" --slurpfile head "$2" '
+  def key: "\(.benchmark | sub("^com\\.hsm\\.benchmarks\\."; "")) \(.params // {} | to_entries | map("\(.key)=\(.value)") | join(",")) t=\(.threads)";
+  ($base[0] | map({key: key, value: .primaryMetric}) | from_entries) as $b
+  | $head[0][]
+  | key as $k
+  | select($b[$k] != null)
+  | ($b[$k].score) as $old
+  | (.primaryMetric.score) as $new
+  | [$k, ($old * 100 | round / 100), ($new * 100 | round / 100), .primaryMetric.scoreUnit,
+     (if $old == 0 then "n/a" else "\((($new - $old) / $old * 1000 | round) / 10)%" end)]
+  | @tsv'
@@ -0,0 +1,38 @@
+#!/bin/bash
+# Initializes a private SoftHSM token for the benchmarks, with the same EC key pair and certificate
+# (alias EcKeyPair256_01) the Docker image provisions. Writes everything below target/softhsm.
+set -e
+
+PIN=${PIN:-12345}
+MODULE=${MODULE:-/usr/lib/softhsm/libsofthsm2.so}
+BASE_DIR=$(cd "$(dirname "$0")/.." && pwd)/target/softhsm
+
+rm -rf "$BASE_DIR"
+mkdir -p "$BASE_DIR/tokens"
+cat > "$BASE_DIR/softhsm2.conf" <<CONF
+directories.tokendir = $BASE_DIR/tokens
+objectstore.backend = file
+log.level = ERROR
+CONF
+export SOFTHSM2_CONF=$BASE_DIR/softhsm2.conf
+
+SLOT_OUTPUT=$(softhsm2-util --init-token --free --label "Bench-Token" --so-pin "$PIN" --pin "$PIN")
+SLOT=$(echo "$SLOT_OUTPUT" | grep -oP '(?<=slot )\d+')
+
+cat > "$BASE_DIR/pkcs11.cfg" <<CONF
+name = SoftHSM2
+library = $MODULE
+slot = $SLOT
+CONF
+
+pkcs11-tool --module "$MODULE" --slot "$SLOT" --login --pin "$PIN" \
+  --keypairgen --key-type EC:prime256v1 --id 01 --label "EcKeyPair256_01" >/dev/null
+
+openssl ecparam -name prime256v1 -genkey -noout -out "$BASE_DIR/ec-key.pem"
+openssl req -new -x509 -key "$BASE_DIR/ec-key.pem" -out "$BASE_DIR/ec-cert.pem" -days 365 -subj "/CN=EcKeyPair256_01"
+openssl x509 -in "$BASE_DIR/ec-cert.pem" -outform DER -out "$BASE_DIR/ec-cert.der"
+pkcs11-tool --module "$MODULE" --slot "$SLOT" --login --pin "$PIN" \
+  --write-object "$BASE_DIR/ec-cert.der" --type cert --id 01 --label "EcKeyPair256_01" >/dev/null
+
+echo "Token ready in slot $SLOT"
+echo "export SOFTHSM2_CONF=$SOFTHSM2_CONF"
@@ -0,0 +1,28 @@
+#!/bin/bash
+# Runs the benchmark suites once per thread count and merges the JMH results into
+# results/<commit>.json. Extra arguments are passed to JMH, e.g. a benchmark regex:
+#   THREADS="1 8" scripts/run.sh SignatureBenchmark
+set -e
+
+BENCH_DIR=$(cd "$(dirname "$0")/.." && pwd)
+THREADS=${THREADS:-"1 4 8"}
+COMMIT=$(git -C "$BENCH_DIR" rev-parse --short HEAD)
+RESULTS_DIR=$BENCH_DIR/results
+export SOFTHSM2_CONF=${SOFTHSM2_CONF:-$BENCH_DIR/target/softhsm/softhsm2.conf}
+
+# System properties and module exports must reach the forked benchmark JVMs, not only this one
+JVM_ARGS="--add-exports jdk.crypto.cryptoki/sun.security.pkcs11.wrapper=ALL-UNNAMED \
+ -Dpkcs11.config.filepath=${PKCS11_CONFIG:-$BENCH_DIR/target/softhsm/pkcs11.cfg} \
+ -Dpkcs11.pin=${PIN:-12345}"
+
+mkdir -p "$RESULTS_DIR"
+PARTS=()
+for t in $THREADS; do
+  PART=$RESULTS_DIR/$COMMIT-t$t.json
+  java -jar "$BENCH_DIR/target/benchmarks.jar" -t "$t" -rf json -rff "$PART" -jvmArgsAppend "$JVM_ARGS" "$@"
+  PARTS+=("$PART")
+done
+
+jq -s 'add' "${PARTS[@]}" > "$RESULTS_DIR/$COMMIT.json"
+rm -f "${PARTS[@]}"
+echo "Results written to $RESULTS_DIR/$COMMIT.json"
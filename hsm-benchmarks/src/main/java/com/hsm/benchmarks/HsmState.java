@@ -0,0 +1,78 @@
+package com.hsm.benchmarks;
+
+import com.hsm.simulator.config.Pkcs11Config;
+import com.hsm.simulator.util.CryptoConstants;
+import com.hsm.simulator.util.CryptoEnginePool;
+import com.hsm.simulator.util.CryptoUtils;
+import com.hsm.simulator.util.KeyAliasCache;
+import com.hsm.simulator.util.Pkcs11NativeEngine;
+import com.hsm.simulator.util.Pkcs11ToolHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.security.AuthProvider;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Map;
+
+/**
+ * The beans of hsm-wrapper that sit on the crypto hot paths, wired against a local SoftHSM token, plus
+ * the same session keys {@code Pkcs11CryptoServiceImpl} generates at startup.
+ * <p>
+ * Token settings are read from system properties with the same names as in application.properties
+ * ({@code pkcs11.config.filepath}, {@code pkcs11.pin}, ...); scripts/init-token.sh prepares a token and
+ * prints them. {@code hsm.bench.key-alias} names the key pair used by the alias benchmarks.
+ */
+@State(Scope.Benchmark)
+public class HsmState {
+
+    public AnnotationConfigApplicationContext context;
+    public AuthProvider provider;
+    public CryptoUtils cryptoUtils;
+    public KeyPair rsaKeyPair;
+    public SecretKey aesKey;
+    public SecretKey hmacKey;
+    public String keyAlias;
+    public String keyAliasSignatureAlgorithm;
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addLast(new MapPropertySource("benchmarkDefaults", Map.of(
+                "pkcs11.config.filepath", "target/softhsm/pkcs11.cfg",
+                "pkcs11.pin", "12345",
+                "pkcs11.tool.path", "/usr/bin/pkcs11-tool",
+                "pkcs11.module.path", "/usr/lib/softhsm/libsofthsm2.so")));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(Pkcs11Config.class, CryptoEnginePool.class, KeyAliasCache.class, CryptoUtils.class,
+                Pkcs11NativeEngine.class, Pkcs11ToolHandler.class);
+        context.refresh();
+
+        provider = context.getBean(Pkcs11Config.class).getPkcs11Provider();
+        cryptoUtils = context.getBean(CryptoUtils.class);
+        keyAlias = System.getProperty("hsm.bench.key-alias", "EcKeyPair256_01");
+        keyAliasSignatureAlgorithm = System.getProperty("hsm.bench.key-alias.algorithm", "SHA256withECDSA");
+
+        KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance(CryptoConstants.RSA_ALGORITHM, provider);
+        keyPairGen.initialize(2048);
+        rsaKeyPair = keyPairGen.generateKeyPair();
+        hmacKey = KeyGenerator.getInstance(CryptoConstants.HMAC_ALGORITHM, provider).generateKey();
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(CryptoConstants.AES_ALGORITHM, provider);
+        keyGenerator.init(128);
+        aesKey = keyGenerator.generateKey();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,49 @@
+package com.hsm.benchmarks;
+
+import com.hsm.simulator.util.CryptoConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random generation the way /random/{byteCount} does it, and self-signed certificate generation
+ * for a key pair on the token.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeyMaterialBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"16", "256", "4096"})
+        public int payloadSize;
+    }
+
+    @Benchmark
+    public byte[] random(HsmState hsm, Input input) throws GeneralSecurityException {
+        SecureRandom secureRandom = SecureRandom.getInstance(CryptoConstants.PKCS11_PROVIDER, hsm.provider);
+        byte[] randomBytes = new byte[input.payloadSize];
+        secureRandom.nextBytes(randomBytes);
+        return randomBytes;
+    }
+
+    @Benchmark
+    public X509Certificate selfSignedCertificate(HsmState hsm) throws Exception {
+        return hsm.cryptoUtils.generateSelfSignedCertificate(hsm.rsaKeyPair, CryptoConstants.RSA_ALGORITHM);
+    }
+}
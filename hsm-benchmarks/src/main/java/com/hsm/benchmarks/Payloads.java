@@ -0,0 +1,23 @@
+package com.hsm.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+final class Payloads {
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private Payloads() {
+    }
+
+    /**
+     * A random ASCII message, so that its UTF-8 encoding is exactly {@code size} bytes.
+     */
+    static String message(int size) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+}
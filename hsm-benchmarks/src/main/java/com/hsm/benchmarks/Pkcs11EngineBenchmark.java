@@ -0,0 +1,63 @@
+package com.hsm.benchmarks;
+
+import com.hsm.simulator.config.Pkcs11Config;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import com.hsm.simulator.util.Pkcs11Engine;
+import com.hsm.simulator.util.Pkcs11NativeEngine;
+import com.hsm.simulator.util.Pkcs11ToolHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token management latency of the in-process engine against forking pkcs11-tool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Pkcs11EngineBenchmark {
+
+    @Param({"native", "tool"})
+    public String engineMode;
+
+    private Pkcs11Engine engine;
+    private String slot;
+    private String pin;
+
+    @Setup(Level.Trial)
+    public void setUp(HsmState hsm) {
+        engine = "native".equals(engineMode)
+                ? hsm.context.getBean(Pkcs11NativeEngine.class)
+                : hsm.context.getBean(Pkcs11ToolHandler.class);
+        Pkcs11Config pkcs11Config = hsm.context.getBean(Pkcs11Config.class);
+        slot = pkcs11Config.getSlotOrSlotId();
+        pin = pkcs11Config.getHsmPin();
+    }
+
+    @Benchmark
+    public List<Pkcs11SlotInfo> listSlots() throws IOException, InterruptedException {
+        return engine.getListOfSlots(slot, pin);
+    }
+
+    @Benchmark
+    public List<Pkcs11ObjectInfo> listObjects() throws IOException, InterruptedException {
+        return engine.getObjectsListInSlot(Integer.parseUnsignedInt(slot), pin);
+    }
+}
@@ -0,0 +1,52 @@
+package com.hsm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RsaCipherBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        // RSA-2048 with PKCS#1 v1.5 padding takes at most 245 bytes
+        @Param({"16", "128", "245"})
+        public int payloadSize;
+
+        public String plainText;
+        public byte[] cipherText;
+
+        @Setup(Level.Trial)
+        public void setUp(HsmState hsm) throws GeneralSecurityException {
+            plainText = Payloads.message(payloadSize);
+            cipherText = Base64.getDecoder().decode(hsm.cryptoUtils.encryptWithRsa(hsm.rsaKeyPair, plainText, hsm.provider));
+        }
+    }
+
+    @Benchmark
+    public String encrypt(HsmState hsm, Input input) throws GeneralSecurityException {
+        return hsm.cryptoUtils.encryptWithRsa(hsm.rsaKeyPair, input.plainText, hsm.provider);
+    }
+
+    @Benchmark
+    public String decrypt(HsmState hsm, Input input) throws GeneralSecurityException {
+        return hsm.cryptoUtils.decryptWithRsa(hsm.rsaKeyPair, input.cipherText, hsm.provider);
+    }
+}
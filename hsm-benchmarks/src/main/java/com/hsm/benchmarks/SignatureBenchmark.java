@@ -0,0 +1,105 @@
+package com.hsm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HMAC, CMAC and RSA sign/verify with the startup session keys, and signing/verifying by key alias.
+ * The {@code *Raw} variants take and return bytes, as the /api/v1/raw endpoints do, so the gap to their
+ * String counterparts is the UTF-8/Base64 encoding cost.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SignatureBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"16", "1024", "16384"})
+        public int payloadSize;
+
+        public String message;
+        public byte[] messageBytes;
+        public byte[] hmac;
+        public byte[] cmac;
+        public byte[] rsaSignature;
+        public String aliasSignature;
+
+        @Setup(Level.Trial)
+        public void setUp(HsmState hsm) {
+            message = Payloads.message(payloadSize);
+            messageBytes = message.getBytes(StandardCharsets.UTF_8);
+            hmac = Base64.getDecoder().decode(hsm.cryptoUtils.signMessageWithHmac(message, hsm.hmacKey, hsm.provider));
+            cmac = Base64.getDecoder().decode(hsm.cryptoUtils.signMessageWithCmac(message, hsm.aesKey, hsm.provider));
+            rsaSignature = Base64.getDecoder().decode(hsm.cryptoUtils.signMessageWithRsa(message, hsm.rsaKeyPair, hsm.provider));
+            aliasSignature = hsm.cryptoUtils.signMessageWithGivenKeyAlias(message, hsm.keyAlias, hsm.keyAliasSignatureAlgorithm, hsm.provider);
+        }
+    }
+
+    @Benchmark
+    public String hmacSign(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.signMessageWithHmac(input.message, hsm.hmacKey, hsm.provider);
+    }
+
+    @Benchmark
+    public byte[] hmacSignRaw(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.signBytesWithHmac(input.messageBytes, hsm.hmacKey, hsm.provider);
+    }
+
+    @Benchmark
+    public boolean hmacVerify(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.verifyMessageWithHmac(input.message, input.hmac, hsm.hmacKey, hsm.provider);
+    }
+
+    @Benchmark
+    public String cmacSign(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.signMessageWithCmac(input.message, hsm.aesKey, hsm.provider);
+    }
+
+    @Benchmark
+    public boolean cmacVerify(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.verifyMessageWithCmac(input.message, input.cmac, hsm.aesKey, hsm.provider);
+    }
+
+    @Benchmark
+    public String rsaSign(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.signMessageWithRsa(input.message, hsm.rsaKeyPair, hsm.provider);
+    }
+
+    @Benchmark
+    public boolean rsaVerify(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.verifyMessageWithRsa(input.message, input.rsaSignature, hsm.rsaKeyPair, hsm.provider);
+    }
+
+    @Benchmark
+    public String aliasSign(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.signMessageWithGivenKeyAlias(input.message, hsm.keyAlias, hsm.keyAliasSignatureAlgorithm, hsm.provider);
+    }
+
+    @Benchmark
+    public byte[] aliasSignRaw(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.signBytesWithGivenKeyAlias(input.messageBytes, hsm.keyAlias, hsm.keyAliasSignatureAlgorithm, hsm.provider);
+    }
+
+    @Benchmark
+    public String aliasVerify(HsmState hsm, Input input) {
+        return hsm.cryptoUtils.verifyMessageWithGivenKeyAlias(input.message, input.aliasSignature, hsm.keyAlias,
+                hsm.keyAliasSignatureAlgorithm, hsm.provider);
+    }
+}
@@ -7,6 +7,8 @@ const api = axios.create({
 
 export const getSlots = () => api.get('/slots');
 export const getKeys = (slotId: number) => api.get(`/slots/${slotId}/keys`);
+export const getObjects = (slotId: number, params: { type?: string; labelPrefix?: string; id?: string; usage?: string; cursor?: string; limit?: number }) =>
+    api.get(`/slots/${slotId}/objects`, { params });
 export const generateKey = (vendorId: string) => api.post(`/keys/generate`, { vendorId });
 export const signData = (keyId: string, payload: any) => api.post(`/data/sign/${keyId}`, payload);
 export const verifySignature = (keyId: string, payload: any, signData: any) => api.post(`/data/verify/${keyId}`, payload, signData);
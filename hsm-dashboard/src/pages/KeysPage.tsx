@@ -1,14 +1,19 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useCallback } from "react";
 import axios from "axios";
 import {
+    Box,
+    Button,
     Table,
     TableBody,
     TableCell,
     TableHead,
     TableRow,
+    TextField,
     Typography,
 } from "@mui/material";
 
+const PAGE_SIZE = 50;
+
 interface Key {
     id: number;
     label: string;
@@ -35,52 +40,80 @@ interface Slot {
     initialized: boolean;
 }
 
+interface SlotPage {
+    keys: Key[];
+    nextCursor?: string;
+    total: number;
+}
+
 const KeysPage = () => {
     const [slots, setSlots] = useState<Slot[]>([]);
-    const [keysBySlot, setKeysBySlot] = useState<{ [slotIndex: number]: Key[] }>({});
-
-    useEffect(() => {
-        axios.get("/api/v1/slots").then((res) => {
-            const slots: Slot[] = res.data.data;
-            setSlots(slots);
+    const [keysBySlot, setKeysBySlot] = useState<{ [slotIndex: number]: SlotPage }>({});
+    const [labelPrefix, setLabelPrefix] = useState("");
+    const [filter, setFilter] = useState("");
 
-            const allKeysPromises = slots.map((slot) => {
-                const slotIndex = slot.slotDecimal;
-                return axios
-                    .get(`/api/v1/slots/${slotIndex}/keys`)
-                    .then((response) => ({
-                        slotIndex: slot.slotIndex,
-                        keys: response.data.data.map((key: Key) => ({
-                            ...key,
-                            slotIndex: slot.slotIndex,
-                            slotHex: slot.slotHex,
-                        })),
-                    }))
-                    .catch(() => ({
-                        slotIndex: slot.slotIndex,
-                        keys: [],
-                    }));
+    // Fetches one page of a slot's objects; with a cursor it is appended to the keys already shown
+    const loadPage = useCallback((slot: Slot, cursor?: string) => {
+        return axios
+            .get(`/api/v1/slots/${slot.slotDecimal}/objects`, {
+                params: { limit: PAGE_SIZE, cursor, labelPrefix: filter || undefined },
+            })
+            .then((response) => {
+                const page = response.data.data;
+                const keys: Key[] = page.items.map((key: Key) => ({
+                    ...key,
+                    slotIndex: slot.slotIndex,
+                    slotHex: slot.slotHex,
+                }));
+                setKeysBySlot((current) => ({
+                    ...current,
+                    [slot.slotIndex]: {
+                        keys: cursor ? [...(current[slot.slotIndex]?.keys || []), ...keys] : keys,
+                        nextCursor: page.nextCursor,
+                        total: page.total,
+                    },
+                }));
+            })
+            .catch(() => {
+                if (!cursor) {
+                    setKeysBySlot((current) => ({ ...current, [slot.slotIndex]: { keys: [], total: 0 } }));
+                }
             });
+    }, [filter]);
 
-            Promise.all(allKeysPromises).then((results) => {
-                const grouped: { [slotIndex: number]: Key[] } = {};
-                results.forEach(({ slotIndex, keys }) => {
-                    grouped[slotIndex] = keys;
-                });
-                setKeysBySlot(grouped);
-            });
+    useEffect(() => {
+        axios.get("/api/v1/slots").then((res) => {
+            setSlots(res.data.data);
         });
     }, []);
 
+    useEffect(() => {
+        slots.forEach((slot) => loadPage(slot));
+    }, [slots, loadPage]);
+
     return (
         <div>
+            <Box display="flex" gap={1} mb={2}>
+                <TextField
+                    size="small"
+                    label="Label prefix"
+                    value={labelPrefix}
+                    onChange={(e) => setLabelPrefix(e.target.value)}
+                    onKeyDown={(e) => e.key === "Enter" && setFilter(labelPrefix)}
+                />
+                <Button variant="outlined" onClick={() => setFilter(labelPrefix)}>
+                    Filter
+                </Button>
+            </Box>
             {slots.map((slot) => {
-                const slotKeys = keysBySlot[slot.slotIndex] || [];
+                const slotPage = keysBySlot[slot.slotIndex];
+                const slotKeys = slotPage?.keys || [];
 
                 return (
                     <div key={slot.slotIndex}>
                         <Typography variant="h6" gutterBottom>
                             Keys in Slot {slot.slotIndex} ({parseInt(slot.slotHex, 16)})
+                            {slotPage ? ` — ${slotKeys.length} of ${slotPage.total}` : ""}
                         </Typography>
                         <Table>
                             <TableHead>
@@ -96,7 +129,7 @@ const KeysPage = () => {
                             <TableBody>
                                 {slotKeys.length > 0 ? (
                                     slotKeys.map((key) => (
-                                        <TableRow key={key.id}>
+                                        <TableRow key={`${key.type}-${key.id}-${key.label}`}>
                                             <TableCell>{key.id}</TableCell>
                                             <TableCell>{key.label || "No Label"}</TableCell>
                                             <TableCell>{key.type}</TableCell>
@@ -114,6 +147,11 @@ const KeysPage = () => {
                                 )}
                             </TableBody>
                         </Table>
+                        {slotPage?.nextCursor && (
+                            <Box my={1}>
+                                <Button onClick={() => loadPage(slot, slotPage.nextCursor)}>Load more</Button>
+                            </Box>
+                        )}
                     </div>
                 );
             })}
@@ -0,0 +1,25 @@
+#!/bin/bash
+# Compares two summaries written by the load generator, e.g.
+#   scripts/compare.sh results/abc123/summary.json results/def456/summary.json
+# Prints one line per operation with throughput and p50/p99 latency (ms) before and after, and the change.
+set -e
+
+if [ $# -ne 2 ]; then
+  echo "Usage: $0 <baseline summary.json> <candidate summary.json>" >&2
+  exit 1
+fi
+
+jq -r -n --slurpfile base "$1" --slurpfile head "$2" '
+  def change($old; $new): if $old == 0 then "n/a" else "\((($new - $old) / $old * 1000 | round) / 10)%" end;
+  def ms: . / 10 | round / 100;
+  ["operation", "ops/sec", "", "", "p50 ms", "", "", "p99 ms", "", ""],
+  ($head[0].operations | to_entries[]
+   | .key as $k
+   | select($base[0].operations[$k] != null)
+   | $base[0].operations[$k] as $b
+   | .value as $h
+   | [$k,
+      $b.throughput, $h.throughput, change($b.throughput; $h.throughput),
+      ($b.latencyMicros.p50 | ms), ($h.latencyMicros.p50 | ms), change($b.latencyMicros.p50; $h.latencyMicros.p50),
+      ($b.latencyMicros.p99 | ms), ($h.latencyMicros.p99 | ms), change($b.latencyMicros.p99; $h.latencyMicros.p99)])
+  | @tsv'
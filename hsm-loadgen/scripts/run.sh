@@ -0,0 +1,11 @@
+#!/bin/bash
+# Runs the load generator against a running simulator (default http://localhost:8080, e.g. `make run`)
+# and writes results/<commit>/summary.json plus one .hgrm latency distribution per operation.
+# Arguments are passed on, e.g.:
+#   scripts/run.sh --model=open --rate=500 --mix=encrypt=50,sign/RSA=50
+set -e
+
+LOADGEN_DIR=$(cd "$(dirname "$0")/.." && pwd)
+LABEL=${LABEL:-$(git -C "$LOADGEN_DIR" rev-parse --short HEAD)}
+
+java -jar "$LOADGEN_DIR/target/loadgen.jar" --out="$LOADGEN_DIR/results" --label="$LABEL" "$@"
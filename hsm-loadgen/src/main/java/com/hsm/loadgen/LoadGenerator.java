@@ -0,0 +1,180 @@
+package com.hsm.loadgen;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of the {@code /api/v1} endpoints of a running simulator, e.g. the Docker image
+ * on {@code localhost:8080}. See {@link LoadOptions} for the settings and the README for examples.
+ * <p>
+ * In the closed model, {@code concurrency} workers are started one by one over the ramp-up and each
+ * sends its next request when the previous one has completed, optionally paced so that together they
+ * aim for {@code rate}. In the open model, requests are due at {@code rate} per second, reached linearly
+ * over the ramp-up, and are sent whether or not earlier ones have completed, with at most
+ * {@code concurrency} in flight. Only requests due after the ramp-up are reported.
+ */
+public final class LoadGenerator {
+
+    private final LoadOptions options;
+    private final Workload workload;
+    private final Results results;
+    private final HttpClient client;
+    private long startNanos;
+    private long measureFromNanos;
+    private long endNanos;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.workload = new Workload(options);
+        this.results = new Results(workload);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(options.timeout)
+                .build();
+    }
+
+    public static void main(String[] args) {
+        if (List.of(args).contains("--help")) {
+            System.out.print(LoadOptions.usage());
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.usage());
+            System.exit(2);
+            return;
+        }
+        try {
+            new LoadGenerator(options).run();
+        } catch (Exception e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        workload.prepare(client);
+        System.out.printf("%s loop against %s: mix %s, concurrency %d, rate %s, ramp-up %s, duration %s%n",
+                options.model.name().toLowerCase(), options.url, options.mix, options.concurrency,
+                options.rate > 0 ? options.rate + "/s" : "unpaced", options.rampUp, options.duration);
+
+        Instant started = Instant.now();
+        startNanos = System.nanoTime();
+        measureFromNanos = startNanos + options.rampUp.toNanos();
+        endNanos = measureFromNanos + options.duration.toNanos();
+        if (options.model == LoadOptions.Model.OPEN) {
+            runOpen();
+        } else {
+            runClosed();
+        }
+        results.write(options, started, options.duration, Path.of(options.out, options.label), System.out);
+    }
+
+    private void runOpen() throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.concurrency);
+        for (long i = 0; ; i++) {
+            long due = startNanos + dueOffsetNanos(i);
+            if (due >= endNanos) {
+                break;
+            }
+            parkUntil(due);
+            // Waiting here delays the send but not the due time, so the wait shows up as latency
+            inFlight.acquire();
+            Workload.Operation operation = workload.next();
+            client.sendAsync(workload.request(operation), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        try {
+                            record(operation, due, response, error);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+        inFlight.acquire(options.concurrency);
+    }
+
+    // Time at which request i is due: the rate rises linearly to options.rate over the ramp-up
+    private long dueOffsetNanos(long i) {
+        double rampSeconds = options.rampUp.toNanos() / 1e9;
+        double rampRequests = options.rate * rampSeconds / 2;
+        double seconds = i < rampRequests
+                ? Math.sqrt(2 * rampSeconds * i / options.rate)
+                : rampSeconds + (i - rampRequests) / options.rate;
+        return (long) (seconds * 1e9);
+    }
+
+    private void runClosed() throws InterruptedException {
+        long intervalNanos = options.rate > 0 ? (long) (options.concurrency * 1e9 / options.rate) : 0;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < options.concurrency; i++) {
+            long startAt = startNanos + options.rampUp.toNanos() * i / options.concurrency;
+            Thread worker = new Thread(() -> work(startAt, intervalNanos), "loadgen-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void work(long startAt, long intervalNanos) {
+        parkUntil(startAt);
+        long due = startAt;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (intervalNanos > 0) {
+                parkUntil(due);
+            } else {
+                due = System.nanoTime();
+            }
+            if (due >= endNanos) {
+                return;
+            }
+            Workload.Operation operation = workload.next();
+            try {
+                record(operation, due, client.send(workload.request(operation), HttpResponse.BodyHandlers.discarding()), null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                record(operation, due, null, e);
+            }
+            due += intervalNanos;
+        }
+    }
+
+    private void record(Workload.Operation operation, long due, HttpResponse<?> response, Throwable error) {
+        long latency = System.nanoTime() - due;
+        if (due < measureFromNanos) {
+            return;
+        }
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            results.failure(operation, cause.getClass().getSimpleName());
+        } else if (response.statusCode() / 100 != 2) {
+            results.failure(operation, "HTTP " + response.statusCode());
+        } else {
+            results.success(operation, latency);
+        }
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.hsm.loadgen;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line settings, given as {@code --name=value}. Every setting has a default, so a bare run
+ * drives a local simulator on port 8080.
+ */
+final class LoadOptions {
+
+    enum Model {
+        /** Requests start on a fixed schedule, whether or not earlier ones have completed. */
+        OPEN,
+        /** A fixed number of workers, each sending its next request once the previous one completed. */
+        CLOSED
+    }
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("url", "http://localhost:8080");
+        DEFAULTS.put("mix", "encrypt=30,decrypt=10,sign=25,verify=15,random=15,keygen=5");
+        DEFAULTS.put("model", "closed");
+        DEFAULTS.put("concurrency", "16");
+        DEFAULTS.put("rate", "0");
+        DEFAULTS.put("ramp-up", "PT10S");
+        DEFAULTS.put("duration", "PT60S");
+        DEFAULTS.put("payload-size", "256");
+        DEFAULTS.put("random-bytes", "32");
+        DEFAULTS.put("timeout", "PT30S");
+        DEFAULTS.put("out", "results");
+        DEFAULTS.put("label", "");
+    }
+
+    final String url;
+    final String mix;
+    final Model model;
+    final int concurrency;
+    final double rate;
+    final Duration rampUp;
+    final Duration duration;
+    final int payloadSize;
+    final int randomBytes;
+    final Duration timeout;
+    final String out;
+    final String label;
+    private final Map<String, String> values;
+
+    private LoadOptions(Map<String, String> values) {
+        this.values = values;
+        this.url = values.get("url").replaceAll("/+$", "");
+        this.mix = values.get("mix");
+        this.model = Model.valueOf(values.get("model").toUpperCase());
+        this.concurrency = Integer.parseInt(values.get("concurrency"));
+        this.rate = Double.parseDouble(values.get("rate"));
+        this.rampUp = Duration.parse(values.get("ramp-up"));
+        this.duration = Duration.parse(values.get("duration"));
+        this.payloadSize = Integer.parseInt(values.get("payload-size"));
+        this.randomBytes = Integer.parseInt(values.get("random-bytes"));
+        this.timeout = Duration.parse(values.get("timeout"));
+        this.out = values.get("out");
+        this.label = values.get("label").isBlank()
+                ? "run-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                : values.get("label");
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("--concurrency must be at least 1");
+        }
+        if (model == Model.OPEN && rate <= 0) {
+            throw new IllegalArgumentException("--model=open needs a target --rate (requests/sec)");
+        }
+        if (duration.isNegative() || duration.isZero() || rampUp.isNegative()) {
+            throw new IllegalArgumentException("--duration must be positive and --ramp-up not negative");
+        }
+    }
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid argument '" + arg + "', expected --name=value");
+            }
+            String name = arg.substring(2, separator);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + ", known options are " + DEFAULTS.keySet());
+            }
+            values.put(name, arg.substring(separator + 1));
+        }
+        return new LoadOptions(values);
+    }
+
+    static String usage() {
+        StringBuilder usage = new StringBuilder("Usage: java -jar loadgen.jar [--name=value ...]\nOptions (default):\n");
+        DEFAULTS.forEach((name, value) -> usage.append("  --").append(name).append(" (").append(value).append(")\n"));
+        return usage.toString();
+    }
+
+    /**
+     * The effective settings, written into the summary so that two runs can be checked for comparability.
+     */
+    Map<String, String> asMap() {
+        Map<String, String> effective = new LinkedHashMap<>(values);
+        effective.put("label", label);
+        return effective;
+    }
+}
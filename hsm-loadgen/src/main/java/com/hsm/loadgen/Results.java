@@ -0,0 +1,114 @@
+package com.hsm.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counts per operation, for the measured part of a run (after ramp-up).
+ * Latencies are in microseconds and taken from the time a request was due, not sent, so queueing in
+ * the generator is not hidden (coordinated omission).
+ */
+final class Results {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final String TOTAL = "total";
+
+    private static final class Stats {
+        private final Histogram latency = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final LongAdder succeeded = new LongAdder();
+        private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    }
+
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+
+    Results(Workload workload) {
+        workload.operations().forEach(operation -> stats.put(operation.key(), new Stats()));
+        stats.put(TOTAL, new Stats());
+    }
+
+    void success(Workload.Operation operation, long latencyNanos) {
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        for (Stats target : new Stats[]{stats.get(operation.key()), stats.get(TOTAL)}) {
+            target.latency.recordValue(micros);
+            target.succeeded.increment();
+        }
+    }
+
+    /**
+     * Counts a failed request under {@code reason}, e.g. {@code HTTP 503} or an exception name.
+     */
+    void failure(Workload.Operation operation, String reason) {
+        stats.get(operation.key()).failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+        stats.get(TOTAL).failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Writes {@code summary.json} plus one {@code .hgrm} percentile distribution per operation into
+     * {@code dir}, and prints a table to {@code console}.
+     */
+    void write(LoadOptions options, Instant started, Duration measured, Path dir, PrintStream console) throws IOException {
+        Files.createDirectories(dir);
+        double seconds = measured.toNanos() / 1e9;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        console.printf("%-18s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "ops/sec", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats stat = entry.getValue();
+            Histogram latency = stat.latency;
+            long failed = stat.failures.values().stream().mapToLong(LongAdder::sum).sum();
+            long succeeded = stat.succeeded.sum();
+
+            Map<String, Object> latencyMicros = new LinkedHashMap<>();
+            latencyMicros.put("mean", Math.round(latency.getMean()));
+            latencyMicros.put("p50", latency.getValueAtPercentile(50));
+            latencyMicros.put("p90", latency.getValueAtPercentile(90));
+            latencyMicros.put("p99", latency.getValueAtPercentile(99));
+            latencyMicros.put("p99.9", latency.getValueAtPercentile(99.9));
+            latencyMicros.put("max", latency.getMaxValue());
+            Map<String, Long> errors = new TreeMap<>();
+            stat.failures.forEach((reason, count) -> errors.put(reason, count.sum()));
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", succeeded + failed);
+            summary.put("errors", failed);
+            summary.put("errorsByReason", errors);
+            summary.put("throughput", Math.round(succeeded / seconds * 10) / 10.0);
+            summary.put("latencyMicros", latencyMicros);
+            operations.put(entry.getKey(), summary);
+
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(dir.resolve(entry.getKey().replace('/', '_') + ".hgrm")))) {
+                // Values are recorded in microseconds, the file is in milliseconds like other HdrHistogram tools
+                latency.outputPercentileDistribution(hgrm, 1000.0);
+            }
+            console.printf("%-18s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey(), succeeded + failed, failed, succeeded / seconds,
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", options.label);
+        report.put("started", started.toString());
+        report.put("measuredSeconds", Math.round(seconds * 1000) / 1000.0);
+        report.put("options", options.asMap());
+        report.put("operations", operations);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(dir.resolve("summary.json").toFile(), report);
+        console.println("Report written to " + dir.toAbsolutePath());
+    }
+}
@@ -0,0 +1,175 @@
+package com.hsm.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The request mix: {@code --mix} entries {@code operation[/ALGORITHM]=weight}, picked at random in
+ * proportion to their weights. Decrypt and verify reuse one cipher text / signature per algorithm,
+ * prepared before the run; keygen and keypair create a new token key per request. For random the
+ * suffix is the byte count, e.g. {@code random/64=10}.
+ */
+final class Workload {
+
+    record Operation(String name, String algorithm, int weight) {
+
+        /** Report key, e.g. {@code sign/HMAC} or {@code random/32}. */
+        String key() {
+            return name + "/" + algorithm;
+        }
+    }
+
+    private static final Map<String, String> DEFAULT_ALGORITHMS = Map.of(
+            "encrypt", "AES",
+            "decrypt", "AES",
+            "sign", "HMAC",
+            "verify", "HMAC",
+            "random", "",
+            "keygen", "AES",
+            "keypair", "EC");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LoadOptions options;
+    private final List<Operation> operations = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final String message;
+    private final Map<String, String> cipherTexts = new HashMap<>();
+    private final Map<String, String> signatures = new HashMap<>();
+
+    Workload(LoadOptions options) {
+        this.options = options;
+        for (String entry : options.mix.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] weighted = entry.trim().split("=");
+            if (weighted.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry '" + entry.trim() + "', expected operation[/ALGORITHM]=weight");
+            }
+            String[] spec = weighted[0].split("/");
+            String name = spec[0].toLowerCase(Locale.ROOT);
+            if (!DEFAULT_ALGORITHMS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown operation '" + name + "', expected one of " + DEFAULT_ALGORITHMS.keySet());
+            }
+            String algorithm = spec.length > 1 ? spec[1].toUpperCase(Locale.ROOT) : DEFAULT_ALGORITHMS.get(name);
+            if (name.equals("random")) {
+                algorithm = Integer.toString(spec.length > 1 ? Integer.parseInt(spec[1]) : options.randomBytes);
+            }
+            int weight = Integer.parseInt(weighted[1].trim());
+            if (weight > 0) {
+                operations.add(new Operation(name, algorithm, weight));
+            }
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("--mix has no operation with a positive weight");
+        }
+        this.cumulativeWeights = new int[operations.size()];
+        int total = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            total += operations.get(i).weight();
+            cumulativeWeights[i] = total;
+        }
+        this.message = message(options.payloadSize);
+    }
+
+    List<Operation> operations() {
+        return operations;
+    }
+
+    /**
+     * Creates the cipher texts and signatures that decrypt and verify requests send.
+     */
+    void prepare(HttpClient client) throws IOException, InterruptedException {
+        for (Operation operation : operations) {
+            if (operation.name().equals("decrypt") && !cipherTexts.containsKey(operation.algorithm())) {
+                cipherTexts.put(operation.algorithm(), fetchData(client, post("/api/v1/encrypt/" + operation.algorithm(), Map.of("plainText", message))));
+            }
+            if (operation.name().equals("verify") && !signatures.containsKey(operation.algorithm())) {
+                signatures.put(operation.algorithm(), fetchData(client, post("/api/v1/sign/" + operation.algorithm(), Map.of("message", message))));
+            }
+        }
+    }
+
+    Operation next() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations.get(i);
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    HttpRequest request(Operation operation) {
+        String algorithm = operation.algorithm();
+        return switch (operation.name()) {
+            case "encrypt" -> post("/api/v1/encrypt/" + algorithm, Map.of("plainText", message));
+            case "decrypt" -> post("/api/v1/decrypt/" + algorithm, Map.of("base64Encrypted", cipherTexts.get(algorithm)));
+            case "sign" -> post("/api/v1/sign/" + algorithm, Map.of("message", message));
+            case "verify" -> post("/api/v1/verify/" + algorithm, Map.of("message", message, "base64Signature", signatures.get(algorithm)));
+            case "random" -> HttpRequest.newBuilder(uri("/api/v1/random/" + algorithm)).timeout(options.timeout).GET().build();
+            case "keygen" -> post("/api/v1/generateKey", Map.of("algorithm", algorithm, "keySize", 256, "alias", alias()));
+            default -> {
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("algorithm", algorithm);
+                body.put("keySize", "RSA".equals(algorithm) ? 2048 : 256);
+                body.put("ecCurve", "secp256r1");
+                body.put("alias", alias());
+                yield post("/api/v1/generateKeyPair", body);
+            }
+        };
+    }
+
+    private HttpRequest post(String path, Map<String, ?> body) {
+        try {
+            return HttpRequest.newBuilder(uri(path))
+                    .timeout(options.timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode request body for " + path, e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(options.url + path);
+    }
+
+    private static String fetchData(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        JsonNode data = response.statusCode() == 200 ? MAPPER.readTree(response.body()).path("data") : null;
+        if (data == null || !data.isTextual()) {
+            throw new IOException("Setup request " + request.method() + " " + request.uri() + " failed: HTTP "
+                    + response.statusCode() + " " + response.body());
+        }
+        return data.asText();
+    }
+
+    private static String alias() {
+        return "loadgen-" + UUID.randomUUID();
+    }
+
+    private static String message(int size) {
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        return new String(chars);
+    }
+}
@@ -2,8 +2,10 @@ package com.hsm.simulator;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class HsmServerApplication {
     public static void main(String[] args) {
         SpringApplication.run(HsmServerApplication.class, args);
@@ -0,0 +1,81 @@
+package com.hsm.simulator.config;
+
+import com.hsm.simulator.service.ConcurrencyLimitedCryptoService;
+import com.hsm.simulator.service.EmulatedCryptoService;
+import com.hsm.simulator.service.InstrumentedCryptoService;
+import com.hsm.simulator.service.Pkcs11CryptoService;
+import com.hsm.simulator.service.Pkcs11CryptoServiceImpl;
+import com.hsm.simulator.service.SoftTokenCryptoServiceImpl;
+import com.hsm.simulator.util.HsmConcurrencyLimiter;
+import com.hsm.simulator.util.PerformanceEmulator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Assembles the {@link Pkcs11CryptoService} the controllers use: metrics outermost, so recorded
+ * latencies include the wait for an HSM permit, then the concurrency limit, then the implementation.
+ * The implementation is the PKCS#11 token, or the in-memory software token under the
+ * {@code softtoken} profile. With an {@code hsm.emulation.profile} set, the emulated HSM limits sit
+ * between the concurrency limit and the implementation.
+ * <p>
+ * Background key generation jobs get a chain of their own ({@value #KEY_GENERATION_JOBS}) whose
+ * concurrency limit waits for permits instead of rejecting: the jobs were admitted when submitted.
+ */
+@Configuration
+public class CryptoServiceConfig {
+
+    public static final String KEY_GENERATION_JOBS = "keyGenerationJobCryptoService";
+
+    @Bean
+    @Primary
+    @Profile("!softtoken")
+    public Pkcs11CryptoService cryptoService(Pkcs11CryptoServiceImpl pkcs11CryptoService,
+                                             HsmConcurrencyLimiter concurrencyLimiter,
+                                             PerformanceEmulator performanceEmulator,
+                                             MeterRegistry meterRegistry) {
+        return decorate(pkcs11CryptoService, concurrencyLimiter, performanceEmulator, meterRegistry, false);
+    }
+
+    @Bean
+    @Primary
+    @Profile("softtoken")
+    public Pkcs11CryptoService softTokenCryptoService(SoftTokenCryptoServiceImpl softTokenCryptoService,
+                                                      HsmConcurrencyLimiter concurrencyLimiter,
+                                                      PerformanceEmulator performanceEmulator,
+                                                      MeterRegistry meterRegistry) {
+        return decorate(softTokenCryptoService, concurrencyLimiter, performanceEmulator, meterRegistry, false);
+    }
+
+    @Bean(KEY_GENERATION_JOBS)
+    @Profile("!softtoken")
+    public Pkcs11CryptoService keyGenerationJobCryptoService(Pkcs11CryptoServiceImpl pkcs11CryptoService,
+                                                             HsmConcurrencyLimiter concurrencyLimiter,
+                                                             PerformanceEmulator performanceEmulator,
+                                                             MeterRegistry meterRegistry) {
+        return decorate(pkcs11CryptoService, concurrencyLimiter, performanceEmulator, meterRegistry, true);
+    }
+
+    @Bean(KEY_GENERATION_JOBS)
+    @Profile("softtoken")
+    public Pkcs11CryptoService softTokenKeyGenerationJobCryptoService(SoftTokenCryptoServiceImpl softTokenCryptoService,
+                                                                      HsmConcurrencyLimiter concurrencyLimiter,
+                                                                      PerformanceEmulator performanceEmulator,
+                                                                      MeterRegistry meterRegistry) {
+        return decorate(softTokenCryptoService, concurrencyLimiter, performanceEmulator, meterRegistry, true);
+    }
+
+    private static Pkcs11CryptoService decorate(Pkcs11CryptoService cryptoService,
+                                                HsmConcurrencyLimiter concurrencyLimiter,
+                                                PerformanceEmulator performanceEmulator,
+                                                MeterRegistry meterRegistry,
+                                                boolean patient) {
+        Pkcs11CryptoService device = performanceEmulator.isEnabled()
+                ? new EmulatedCryptoService(cryptoService, performanceEmulator)
+                : cryptoService;
+        return new InstrumentedCryptoService(
+                new ConcurrencyLimitedCryptoService(device, concurrencyLimiter, patient), meterRegistry);
+    }
+}
@@ -1,13 +1,18 @@
 package com.hsm.simulator.config;
 
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.PasswordCallback;
 import java.security.AuthProvider;
 import java.security.KeyStore;
 import java.security.Security;
@@ -16,8 +21,11 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Configuration
+@Profile("!softtoken")
 public class Pkcs11Config {
 
+    private static final Logger log = LoggerFactory.getLogger(Pkcs11Config.class);
+
     private AuthProvider pkcs11Provider;
 
     @Value("${pkcs11.config.filepath}")
@@ -32,6 +40,12 @@ public class Pkcs11Config {
     @Value("${pkcs11.module.path}")
     private String pkcs11ModulePath;
 
+    @Value("${startup.lazy:true}")
+    private boolean lazyStartup;
+
+    // Resolved on first use, then kept: the slot does not change while the provider is configured
+    private volatile String slotOrSlotId;
+
     public AuthProvider getPkcs11Provider() {
         return pkcs11Provider;
     }
@@ -48,7 +62,25 @@ public class Pkcs11Config {
         return pkcs11ModulePath;
     }
 
+    public boolean isLazyStartup() {
+        return lazyStartup;
+    }
+
     public String getSlotOrSlotId() {
+        String slot = slotOrSlotId;
+        if (slot == null) {
+            synchronized (this) {
+                slot = slotOrSlotId;
+                if (slot == null) {
+                    slot = resolveSlotOrSlotId();
+                    slotOrSlotId = slot;
+                }
+            }
+        }
+        return slot;
+    }
+
+    private String resolveSlotOrSlotId() {
         try (BufferedReader reader = new BufferedReader(new FileReader(configName))) {
             Properties properties = new Properties();
             properties.load(reader);
@@ -62,6 +94,10 @@ public class Pkcs11Config {
     }
 
 
+    /**
+     * Configures the provider and logs in. With {@code startup.lazy} the keystore, i.e. the enumeration
+     * of every token object, is left to its first use; otherwise it is loaded here and the aliases logged.
+     */
     @PostConstruct
     public void initProvider() {
 
@@ -69,15 +105,28 @@ public class Pkcs11Config {
             this.pkcs11Provider = (AuthProvider) Security.getProvider("SunPKCS11").configure(configName);
             Security.addProvider(pkcs11Provider);
 
+            if (lazyStartup) {
+                // C_Login only, no object search
+                pkcs11Provider.login(null, callbacks -> {
+                    for (Callback callback : callbacks) {
+                        if (callback instanceof PasswordCallback passwordCallback) {
+                            passwordCallback.setPassword(pin.toCharArray());
+                        }
+                    }
+                });
+                return;
+            }
+
             KeyStore ks = KeyStore.getInstance("PKCS11", pkcs11Provider);
             ks.load(null, pin.toCharArray());
 
-            // List aliases (keys)
-            java.util.Enumeration<String> aliases = ks.aliases();
-            while (aliases.hasMoreElements()) {
-                String alias = aliases.nextElement();
-                System.out.println("Key alias: " + alias);
+            if (log.isDebugEnabled()) {
+                java.util.Enumeration<String> aliases = ks.aliases();
+                while (aliases.hasMoreElements()) {
+                    log.debug("Key alias: {}", aliases.nextElement());
+                }
             }
+            getSlotOrSlotId();
 
         } catch (Exception ex) {
             throw new IllegalStateException("Failed to initialize PKCS#11 provider", ex);
@@ -0,0 +1,42 @@
+package com.hsm.simulator.config;
+
+import com.hsm.simulator.util.Pkcs11Engine;
+import com.hsm.simulator.util.Pkcs11NativeEngine;
+import com.hsm.simulator.util.Pkcs11ToolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Selects the engine used for token management. {@code pkcs11.engine.mode=native} (default) calls the
+ * PKCS#11 module in-process and falls back to pkcs11-tool when the module wrapper is not accessible;
+ * {@code tool} always forks pkcs11-tool.
+ */
+@Configuration
+@Profile("!softtoken")
+public class Pkcs11EngineConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(Pkcs11EngineConfig.class);
+
+    @Bean
+    @Primary
+    public Pkcs11Engine pkcs11Engine(@Value("${pkcs11.engine.mode:native}") String mode,
+                                     Pkcs11NativeEngine nativeEngine,
+                                     Pkcs11ToolHandler toolHandler) {
+        if ("tool".equalsIgnoreCase(mode)) {
+            return toolHandler;
+        }
+        if (!"native".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException("Unsupported pkcs11.engine.mode: " + mode);
+        }
+        if (!nativeEngine.isAvailable()) {
+            log.warn("PKCS#11 module wrapper not accessible, falling back to pkcs11-tool");
+            return toolHandler;
+        }
+        return nativeEngine;
+    }
+}
@@ -0,0 +1,71 @@
+package com.hsm.simulator.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-to-first-request: from JVM start to the completion of the first API request, i.e. including
+ * whatever that request still had to load lazily. Published as {@code hsm.startup.first.request} and
+ * logged, with a warning above {@code startup.first-request-target}.
+ */
+@Component
+public class StartupMetrics extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+    private final AtomicLong firstRequestMillis = new AtomicLong(-1);
+    private final Duration target;
+
+    public StartupMetrics(MeterRegistry meterRegistry,
+                          @Value("${startup.first-request-target:PT1S}") Duration target) {
+        this.target = target;
+        TimeGauge.builder("hsm.startup.first.request", firstRequestMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time from JVM start until the first API request completed (-1 before it)")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Health probes and the dashboard's static files are not what clients wait for
+        return firstRequestSeen.get() || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long requestStart = System.currentTimeMillis();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (firstRequestSeen.compareAndSet(false, true)) {
+                long now = System.currentTimeMillis();
+                long sinceStart = now - ManagementFactory.getRuntimeMXBean().getStartTime();
+                firstRequestMillis.set(sinceStart);
+                if (sinceStart > target.toMillis()) {
+                    log.warn("First request {} completed {} ms after JVM start ({} ms in the request), above the {} ms target",
+                            request.getRequestURI(), sinceStart, now - requestStart, target.toMillis());
+                } else {
+                    log.info("First request {} completed {} ms after JVM start ({} ms in the request)",
+                            request.getRequestURI(), sinceStart, now - requestStart);
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.hsm.simulator.controller;
 
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
 import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
 import com.hsm.simulator.dto.Pkcs11SlotInfo;
 import com.hsm.simulator.exception.CryptoException;
 import com.hsm.simulator.model.HsmApiResponse;
@@ -14,6 +19,8 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -22,7 +29,11 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
@@ -31,21 +42,24 @@ import java.util.Map;
 public class CryptoController {
 
     private final Pkcs11CryptoService cryptoService;
+    private final long maxStreamRandomBytes;
 
     @Autowired
-    public CryptoController(Pkcs11CryptoService cryptoService) {
+    public CryptoController(Pkcs11CryptoService cryptoService,
+                            @Value("${rng.stream.max-bytes:1073741824}") long maxStreamRandomBytes) {
         this.cryptoService = cryptoService;
+        this.maxStreamRandomBytes = maxStreamRandomBytes;
     }
 
     @Operation(
             summary = "Encrypt a message",
-            description = "Encrypts the provided plain text using the specified algorithm.",
+            description = "Encrypts the provided plain text using the specified algorithm. AES_GCM also authenticates the optional Base64 aad (additional authenticated data), which must be given again to decrypt.",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Request payload containing the plain text to be encrypted",
                     required = true,
                     content = @Content(
                             schema = @Schema(
-                                    example = "{ \"plainText\": \"example text\" }"
+                                    example = "{ \"plainText\": \"example text\", \"aad\": \"b3JkZXItNDI=\" }"
                             )
                     )
             ),
@@ -66,19 +80,23 @@ public class CryptoController {
         if (plainText == null || plainText.isEmpty()) {
             throw new CryptoException("Plain text must not be empty");
         }
-        String encrypted = cryptoService.encrypt(algorithm, plainText);
+        String aad = request.get("aad");
+        String encrypted = aad == null || aad.isEmpty()
+                ? cryptoService.encrypt(algorithm, plainText)
+                : Base64.getEncoder().encodeToString(cryptoService.encryptBytes(algorithm,
+                        plainText.getBytes(StandardCharsets.UTF_8), decodeBase64(aad, "aad")));
         return ResponseEntity.ok(new HsmApiResponse<>(true, "Encrypted successfully", encrypted));
     }
 
     @Operation(
             summary = "Decrypt a message",
-            description = "Decrypts the provided base64-encoded encrypted text using the specified algorithm.",
+            description = "Decrypts the provided base64-encoded encrypted text using the specified algorithm. For AES_GCM, the Base64 aad must match the one given to encrypt.",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Request payload containing the base64-encoded encrypted text",
                     required = true,
                     content = @Content(
                             schema = @Schema(
-                                    example = "{ \"base64Encrypted\": \"base64EncodedText\" }"
+                                    example = "{ \"base64Encrypted\": \"base64EncodedText\", \"aad\": \"b3JkZXItNDI=\" }"
                             )
                     )
             ),
@@ -97,10 +115,191 @@ public class CryptoController {
         if (base64Encrypted == null || base64Encrypted.isEmpty()) {
             return new HsmApiResponse<>(false, "Encrypted text must not be empty", null);
         }
-        String decrypted = cryptoService.decrypt(algorithm, base64Encrypted);
+        String aad = request.get("aad");
+        String decrypted = aad == null || aad.isEmpty()
+                ? cryptoService.decrypt(algorithm, base64Encrypted)
+                : new String(cryptoService.decryptBytes(algorithm, decodeBase64(base64Encrypted, "base64Encrypted"),
+                        decodeBase64(aad, "aad")), StandardCharsets.UTF_8);
         return new HsmApiResponse<>(true, "Decrypted successfully", decrypted);
     }
 
+    @Operation(
+            summary = "Encrypt a batch of messages",
+            description = "Encrypts every plain text with the specified algorithm. The batch is spread over several PKCS#11 sessions with one initialized cipher per worker; results are returned per item, in order.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the plain texts to be encrypted",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"plainTexts\": [\"text 1\", \"text 2\"] }"
+                            )
+                    )
+            ),
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The cryptographic algorithm to use for encryption", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Batch encryption completed",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping("/encrypt/batch/{algorithm}")
+    public HsmApiResponse<BatchResult<String>> encryptBatch(@PathVariable CryptoAlgorithm algorithm, @RequestBody Map<String, List<String>> request) {
+        List<String> plainTexts = request.get("plainTexts");
+        if (plainTexts == null || plainTexts.isEmpty()) {
+            return new HsmApiResponse<>(false, "Plain texts must not be empty", null);
+        }
+        BatchResult<String> result = cryptoService.encryptBatch(algorithm, plainTexts);
+        return new HsmApiResponse<>(true, "Batch encryption completed", result);
+    }
+
+    @Operation(
+            summary = "Decrypt a batch of messages",
+            description = "Decrypts every base64-encoded cipher text with the specified algorithm. Results are returned per item, in order; a bad item does not fail the batch.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the base64-encoded encrypted texts",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"base64Encrypted\": [\"base64EncodedText1\", \"base64EncodedText2\"] }"
+                            )
+                    )
+            ),
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The cryptographic algorithm to use for decryption", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Batch decryption completed",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping("/decrypt/batch/{algorithm}")
+    public HsmApiResponse<BatchResult<String>> decryptBatch(@PathVariable CryptoAlgorithm algorithm, @RequestBody Map<String, List<String>> request) {
+        List<String> base64EncryptedList = request.get("base64Encrypted");
+        if (base64EncryptedList == null || base64EncryptedList.isEmpty()) {
+            return new HsmApiResponse<>(false, "Encrypted texts must not be empty", null);
+        }
+        BatchResult<String> result = cryptoService.decryptBatch(algorithm, base64EncryptedList);
+        return new HsmApiResponse<>(true, "Batch decryption completed", result);
+    }
+
+    @Operation(
+            summary = "Encrypt a binary stream",
+            description = "Encrypts an application/octet-stream body chunk by chunk and streams back the IV followed by the cipher text, using constant memory regardless of payload size. Only AES is supported.",
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The cryptographic algorithm to use for encryption (AES)", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Encrypted stream (IV followed by cipher text)"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/stream/encrypt/{algorithm}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> encryptStream(@PathVariable CryptoAlgorithm algorithm, InputStream inputStream) {
+        if (algorithm != CryptoAlgorithm.AES) {
+            throw new CryptoException("Unsupported algorithm for streaming: " + algorithm);
+        }
+        StreamingResponseBody body = outputStream -> cryptoService.encryptStream(algorithm, inputStream, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(body);
+    }
+
+    @Operation(
+            summary = "Decrypt a binary stream",
+            description = "Decrypts an application/octet-stream body produced by the streaming encrypt endpoint (IV followed by cipher text) and streams back the plain data. Only AES is supported.",
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The cryptographic algorithm to use for decryption (AES)", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Decrypted stream"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/stream/decrypt/{algorithm}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> decryptStream(@PathVariable CryptoAlgorithm algorithm, InputStream inputStream) {
+        if (algorithm != CryptoAlgorithm.AES) {
+            throw new CryptoException("Unsupported algorithm for streaming: " + algorithm);
+        }
+        StreamingResponseBody body = outputStream -> cryptoService.decryptStream(algorithm, inputStream, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(body);
+    }
+
+    @Operation(
+            summary = "Envelope-encrypt a message",
+            description = "Encrypts the plain text in software under a fresh AES-256 data key and returns it with the data key wrapped by the HSM key-encryption key (envelope.kek-alias). Only the 32-byte data key goes to the HSM, whatever the payload size.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the plain text to be encrypted",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"plainText\": \"example text\" }"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Wrapped data key and cipher text (Base64)",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping("/envelope/encrypt")
+    public HsmApiResponse<EnvelopeCiphertext> encryptEnvelope(@RequestBody Map<String, String> request) {
+        String plainText = request.get("plainText");
+        if (plainText == null || plainText.isEmpty()) {
+            throw new CryptoException("Plain text must not be empty");
+        }
+        EnvelopeCiphertext envelope = cryptoService.encryptEnvelope(plainText.getBytes(StandardCharsets.UTF_8));
+        return new HsmApiResponse<>(true, "Encrypted successfully", envelope);
+    }
+
+    @Operation(
+            summary = "Envelope-decrypt a message",
+            description = "Unwraps the data key in the HSM and decrypts the cipher text with it, as returned by the envelope encrypt endpoint.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the Base64 wrapped data key and cipher text",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"wrappedKey\": \"base64WrappedKey\", \"cipherText\": \"base64CipherText\" }"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Decryption completed successfully",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input or the wrapped key or cipher text was altered")
+            }
+    )
+    @PostMapping("/envelope/decrypt")
+    public HsmApiResponse<String> decryptEnvelope(@RequestBody Map<String, String> request) {
+        byte[] wrappedKey = decodeBase64(request.get("wrappedKey"), "wrappedKey");
+        byte[] cipherText = decodeBase64(request.get("cipherText"), "cipherText");
+        byte[] plainBytes = cryptoService.decryptEnvelope(wrappedKey, cipherText);
+        return new HsmApiResponse<>(true, "Decrypted successfully", new String(plainBytes, StandardCharsets.UTF_8));
+    }
+
+    @Operation(
+            summary = "Stream random bytes",
+            description = "Streams the given number of random bytes read directly from the HSM, for requests above the /random cap (rng.max-bytes).",
+            parameters = {
+                    @Parameter(name = "byteCount", description = "The number of random bytes to generate, up to rng.stream.max-bytes", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Random byte stream"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @GetMapping(value = "/stream/random/{byteCount}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRandom(@PathVariable long byteCount) {
+        // Checked before the response is committed: once streaming, an error can no longer become a 400
+        if (byteCount <= 0 || byteCount > maxStreamRandomBytes) {
+            throw new CryptoException("Byte count must be between 1 and " + maxStreamRandomBytes);
+        }
+        StreamingResponseBody body = outputStream -> cryptoService.generateRandomStream(byteCount, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).contentLength(byteCount).body(body);
+    }
+
     @Operation(
             summary = "Sign a message",
             description = "Signs the provided message using the specified algorithm.",
@@ -167,7 +366,7 @@ public class CryptoController {
 
     @Operation(
             summary = "Generate random bytes",
-            description = "Generates a specified number of random bytes.",
+            description = "Generates a specified number of random bytes, up to rng.max-bytes; larger amounts via /stream/random.",
             parameters = {
                     @Parameter(name = "byteCount", description = "The number of random bytes to generate", required = true)
             },
@@ -307,13 +506,14 @@ public class CryptoController {
             responses = {
                     @ApiResponse(responseCode = "200", description = "Keys retrieved successfully",
                             content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "304", description = "Not modified since the ETag / Last-Modified sent by the client"),
                     @ApiResponse(responseCode = "400", description = "Invalid input provided")
             }
     )
     @GetMapping("/tool/listKeys")
-    public HsmApiResponse<List<String>> listKeys(@RequestParam(required = false) String type) {
-        List<String> keys = cryptoService.getListOfKeys(type);
-        return new HsmApiResponse<>(true, "Keys retrieved", keys);
+    public ResponseEntity<HsmApiResponse<List<String>>> listKeys(@RequestParam(required = false) String type) {
+        InventorySnapshot<List<String>> keys = cryptoService.getListOfKeys(type);
+        return inventoryResponse(keys, "Keys retrieved");
     }
 
 
@@ -343,13 +543,45 @@ public class CryptoController {
             responses = {
                     @ApiResponse(responseCode = "200", description = "Keys in slot retrieved successfully",
                             content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "304", description = "Not modified since the ETag / Last-Modified sent by the client"),
                     @ApiResponse(responseCode = "400", description = "Invalid input provided")
             }
     )
     @GetMapping("/slots/{slotId}/keys")
-    public HsmApiResponse<List<Pkcs11ObjectInfo>> listSlotKeys(@PathVariable int slotId) {
-        List<Pkcs11ObjectInfo> keysInSlot = cryptoService.getListOfKeysFromSlot(slotId);
-        return new HsmApiResponse<>(true, "Keys in slot retrieved", keysInSlot);
+    public ResponseEntity<HsmApiResponse<List<Pkcs11ObjectInfo>>> listSlotKeys(@PathVariable int slotId) {
+        InventorySnapshot<List<Pkcs11ObjectInfo>> keysInSlot = cryptoService.getListOfKeysFromSlot(slotId);
+        return inventoryResponse(keysInSlot, "Keys in slot retrieved");
+    }
+
+    @Operation(
+            summary = "Page through the objects in a slot",
+            description = "Lists the objects of the slot ordered by label, a page at a time, optionally filtered. Served from an index over the cached inventory, so it does not scan the token. Pass the returned nextCursor to get the next page.",
+            parameters = {
+                    @Parameter(name = "slotId", description = "The ID of the slot to list objects from", required = true),
+                    @Parameter(name = "type", description = "Object type: Certificate, PrivateKey or PublicKey"),
+                    @Parameter(name = "labelPrefix", description = "Start of the object label"),
+                    @Parameter(name = "id", description = "Object ID (hex)"),
+                    @Parameter(name = "usage", description = "One usage entry, e.g. sign or encrypt"),
+                    @Parameter(name = "cursor", description = "nextCursor of the previous page"),
+                    @Parameter(name = "limit", description = "Page size, up to inventory.page.max-size (default inventory.page.default-size)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Page retrieved successfully",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "304", description = "Not modified since the ETag / Last-Modified sent by the client"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @GetMapping("/slots/{slotId}/objects")
+    public ResponseEntity<HsmApiResponse<Pkcs11ObjectPage>> listSlotObjects(@PathVariable int slotId,
+                                                                          @RequestParam(required = false) String type,
+                                                                          @RequestParam(required = false) String labelPrefix,
+                                                                          @RequestParam(required = false) String id,
+                                                                          @RequestParam(required = false) String usage,
+                                                                          @RequestParam(required = false) String cursor,
+                                                                          @RequestParam(defaultValue = "0") int limit) {
+        Pkcs11ObjectQuery query = new Pkcs11ObjectQuery(type, labelPrefix, id, usage, cursor, limit);
+        return inventoryResponse(cryptoService.getObjectPageFromSlot(slotId, query), "Objects in slot retrieved");
     }
 
     @Operation(
@@ -358,13 +590,22 @@ public class CryptoController {
             responses = {
                     @ApiResponse(responseCode = "200", description = "Slots retrieved successfully",
                             content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "304", description = "Not modified since the ETag / Last-Modified sent by the client"),
                     @ApiResponse(responseCode = "400", description = "Invalid input provided")
             }
     )
     @GetMapping("/slots")
-    public HsmApiResponse<List<Pkcs11SlotInfo>> listSlots() {
-        List<Pkcs11SlotInfo> slotList =  cryptoService.getListOfSlots();
-        return new HsmApiResponse<>(true, "Slots retrieved", slotList);
+    public ResponseEntity<HsmApiResponse<List<Pkcs11SlotInfo>>> listSlots() {
+        InventorySnapshot<List<Pkcs11SlotInfo>> slotList = cryptoService.getListOfSlots();
+        return inventoryResponse(slotList, "Slots retrieved");
+    }
+
+    // Spring answers 304 itself when the request's If-None-Match / If-Modified-Since still match
+    private static <T> ResponseEntity<HsmApiResponse<T>> inventoryResponse(InventorySnapshot<T> snapshot, String message) {
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .lastModified(snapshot.getLastModified())
+                .body(new HsmApiResponse<>(true, message, snapshot.getData()));
     }
 
     @Operation(
@@ -431,4 +672,83 @@ public class CryptoController {
         String verified = cryptoService.verifyMessageWithGiveKeyAlias(selectedKeyAlias, message, base64Signature,signatureAlgorithm);
         return new HsmApiResponse<>(true, "Verification completed", verified);
     }
+
+    @Operation(
+            summary = "Sign a batch of messages with a specific key alias",
+            description = "Signs every message with the specified key alias. The key is resolved once and the batch is spread over several PKCS#11 sessions; results are returned per message, in order.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the messages to be signed",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"messages\": [\"message 1\", \"message 2\"], \"signAlgo\": \"SHA256withECDSA\" }"
+                            )
+                    )
+            ),
+            parameters = {
+                    @Parameter(name = "selectedKeyAlias", description = "The alias of the key to use for signing", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Batch signing completed",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping("/data/sign/batch/{selectedKeyAlias}")
+    public HsmApiResponse<BatchResult<String>> signBatch(@PathVariable String selectedKeyAlias, @RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        List<String> messages = (List<String>) request.get("messages");
+        String signatureAlgorithm = request.get("signAlgo") != null ? (String) request.get("signAlgo") : "SHA256withECDSA";
+        if (messages == null || messages.isEmpty()) {
+            return new HsmApiResponse<>(false, "Messages must not be empty", null);
+        }
+        BatchResult<String> result = cryptoService.signBatchWithGivenKeyAlias(selectedKeyAlias, messages, signatureAlgorithm);
+        return new HsmApiResponse<>(true, "Batch signing completed", result);
+    }
+
+    @Operation(
+            summary = "Verify a batch of signatures with a specific key alias",
+            description = "Verifies every message against the signature at the same position using the specified key alias. Results are returned per message, in order.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the messages and base64-encoded signatures",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"messages\": [\"message 1\"], \"base64Signatures\": [\"base64EncodedSignature\"], \"verifyAlgo\": \"SHA256withECDSA\" }"
+                            )
+                    )
+            ),
+            parameters = {
+                    @Parameter(name = "selectedKeyAlias", description = "The alias of the key to use for verification", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Batch verification completed",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping("/data/verify/batch/{selectedKeyAlias}")
+    public HsmApiResponse<BatchResult<Boolean>> verifyBatch(@PathVariable String selectedKeyAlias, @RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        List<String> messages = (List<String>) request.get("messages");
+        @SuppressWarnings("unchecked")
+        List<String> base64Signatures = (List<String>) request.get("base64Signatures");
+        String signatureAlgorithm = request.get("verifyAlgo") != null ? (String) request.get("verifyAlgo") : "SHA256withECDSA";
+        if (messages == null || messages.isEmpty() || base64Signatures == null || base64Signatures.size() != messages.size()) {
+            return new HsmApiResponse<>(false, "Messages and an equal number of signatures must be provided", null);
+        }
+        BatchResult<Boolean> result = cryptoService.verifyBatchWithGivenKeyAlias(selectedKeyAlias, messages, base64Signatures, signatureAlgorithm);
+        return new HsmApiResponse<>(true, "Batch verification completed", result);
+    }
+
+    private static byte[] decodeBase64(String value, String field) {
+        if (value == null || value.isEmpty()) {
+            throw new CryptoException(field + " must not be empty");
+        }
+        try {
+            return Base64.getDecoder().decode(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new CryptoException("Invalid Base64 in " + field + " : " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,185 @@
+package com.hsm.simulator.controller;
+
+import com.hsm.simulator.dto.JobInfo;
+import com.hsm.simulator.model.HsmApiResponse;
+import com.hsm.simulator.service.KeyGenerationJobService;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.SymmetricKeyType;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/jobs")
+public class JobController {
+
+    private final KeyGenerationJobService jobService;
+
+    @Autowired
+    public JobController(KeyGenerationJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @Operation(
+            summary = "Submit a key pair generation job",
+            description = "Queues the same generation as /api/v1/generateKeyPair and returns immediately with a job id.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the parameters for key pair generation",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"algorithm\": \"RSA\", \"keySize\": 4096, \"ecCurve\": \"secp256r1\", \"alias\": \"keyPairAlias\" }"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Job accepted",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided"),
+                    @ApiResponse(responseCode = "503", description = "Job queue is full")
+            }
+    )
+    @PostMapping("/generateKeyPair")
+    public ResponseEntity<HsmApiResponse<JobInfo>> generateKeyPair(@RequestBody Map<String, Object> request) {
+        String algorithm = (String) request.get("algorithm");
+        int keySize = (int) request.get("keySize");
+        String ecCurve = (String) request.get("ecCurve");
+        String alias = (String) request.get("alias");
+        return accepted(jobService.submitKeyPairGeneration(algorithm, keySize, ecCurve, alias));
+    }
+
+    @Operation(
+            summary = "Submit a symmetric key generation job",
+            description = "Queues the same generation as /api/v1/generateKey and returns immediately with a job id.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the parameters for symmetric key generation",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"algorithm\": \"AES\", \"keySize\": 256, \"alias\": \"symmetricKeyAlias\" }"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Job accepted",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided"),
+                    @ApiResponse(responseCode = "503", description = "Job queue is full")
+            }
+    )
+    @PostMapping("/generateKey")
+    public ResponseEntity<HsmApiResponse<JobInfo>> generateKey(@RequestBody Map<String, Object> request) {
+        String algorithm = (String) request.get("algorithm");
+        int keySize = (int) request.get("keySize");
+        String alias = (String) request.get("alias");
+        return accepted(jobService.submitKeyGeneration(algorithm, keySize, alias));
+    }
+
+    @Operation(
+            summary = "Submit an asymmetric key pair generation job (pkcs11-tool)",
+            description = "Queues the same generation as /api/v1/tool/generateAsymmetricKeyPair and returns immediately with a job id.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the parameters for asymmetric key pair generation",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"keyType\": \"RSA_16384\", \"id\": \"01\", \"label\": \"AsyKeyPairLabel\" }"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Job accepted",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided"),
+                    @ApiResponse(responseCode = "503", description = "Job queue is full")
+            }
+    )
+    @PostMapping("/tool/generateAsymmetricKeyPair")
+    public ResponseEntity<HsmApiResponse<JobInfo>> generateAsymmetricKeyPair(@RequestBody Map<String, Object> request) {
+        AsymmetricKeyType asymmetricKeyType = AsymmetricKeyType.valueOf((String) request.get("keyType"));
+        String id = (String) request.get("id");
+        String label = (String) request.get("label");
+        return accepted(jobService.submitAsymmetricKeyGeneration(asymmetricKeyType, id, label));
+    }
+
+    @Operation(
+            summary = "Submit a symmetric key generation job (pkcs11-tool)",
+            description = "Queues the same generation as /api/v1/tool/generateSymmetricKey and returns immediately with a job id.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Request payload containing the parameters for symmetric key generation",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(
+                                    example = "{ \"keyType\": \"AES_256\", \"id\": \"02\", \"label\": \"SymKeyLabel\" }"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Job accepted",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided"),
+                    @ApiResponse(responseCode = "503", description = "Job queue is full")
+            }
+    )
+    @PostMapping("/tool/generateSymmetricKey")
+    public ResponseEntity<HsmApiResponse<JobInfo>> generateSymmetricKey(@RequestBody Map<String, Object> request) {
+        SymmetricKeyType symmetricKeyType = SymmetricKeyType.valueOf((String) request.get("keyType"));
+        String id = (String) request.get("id");
+        String label = (String) request.get("label");
+        return accepted(jobService.submitSymmetricKeyGeneration(symmetricKeyType, id, label));
+    }
+
+    @Operation(
+            summary = "Get a job",
+            description = "Returns the status of a key generation job and, once it has succeeded, its result.",
+            parameters = {
+                    @Parameter(name = "jobId", description = "The id returned when the job was submitted", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Job retrieved",
+                            content = @Content(schema = @Schema(implementation = HsmApiResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Unknown or expired job")
+            }
+    )
+    @GetMapping("/{jobId}")
+    public HsmApiResponse<JobInfo> getJob(@PathVariable String jobId) {
+        return new HsmApiResponse<>(true, "Job retrieved", jobService.getJob(jobId));
+    }
+
+    @Operation(
+            summary = "Stream job status",
+            description = "Server-sent events: one 'status' event with the current state, then one per transition until the job finishes.",
+            parameters = {
+                    @Parameter(name = "jobId", description = "The id returned when the job was submitted", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Event stream opened"),
+                    @ApiResponse(responseCode = "400", description = "Unknown or expired job")
+            }
+    )
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJob(@PathVariable String jobId) {
+        return jobService.subscribe(jobId);
+    }
+
+    private static ResponseEntity<HsmApiResponse<JobInfo>> accepted(JobInfo job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/jobs/" + job.getJobId()))
+                .body(new HsmApiResponse<>(true, "Job accepted", job));
+    }
+}
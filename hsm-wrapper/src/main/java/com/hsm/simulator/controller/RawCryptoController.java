@@ -0,0 +1,251 @@
+package com.hsm.simulator.controller;
+
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.service.Pkcs11CryptoService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Base64;
+
+/**
+ * Binary variants of the crypto endpoints: request and response bodies are raw
+ * {@code application/octet-stream} bytes, with no JSON envelope and no Base64. Parameters that are not
+ * the payload travel in headers; errors are still reported as JSON {@code HsmApiResponse}.
+ */
+@RestController
+@RequestMapping("/api/v1/raw")
+public class RawCryptoController {
+
+    private static final String SIGNATURE_HEADER = "X-Signature";
+    private static final String SIGNATURE_ALGORITHM_HEADER = "X-Signature-Algorithm";
+    private static final String VERIFIED_HEADER = "X-Verified";
+    private static final String WRAPPED_KEY_HEADER = "X-Wrapped-Key";
+    private static final String KEY_ENCRYPTION_KEY_HEADER = "X-Key-Encryption-Key";
+    private static final String AAD_HEADER = "X-AAD";
+
+    private static final String DEFAULT_SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+    private final Pkcs11CryptoService cryptoService;
+
+    @Autowired
+    public RawCryptoController(Pkcs11CryptoService cryptoService) {
+        this.cryptoService = cryptoService;
+    }
+
+    @Operation(
+            summary = "Encrypt raw bytes",
+            description = "Encrypts the application/octet-stream body and returns the cipher text as raw bytes (for AES, IV followed by cipher text; for AES_GCM, 12-byte nonce followed by cipher text and 16-byte tag).",
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The cryptographic algorithm to use for encryption (RSA, AES or AES_GCM)", required = true),
+                    @Parameter(name = AAD_HEADER, in = ParameterIn.HEADER, description = "Base64 additional authenticated data (AES_GCM only)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Cipher text"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/encrypt/{algorithm}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] encrypt(@PathVariable CryptoAlgorithm algorithm,
+                          @RequestHeader(value = AAD_HEADER, required = false) String base64Aad,
+                          @RequestBody byte[] plainBytes) {
+        requireNotEmpty(plainBytes, "Plain text must not be empty");
+        if (base64Aad == null) {
+            return cryptoService.encryptBytes(algorithm, plainBytes);
+        }
+        return cryptoService.encryptBytes(algorithm, plainBytes, decodeHeader(base64Aad, AAD_HEADER));
+    }
+
+    @Operation(
+            summary = "Decrypt raw bytes",
+            description = "Decrypts the application/octet-stream body as produced by the raw encrypt endpoint and returns the plain bytes.",
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The cryptographic algorithm to use for decryption (RSA, AES or AES_GCM)", required = true),
+                    @Parameter(name = AAD_HEADER, in = ParameterIn.HEADER, description = "Base64 additional authenticated data given to encrypt (AES_GCM only)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Plain bytes"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/decrypt/{algorithm}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] decrypt(@PathVariable CryptoAlgorithm algorithm,
+                          @RequestHeader(value = AAD_HEADER, required = false) String base64Aad,
+                          @RequestBody byte[] encrypted) {
+        requireNotEmpty(encrypted, "Encrypted data must not be empty");
+        if (base64Aad == null) {
+            return cryptoService.decryptBytes(algorithm, encrypted);
+        }
+        return cryptoService.decryptBytes(algorithm, encrypted, decodeHeader(base64Aad, AAD_HEADER));
+    }
+
+    @Operation(
+            summary = "Sign raw bytes",
+            description = "Signs (RSA) or MACs (HMAC, CMAC) the application/octet-stream body with the session key and returns the raw signature.",
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The signing algorithm (HMAC, CMAC or RSA)", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Signature or MAC"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/sign/{algorithm}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] sign(@PathVariable CryptoAlgorithm algorithm, @RequestBody byte[] message) {
+        requireNotEmpty(message, "Message must not be empty");
+        return cryptoService.signBytes(algorithm, message);
+    }
+
+    @Operation(
+            summary = "Verify raw bytes",
+            description = "Verifies the signature or MAC in the X-Signature header (Base64) over the application/octet-stream body. The result is returned in the X-Verified header.",
+            parameters = {
+                    @Parameter(name = "algorithm", description = "The signing algorithm (HMAC, CMAC or RSA)", required = true),
+                    @Parameter(name = SIGNATURE_HEADER, in = ParameterIn.HEADER, description = "Base64 signature or MAC", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Verification done, see X-Verified"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/verify/{algorithm}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> verify(@PathVariable CryptoAlgorithm algorithm,
+                                       @RequestHeader(SIGNATURE_HEADER) String base64Signature,
+                                       @RequestBody byte[] message) {
+        requireNotEmpty(message, "Message must not be empty");
+        boolean verified = cryptoService.verifyBytes(algorithm, message, decodeSignature(base64Signature));
+        return verifiedResponse(verified);
+    }
+
+    @Operation(
+            summary = "Generate raw random bytes",
+            description = "Generates the given number of random bytes on the HSM and returns them as application/octet-stream.",
+            parameters = {
+                    @Parameter(name = "byteCount", description = "Number of random bytes to generate", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Random bytes"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @GetMapping(value = "/random/{byteCount}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] generateRandom(@PathVariable int byteCount) {
+        if (byteCount <= 0) {
+            throw new CryptoException("Byte count must be positive");
+        }
+        return cryptoService.generateRandomBytes(byteCount);
+    }
+
+    @Operation(
+            summary = "Sign raw bytes with a key alias",
+            description = "Signs the application/octet-stream body with the private key stored under the alias and returns the raw signature.",
+            parameters = {
+                    @Parameter(name = "selectedKeyAlias", description = "The alias of the key to use for signing", required = true),
+                    @Parameter(name = SIGNATURE_ALGORITHM_HEADER, in = ParameterIn.HEADER, description = "Signature algorithm, SHA256withECDSA by default")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Signature"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/data/sign/{selectedKeyAlias}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] signWithAlias(@PathVariable String selectedKeyAlias,
+                                @RequestHeader(value = SIGNATURE_ALGORITHM_HEADER, defaultValue = DEFAULT_SIGNATURE_ALGORITHM) String signatureAlgorithm,
+                                @RequestBody byte[] message) {
+        requireNotEmpty(message, "Message must not be empty");
+        return cryptoService.signBytesWithGivenKeyAlias(selectedKeyAlias, message, signatureAlgorithm);
+    }
+
+    @Operation(
+            summary = "Verify raw bytes with a key alias",
+            description = "Verifies the signature in the X-Signature header (Base64) over the application/octet-stream body with the certificate stored under the alias. The result is returned in the X-Verified header.",
+            parameters = {
+                    @Parameter(name = "selectedKeyAlias", description = "The alias of the key to use for verification", required = true),
+                    @Parameter(name = SIGNATURE_HEADER, in = ParameterIn.HEADER, description = "Base64 signature", required = true),
+                    @Parameter(name = SIGNATURE_ALGORITHM_HEADER, in = ParameterIn.HEADER, description = "Signature algorithm, SHA256withECDSA by default")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Verification done, see X-Verified"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/data/verify/{selectedKeyAlias}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> verifyWithAlias(@PathVariable String selectedKeyAlias,
+                                                @RequestHeader(SIGNATURE_HEADER) String base64Signature,
+                                                @RequestHeader(value = SIGNATURE_ALGORITHM_HEADER, defaultValue = DEFAULT_SIGNATURE_ALGORITHM) String signatureAlgorithm,
+                                                @RequestBody byte[] message) {
+        requireNotEmpty(message, "Message must not be empty");
+        boolean verified = cryptoService.verifyBytesWithGivenKeyAlias(selectedKeyAlias, message, decodeSignature(base64Signature), signatureAlgorithm);
+        return verifiedResponse(verified);
+    }
+
+    @Operation(
+            summary = "Envelope-encrypt raw bytes",
+            description = "Encrypts the application/octet-stream body under a fresh AES-256 data key and returns the cipher text (IV, cipher text and GCM tag) as raw bytes. The data key, wrapped by the HSM key-encryption key, is returned in the X-Wrapped-Key header (Base64).",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Cipher text, see X-Wrapped-Key"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input provided")
+            }
+    )
+    @PostMapping(value = "/envelope/encrypt", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> encryptEnvelope(@RequestBody byte[] plainBytes) {
+        requireNotEmpty(plainBytes, "Plain text must not be empty");
+        EnvelopeCiphertext envelope = cryptoService.encryptEnvelope(plainBytes);
+        return ResponseEntity.ok()
+                .header(WRAPPED_KEY_HEADER, Base64.getEncoder().encodeToString(envelope.getWrappedKey()))
+                .header(KEY_ENCRYPTION_KEY_HEADER, envelope.getKeyEncryptionKey())
+                .body(envelope.getCipherText());
+    }
+
+    @Operation(
+            summary = "Envelope-decrypt raw bytes",
+            description = "Decrypts the application/octet-stream body as produced by the raw envelope encrypt endpoint, with the wrapped data key from the X-Wrapped-Key header, and returns the plain bytes.",
+            parameters = {
+                    @Parameter(name = WRAPPED_KEY_HEADER, in = ParameterIn.HEADER, description = "Base64 wrapped data key", required = true)
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Plain bytes"),
+                    @ApiResponse(responseCode = "400", description = "Invalid input or the wrapped key or cipher text was altered")
+            }
+    )
+    @PostMapping(value = "/envelope/decrypt", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] decryptEnvelope(@RequestHeader(WRAPPED_KEY_HEADER) String base64WrappedKey, @RequestBody byte[] cipherText) {
+        requireNotEmpty(cipherText, "Encrypted data must not be empty");
+        return cryptoService.decryptEnvelope(decodeHeader(base64WrappedKey, WRAPPED_KEY_HEADER), cipherText);
+    }
+
+    private static ResponseEntity<Void> verifiedResponse(boolean verified) {
+        return ResponseEntity.ok().header(VERIFIED_HEADER, Boolean.toString(verified)).build();
+    }
+
+    private static byte[] decodeSignature(String base64Signature) {
+        return decodeHeader(base64Signature, SIGNATURE_HEADER);
+    }
+
+    private static byte[] decodeHeader(String base64Value, String header) {
+        try {
+            return Base64.getDecoder().decode(base64Value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new CryptoException("Invalid Base64 in " + header + " : " + e.getMessage());
+        }
+    }
+
+    private static void requireNotEmpty(byte[] body, String message) {
+        if (body == null || body.length == 0) {
+            throw new CryptoException(message);
+        }
+    }
+}
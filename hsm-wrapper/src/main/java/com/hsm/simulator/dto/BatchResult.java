@@ -0,0 +1,75 @@
+package com.hsm.simulator.dto;
+
+import java.util.List;
+
+public class BatchResult<T> {
+
+    private List<BatchItemResult<T>> items;
+    private int total;
+    private int succeeded;
+    private int failed;
+    private long elapsedMillis;
+    private double itemsPerSecond;
+
+    public BatchResult() {
+
+    }
+
+    public BatchResult(List<BatchItemResult<T>> items, long elapsedNanos) {
+        this.items = items;
+        this.total = items.size();
+        this.succeeded = (int) items.stream().filter(BatchItemResult::isSuccess).count();
+        this.failed = total - succeeded;
+        this.elapsedMillis = elapsedNanos / 1_000_000;
+        this.itemsPerSecond = elapsedNanos == 0 ? 0.0 : total * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public List<BatchItemResult<T>> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchItemResult<T>> items) {
+        this.items = items;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getItemsPerSecond() {
+        return itemsPerSecond;
+    }
+
+    public void setItemsPerSecond(double itemsPerSecond) {
+        this.itemsPerSecond = itemsPerSecond;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.hsm.simulator.dto;
+
+/**
+ * Result of envelope encryption: the payload encrypted under a fresh data key (IV, cipher text and
+ * GCM tag), and that data key wrapped by the token's key-encryption key. Byte arrays are Base64 in JSON.
+ */
+public class EnvelopeCiphertext {
+
+    private String keyEncryptionKey;
+    private byte[] wrappedKey;
+    private byte[] cipherText;
+
+    public EnvelopeCiphertext() {
+
+    }
+
+    public EnvelopeCiphertext(String keyEncryptionKey, byte[] wrappedKey, byte[] cipherText) {
+        this.keyEncryptionKey = keyEncryptionKey;
+        this.wrappedKey = wrappedKey;
+        this.cipherText = cipherText;
+    }
+
+    public String getKeyEncryptionKey() {
+        return keyEncryptionKey;
+    }
+
+    public void setKeyEncryptionKey(String keyEncryptionKey) {
+        this.keyEncryptionKey = keyEncryptionKey;
+    }
+
+    public byte[] getWrappedKey() {
+        return wrappedKey;
+    }
+
+    public void setWrappedKey(byte[] wrappedKey) {
+        this.wrappedKey = wrappedKey;
+    }
+
+    public byte[] getCipherText() {
+        return cipherText;
+    }
+
+    public void setCipherText(byte[] cipherText) {
+        this.cipherText = cipherText;
+    }
+}
@@ -0,0 +1,44 @@
+package com.hsm.simulator.dto;
+
+/**
+ * A cached inventory view together with the validators the controller sends as ETag and Last-Modified.
+ */
+public class InventorySnapshot<T> {
+
+    private T data;
+    private String etag;
+    private long lastModified;
+
+    public InventorySnapshot() {
+    }
+
+    public InventorySnapshot(T data, String etag, long lastModified) {
+        this.data = data;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    public void setData(T data) {
+        this.data = data;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+}
@@ -0,0 +1,97 @@
+package com.hsm.simulator.dto;
+
+import com.hsm.simulator.model.JobStatus;
+
+import java.time.Instant;
+import java.util.List;
+
+public class JobInfo {
+
+    private String jobId;
+    private String operation;
+    private JobStatus status;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant completedAt;
+    private List<String> result;
+    private String error;
+
+    public JobInfo() {
+    }
+
+    public JobInfo(String jobId, String operation, JobStatus status, Instant submittedAt, Instant startedAt,
+                   Instant completedAt, List<String> result, String error) {
+        this.jobId = jobId;
+        this.operation = operation;
+        this.status = status;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.completedAt = completedAt;
+        this.result = result;
+        this.error = error;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Instant submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public List<String> getResult() {
+        return result;
+    }
+
+    public void setResult(List<String> result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -1,5 +1,7 @@
 package com.hsm.simulator.dto;
 
+import java.util.Objects;
+
 public class Pkcs11ObjectInfo {
 
     private String type;     // cert or key
@@ -70,4 +72,16 @@ public class Pkcs11ObjectInfo {
         this.access = access;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Pkcs11ObjectInfo that)) return false;
+        return Objects.equals(type, that.type) && Objects.equals(label, that.label) && Objects.equals(id, that.id)
+                && Objects.equals(subject, that.subject) && Objects.equals(usage, that.usage) && Objects.equals(access, that.access);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, label, id, subject, usage, access);
+    }
 }
@@ -0,0 +1,48 @@
+package com.hsm.simulator.dto;
+
+import java.util.List;
+
+/**
+ * One page of a slot's objects, ordered by label. {@code nextCursor} is null on the last page;
+ * {@code total} counts every object matching the filters.
+ */
+public class Pkcs11ObjectPage {
+
+    private List<Pkcs11ObjectInfo> items;
+    private String nextCursor;
+    private int total;
+
+    public Pkcs11ObjectPage() {
+
+    }
+
+    public Pkcs11ObjectPage(List<Pkcs11ObjectInfo> items, String nextCursor, int total) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+
+    public List<Pkcs11ObjectInfo> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Pkcs11ObjectInfo> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+}
@@ -0,0 +1,50 @@
+package com.hsm.simulator.dto;
+
+/**
+ * Filters and position of one page of a slot's object listing. Every filter is optional and they
+ * combine with AND: {@code type} and {@code id} match exactly (ignoring case), {@code labelPrefix} the
+ * start of the label and {@code usage} one entry of the usage list (e.g. {@code sign}). {@code cursor}
+ * is the {@code nextCursor} of the previous page.
+ */
+public class Pkcs11ObjectQuery {
+
+    private final String type;
+    private final String labelPrefix;
+    private final String id;
+    private final String usage;
+    private final String cursor;
+    private final int limit;
+
+    public Pkcs11ObjectQuery(String type, String labelPrefix, String id, String usage, String cursor, int limit) {
+        this.type = type;
+        this.labelPrefix = labelPrefix;
+        this.id = id;
+        this.usage = usage;
+        this.cursor = cursor;
+        this.limit = limit;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getLabelPrefix() {
+        return labelPrefix;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsage() {
+        return usage;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
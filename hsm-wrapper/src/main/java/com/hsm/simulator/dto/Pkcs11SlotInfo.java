@@ -1,5 +1,7 @@
 package com.hsm.simulator.dto;
 
+import java.util.Objects;
+
 public class Pkcs11SlotInfo {
     public int slotIndex;
     public String slotHex;
@@ -131,5 +133,21 @@ public class Pkcs11SlotInfo {
         this.initialized = initialized;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Pkcs11SlotInfo that)) return false;
+        return slotIndex == that.slotIndex && initialized == that.initialized
+                && Objects.equals(slotHex, that.slotHex) && Objects.equals(slotDecimal, that.slotDecimal)
+                && Objects.equals(label, that.label) && Objects.equals(manufacturer, that.manufacturer)
+                && Objects.equals(model, that.model) && Objects.equals(flags, that.flags)
+                && Objects.equals(hwVersion, that.hwVersion) && Objects.equals(fwVersion, that.fwVersion)
+                && Objects.equals(serial, that.serial) && Objects.equals(pinMinMax, that.pinMinMax);
+    }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(slotIndex, slotHex, slotDecimal, label, manufacturer, model, flags, hwVersion, fwVersion,
+                serial, pinMinMax, initialized);
+    }
 }
@@ -1,14 +1,37 @@
 package com.hsm.simulator.exception;
 
 import com.hsm.simulator.model.HsmApiResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.time.Duration;
+
 @RestControllerAdvice
 public class GlobalExceptionHandler {
     @ExceptionHandler(CryptoException.class)
     public ResponseEntity<HsmApiResponse<Object>> handleCryptoException(CryptoException ex) {
         return ResponseEntity.badRequest().body(new HsmApiResponse<>(false, ex.getMessage(), null));
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(HsmBusyException.class)
+    public ResponseEntity<HsmApiResponse<Object>> handleHsmBusyException(HsmBusyException ex) {
+        return busy(HttpStatus.SERVICE_UNAVAILABLE, ex);
+    }
+
+    @ExceptionHandler(HsmOverloadedException.class)
+    public ResponseEntity<HsmApiResponse<Object>> handleHsmOverloadedException(HsmOverloadedException ex) {
+        return busy(HttpStatus.TOO_MANY_REQUESTS, ex);
+    }
+
+    private static ResponseEntity<HsmApiResponse<Object>> busy(HttpStatus status, HsmBusyException ex) {
+        // Retry-After is in whole seconds; round up so clients do not come back too early
+        Duration retryAfter = ex.getRetryAfter() != null ? ex.getRetryAfter() : Duration.ofSeconds(1);
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .body(new HsmApiResponse<>(false, ex.getMessage(), null));
+    }
+}
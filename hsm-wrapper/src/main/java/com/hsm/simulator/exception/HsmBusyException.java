@@ -0,0 +1,28 @@
+package com.hsm.simulator.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request cannot get HSM capacity in time; mapped to 503 so clients retry later, after
+ * {@link #getRetryAfter()} if known.
+ */
+public class HsmBusyException extends CryptoException {
+
+    private final Duration retryAfter;
+
+    public HsmBusyException(String message) {
+        this(message, null);
+    }
+
+    public HsmBusyException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Estimated time until capacity frees up, or null if there is no estimate.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
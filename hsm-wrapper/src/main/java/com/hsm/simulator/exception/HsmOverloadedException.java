@@ -0,0 +1,13 @@
+package com.hsm.simulator.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is turned away without waiting because the queue for its operation class is
+ * full; mapped to 429.
+ */
+public class HsmOverloadedException extends HsmBusyException {
+    public HsmOverloadedException(String message, Duration retryAfter) {
+        super(message, retryAfter);
+    }
+}
@@ -1,5 +1,5 @@
 package com.hsm.simulator.model;
 
 public enum CryptoAlgorithm {
-    RSA, AES, PBKDF2, HMAC, CMAC
+    RSA, AES, AES_GCM, PBKDF2, HMAC, CMAC
 }
@@ -0,0 +1,9 @@
+package com.hsm.simulator.model;
+
+public enum JobStatus {
+    QUEUED, RUNNING, SUCCEEDED, FAILED;
+
+    public boolean isTerminal() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,211 @@
+package com.hsm.simulator.service;
+
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.HsmConcurrencyLimiter;
+import com.hsm.simulator.util.HsmConcurrencyLimiter.Lane;
+import com.hsm.simulator.util.SymmetricKeyType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every {@link Pkcs11CryptoService} call under a permit of {@link HsmConcurrencyLimiter}: AES, AES-GCM,
+ * HMAC, CMAC and random in the symmetric lane, RSA and key alias (private/public key) operations in the
+ * asymmetric lane, key generation and token listings in their own lanes. Streams and envelopes go to the bulk
+ * lane: a stream holds its permit while the client uploads or downloads, an envelope while its payload is
+ * encrypted in software, so neither may take the permits short token calls need.
+ * <p>
+ * Calls are labelled with a work class (operation, algorithm or key, payload size) so the adaptive limit
+ * compares each call's latency with that of similar calls only; an alias stands for its key's type and size.
+ * <p>
+ * A patient instance, for background jobs admitted by their own executor, waits for its permits however long
+ * the lane is busy instead of failing with 429/503.
+ */
+public class ConcurrencyLimitedCryptoService implements Pkcs11CryptoService {
+
+    private final Pkcs11CryptoService delegate;
+    private final HsmConcurrencyLimiter limiter;
+    private final boolean patient;
+
+    public ConcurrencyLimitedCryptoService(Pkcs11CryptoService delegate, HsmConcurrencyLimiter limiter) {
+        this(delegate, limiter, false);
+    }
+
+    public ConcurrencyLimitedCryptoService(Pkcs11CryptoService delegate, HsmConcurrencyLimiter limiter, boolean patient) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.patient = patient;
+    }
+
+    public String encrypt(CryptoAlgorithm algorithm, String plainText) throws CryptoException {
+        return run(lane(algorithm), workClass("encrypt", algorithm, plainText), () -> delegate.encrypt(algorithm, plainText));
+    }
+
+    public String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException {
+        return run(lane(algorithm), workClass("decrypt", algorithm, base64Encrypted), () -> delegate.decrypt(algorithm, base64Encrypted));
+    }
+
+    public BatchResult<String> encryptBatch(CryptoAlgorithm algorithm, List<String> plainTexts) throws CryptoException {
+        return limiter.runBulk(lane(algorithm), () -> delegate.encryptBatch(algorithm, plainTexts));
+    }
+
+    public BatchResult<String> decryptBatch(CryptoAlgorithm algorithm, List<String> base64EncryptedList) throws CryptoException {
+        return limiter.runBulk(lane(algorithm), () -> delegate.decryptBatch(algorithm, base64EncryptedList));
+    }
+
+    public long encryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        return limiter.runBulk(Lane.BULK, () -> delegate.encryptStream(algorithm, in, out));
+    }
+
+    public long decryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        return limiter.runBulk(Lane.BULK, () -> delegate.decryptStream(algorithm, in, out));
+    }
+
+    public String sign(CryptoAlgorithm signType, String message) throws CryptoException {
+        return run(lane(signType), workClass("sign", signType, message), () -> delegate.sign(signType, message));
+    }
+
+    public boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException {
+        return run(lane(verifyType), workClass("verify", verifyType, message), () -> delegate.verify(verifyType, message, base64Signature));
+    }
+
+    public String generateRandom(int byteCount) throws CryptoException {
+        return run(Lane.SYMMETRIC, "random/" + sizeStep(byteCount), () -> delegate.generateRandom(byteCount));
+    }
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes) throws CryptoException {
+        return run(lane(algorithm), workClass("encrypt", algorithm, plainBytes), () -> delegate.encryptBytes(algorithm, plainBytes));
+    }
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted) throws CryptoException {
+        return run(lane(algorithm), workClass("decrypt", algorithm, encrypted), () -> delegate.decryptBytes(algorithm, encrypted));
+    }
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes, byte[] aad) throws CryptoException {
+        return run(lane(algorithm), workClass("encrypt", algorithm, plainBytes), () -> delegate.encryptBytes(algorithm, plainBytes, aad));
+    }
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted, byte[] aad) throws CryptoException {
+        return run(lane(algorithm), workClass("decrypt", algorithm, encrypted), () -> delegate.decryptBytes(algorithm, encrypted, aad));
+    }
+
+    public byte[] signBytes(CryptoAlgorithm signType, byte[] message) throws CryptoException {
+        return run(lane(signType), workClass("sign", signType, message), () -> delegate.signBytes(signType, message));
+    }
+
+    public boolean verifyBytes(CryptoAlgorithm verifyType, byte[] message, byte[] signature) throws CryptoException {
+        return run(lane(verifyType), workClass("verify", verifyType, message), () -> delegate.verifyBytes(verifyType, message, signature));
+    }
+
+    public byte[] generateRandomBytes(int byteCount) throws CryptoException {
+        return run(Lane.SYMMETRIC, "random/" + sizeStep(byteCount), () -> delegate.generateRandomBytes(byteCount));
+    }
+
+    public long generateRandomStream(long byteCount, OutputStream out) throws CryptoException, IOException {
+        return limiter.runBulk(Lane.BULK, () -> delegate.generateRandomStream(byteCount, out));
+    }
+
+    public List<String> generateKeyPair(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException {
+        return run(Lane.KEYGEN, "keypair/" + algorithm + "/" + (ecCurve != null && !ecCurve.isBlank() ? ecCurve : keySize),
+                () -> delegate.generateKeyPair(algorithm, keySize, ecCurve, alias));
+    }
+
+    public List<String> generateKey(String algorithm, int keySize, String alias) throws CryptoException {
+        return run(Lane.KEYGEN, "key/" + algorithm + "/" + keySize, () -> delegate.generateKey(algorithm, keySize, alias));
+    }
+
+    public List<String> generateAsymmetricKeys(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        return run(Lane.KEYGEN, "keypair/" + asymmetricKeyType, () -> delegate.generateAsymmetricKeys(asymmetricKeyType, id, keyPairLabel));
+    }
+
+    public List<String> generateSymmetricKeys(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        return run(Lane.KEYGEN, "key/" + symmetricKeyType, () -> delegate.generateSymmetricKeys(symmetricKeyType, id, keyPairLabel));
+    }
+
+    public InventorySnapshot<List<String>> getListOfKeys(String type) throws CryptoException {
+        return run(Lane.INVENTORY, "keys", () -> delegate.getListOfKeys(type));
+    }
+
+    public Map<String, List<String>> getMechanisms() throws CryptoException {
+        return run(Lane.INVENTORY, "mechanisms", () -> delegate.getMechanisms());
+    }
+
+    public InventorySnapshot<List<Pkcs11SlotInfo>> getListOfSlots() throws CryptoException {
+        return run(Lane.INVENTORY, "slots", () -> delegate.getListOfSlots());
+    }
+
+    public InventorySnapshot<List<Pkcs11ObjectInfo>> getListOfKeysFromSlot(int slotId) throws CryptoException {
+        return run(Lane.INVENTORY, "objects", () -> delegate.getListOfKeysFromSlot(slotId));
+    }
+
+    public InventorySnapshot<Pkcs11ObjectPage> getObjectPageFromSlot(int slotId, Pkcs11ObjectQuery query) throws CryptoException {
+        return run(Lane.INVENTORY, "objects", () -> delegate.getObjectPageFromSlot(slotId, query));
+    }
+
+    public String signMessageWithGiveKeyAlias(String keyAlias, String message, String signatureAlgorithm) throws CryptoException {
+        return run(Lane.ASYMMETRIC, "sign/" + keyAlias, () -> delegate.signMessageWithGiveKeyAlias(keyAlias, message, signatureAlgorithm));
+    }
+
+    public String verifyMessageWithGiveKeyAlias(String keyAlias, String message, String base64Signature, String signatureAlgorithm) throws CryptoException {
+        return run(Lane.ASYMMETRIC, "verify/" + keyAlias, () -> delegate.verifyMessageWithGiveKeyAlias(keyAlias, message, base64Signature, signatureAlgorithm));
+    }
+
+    public byte[] signBytesWithGivenKeyAlias(String keyAlias, byte[] message, String signatureAlgorithm) throws CryptoException {
+        return run(Lane.ASYMMETRIC, "sign/" + keyAlias, () -> delegate.signBytesWithGivenKeyAlias(keyAlias, message, signatureAlgorithm));
+    }
+
+    public boolean verifyBytesWithGivenKeyAlias(String keyAlias, byte[] message, byte[] signature, String signatureAlgorithm) throws CryptoException {
+        return run(Lane.ASYMMETRIC, "verify/" + keyAlias, () -> delegate.verifyBytesWithGivenKeyAlias(keyAlias, message, signature, signatureAlgorithm));
+    }
+
+    public BatchResult<String> signBatchWithGivenKeyAlias(String keyAlias, List<String> messages, String signatureAlgorithm) throws CryptoException {
+        return limiter.runBulk(Lane.ASYMMETRIC, () -> delegate.signBatchWithGivenKeyAlias(keyAlias, messages, signatureAlgorithm));
+    }
+
+    public BatchResult<Boolean> verifyBatchWithGivenKeyAlias(String keyAlias, List<String> messages, List<String> base64Signatures, String signatureAlgorithm) throws CryptoException {
+        return limiter.runBulk(Lane.ASYMMETRIC, () -> delegate.verifyBatchWithGivenKeyAlias(keyAlias, messages, base64Signatures, signatureAlgorithm));
+    }
+
+    // The payload is encrypted in software, so the call takes time in proportion to its size
+    public EnvelopeCiphertext encryptEnvelope(byte[] plainBytes) throws CryptoException {
+        return limiter.runBulk(Lane.BULK, () -> delegate.encryptEnvelope(plainBytes));
+    }
+
+    public byte[] decryptEnvelope(byte[] wrappedKey, byte[] cipherText) throws CryptoException {
+        return limiter.runBulk(Lane.BULK, () -> delegate.decryptEnvelope(wrappedKey, cipherText));
+    }
+
+    private <T, E extends Exception> T run(Lane lane, String workClass, HsmConcurrencyLimiter.Call<T, E> call) throws E {
+        return patient ? limiter.runWhenPermitted(lane, workClass, call) : limiter.run(lane, workClass, call);
+    }
+
+    // Latency baselines per operation, algorithm and payload size
+    private static String workClass(String operation, CryptoAlgorithm algorithm, String payload) {
+        return operation + "/" + algorithm + "/" + sizeStep(payload == null ? 0 : payload.length());
+    }
+
+    private static String workClass(String operation, CryptoAlgorithm algorithm, byte[] payload) {
+        return operation + "/" + algorithm + "/" + sizeStep(payload == null ? 0 : payload.length);
+    }
+
+    // 0 below 1 KiB, then one step per doubling
+    private static int sizeStep(int length) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(0, length) >>> 10);
+    }
+
+    private static Lane lane(CryptoAlgorithm algorithm) {
+        return algorithm == CryptoAlgorithm.RSA ? Lane.ASYMMETRIC : Lane.SYMMETRIC;
+    }
+}
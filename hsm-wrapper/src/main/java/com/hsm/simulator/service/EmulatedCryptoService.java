@@ -0,0 +1,201 @@
+package com.hsm.simulator.service;
+
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.CryptoConstants;
+import com.hsm.simulator.util.PerformanceEmulator;
+import com.hsm.simulator.util.SymmetricKeyType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs every {@link Pkcs11CryptoService} call through {@link PerformanceEmulator}, under the same
+ * operation names as {@code hsm.crypto.operation}. Session keys are described by their fixed sizes;
+ * batches take one rate token per item.
+ */
+public class EmulatedCryptoService implements Pkcs11CryptoService {
+
+    private static final int SINGLE = 1;
+
+    private final Pkcs11CryptoService delegate;
+    private final PerformanceEmulator emulator;
+
+    public EmulatedCryptoService(Pkcs11CryptoService delegate, PerformanceEmulator emulator) {
+        this.delegate = delegate;
+        this.emulator = emulator;
+    }
+
+    public String encrypt(CryptoAlgorithm algorithm, String plainText) throws CryptoException {
+        return emulator.run("encrypt", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.encrypt(algorithm, plainText));
+    }
+
+    public String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException {
+        return emulator.run("decrypt", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.decrypt(algorithm, base64Encrypted));
+    }
+
+    public BatchResult<String> encryptBatch(CryptoAlgorithm algorithm, List<String> plainTexts) throws CryptoException {
+        return emulator.run("encrypt.batch", algorithm.name(), sessionKeySize(algorithm), plainTexts.size(),
+                () -> delegate.encryptBatch(algorithm, plainTexts));
+    }
+
+    public BatchResult<String> decryptBatch(CryptoAlgorithm algorithm, List<String> base64EncryptedList) throws CryptoException {
+        return emulator.run("decrypt.batch", algorithm.name(), sessionKeySize(algorithm), base64EncryptedList.size(),
+                () -> delegate.decryptBatch(algorithm, base64EncryptedList));
+    }
+
+    public long encryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        return emulator.run("encrypt.stream", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.encryptStream(algorithm, in, out));
+    }
+
+    public long decryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        return emulator.run("decrypt.stream", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.decryptStream(algorithm, in, out));
+    }
+
+    public String sign(CryptoAlgorithm signType, String message) throws CryptoException {
+        return emulator.run("sign", signType.name(), sessionKeySize(signType), SINGLE, () -> delegate.sign(signType, message));
+    }
+
+    public boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException {
+        return emulator.run("verify", verifyType.name(), sessionKeySize(verifyType), SINGLE, () -> delegate.verify(verifyType, message, base64Signature));
+    }
+
+    public String generateRandom(int byteCount) throws CryptoException {
+        return emulator.run("random", null, null, SINGLE, () -> delegate.generateRandom(byteCount));
+    }
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes) throws CryptoException {
+        return emulator.run("encrypt.raw", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.encryptBytes(algorithm, plainBytes));
+    }
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted) throws CryptoException {
+        return emulator.run("decrypt.raw", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.decryptBytes(algorithm, encrypted));
+    }
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes, byte[] aad) throws CryptoException {
+        return emulator.run("encrypt.raw", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.encryptBytes(algorithm, plainBytes, aad));
+    }
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted, byte[] aad) throws CryptoException {
+        return emulator.run("decrypt.raw", algorithm.name(), sessionKeySize(algorithm), SINGLE, () -> delegate.decryptBytes(algorithm, encrypted, aad));
+    }
+
+    public byte[] signBytes(CryptoAlgorithm signType, byte[] message) throws CryptoException {
+        return emulator.run("sign.raw", signType.name(), sessionKeySize(signType), SINGLE, () -> delegate.signBytes(signType, message));
+    }
+
+    public boolean verifyBytes(CryptoAlgorithm verifyType, byte[] message, byte[] signature) throws CryptoException {
+        return emulator.run("verify.raw", verifyType.name(), sessionKeySize(verifyType), SINGLE, () -> delegate.verifyBytes(verifyType, message, signature));
+    }
+
+    public byte[] generateRandomBytes(int byteCount) throws CryptoException {
+        return emulator.run("random.raw", null, null, SINGLE, () -> delegate.generateRandomBytes(byteCount));
+    }
+
+    public long generateRandomStream(long byteCount, OutputStream out) throws CryptoException, IOException {
+        return emulator.run("random.stream", null, null, SINGLE, () -> delegate.generateRandomStream(byteCount, out));
+    }
+
+    public List<String> generateKeyPair(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException {
+        String keyParameter = "EC".equalsIgnoreCase(algorithm) ? ecCurve : Integer.toString(keySize);
+        return emulator.run("generate.keypair", algorithm, keyParameter, SINGLE, () -> delegate.generateKeyPair(algorithm, keySize, ecCurve, alias));
+    }
+
+    public List<String> generateKey(String algorithm, int keySize, String alias) throws CryptoException {
+        return emulator.run("generate.key", algorithm, Integer.toString(keySize), SINGLE, () -> delegate.generateKey(algorithm, keySize, alias));
+    }
+
+    public List<String> generateAsymmetricKeys(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        // rsa:2048 -> RSA / 2048, EC:prime256v1 -> EC / prime256v1
+        String[] keySpec = asymmetricKeyType.getKeySpec().split(":");
+        return emulator.run("tool.generate.keypair", keySpec[0].toUpperCase(Locale.ROOT), keySpec[1], SINGLE,
+                () -> delegate.generateAsymmetricKeys(asymmetricKeyType, id, keyPairLabel));
+    }
+
+    public List<String> generateSymmetricKeys(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        // The key spec length is in bytes, rules use bits like everywhere else
+        String[] keySpec = symmetricKeyType.getKeySpec().split(":");
+        return emulator.run("tool.generate.key", keySpec[0], Integer.toString(Integer.parseInt(keySpec[1]) * 8), SINGLE,
+                () -> delegate.generateSymmetricKeys(symmetricKeyType, id, keyPairLabel));
+    }
+
+    public InventorySnapshot<List<String>> getListOfKeys(String type) throws CryptoException {
+        return emulator.run("list.keys", null, null, SINGLE, () -> delegate.getListOfKeys(type));
+    }
+
+    public Map<String, List<String>> getMechanisms() throws CryptoException {
+        return emulator.run("list.mechanisms", null, null, SINGLE, delegate::getMechanisms);
+    }
+
+    public InventorySnapshot<List<Pkcs11SlotInfo>> getListOfSlots() throws CryptoException {
+        return emulator.run("list.slots", null, null, SINGLE, delegate::getListOfSlots);
+    }
+
+    public InventorySnapshot<List<Pkcs11ObjectInfo>> getListOfKeysFromSlot(int slotId) throws CryptoException {
+        return emulator.run("list.objects", null, null, SINGLE, () -> delegate.getListOfKeysFromSlot(slotId));
+    }
+
+    public InventorySnapshot<Pkcs11ObjectPage> getObjectPageFromSlot(int slotId, Pkcs11ObjectQuery query) throws CryptoException {
+        return emulator.run("list.objects.page", null, null, SINGLE, () -> delegate.getObjectPageFromSlot(slotId, query));
+    }
+
+    public String signMessageWithGiveKeyAlias(String keyAlias, String message, String signatureAlgorithm) throws CryptoException {
+        return emulator.run("alias.sign", signatureAlgorithm, null, SINGLE,
+                () -> delegate.signMessageWithGiveKeyAlias(keyAlias, message, signatureAlgorithm));
+    }
+
+    public String verifyMessageWithGiveKeyAlias(String keyAlias, String message, String base64Signature, String signatureAlgorithm) throws CryptoException {
+        return emulator.run("alias.verify", signatureAlgorithm, null, SINGLE,
+                () -> delegate.verifyMessageWithGiveKeyAlias(keyAlias, message, base64Signature, signatureAlgorithm));
+    }
+
+    public byte[] signBytesWithGivenKeyAlias(String keyAlias, byte[] message, String signatureAlgorithm) throws CryptoException {
+        return emulator.run("alias.sign.raw", signatureAlgorithm, null, SINGLE,
+                () -> delegate.signBytesWithGivenKeyAlias(keyAlias, message, signatureAlgorithm));
+    }
+
+    public boolean verifyBytesWithGivenKeyAlias(String keyAlias, byte[] message, byte[] signature, String signatureAlgorithm) throws CryptoException {
+        return emulator.run("alias.verify.raw", signatureAlgorithm, null, SINGLE,
+                () -> delegate.verifyBytesWithGivenKeyAlias(keyAlias, message, signature, signatureAlgorithm));
+    }
+
+    public BatchResult<String> signBatchWithGivenKeyAlias(String keyAlias, List<String> messages, String signatureAlgorithm) throws CryptoException {
+        return emulator.run("alias.sign.batch", signatureAlgorithm, null, messages.size(),
+                () -> delegate.signBatchWithGivenKeyAlias(keyAlias, messages, signatureAlgorithm));
+    }
+
+    public BatchResult<Boolean> verifyBatchWithGivenKeyAlias(String keyAlias, List<String> messages, List<String> base64Signatures, String signatureAlgorithm) throws CryptoException {
+        return emulator.run("alias.verify.batch", signatureAlgorithm, null, messages.size(),
+                () -> delegate.verifyBatchWithGivenKeyAlias(keyAlias, messages, base64Signatures, signatureAlgorithm));
+    }
+
+    public EnvelopeCiphertext encryptEnvelope(byte[] plainBytes) throws CryptoException {
+        return emulator.run("envelope.encrypt", CryptoAlgorithm.AES.name(), Integer.toString(CryptoConstants.DATA_KEY_SIZE), SINGLE,
+                () -> delegate.encryptEnvelope(plainBytes));
+    }
+
+    public byte[] decryptEnvelope(byte[] wrappedKey, byte[] cipherText) throws CryptoException {
+        return emulator.run("envelope.decrypt", CryptoAlgorithm.AES.name(), Integer.toString(CryptoConstants.DATA_KEY_SIZE), SINGLE,
+                () -> delegate.decryptEnvelope(wrappedKey, cipherText));
+    }
+
+    private static String sessionKeySize(CryptoAlgorithm algorithm) {
+        return switch (algorithm) {
+            case RSA -> Integer.toString(CryptoConstants.SESSION_RSA_KEY_SIZE);
+            case AES, AES_GCM, CMAC -> Integer.toString(CryptoConstants.SESSION_AES_KEY_SIZE);
+            default -> null;
+        };
+    }
+}
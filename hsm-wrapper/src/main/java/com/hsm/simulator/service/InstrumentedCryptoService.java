@@ -0,0 +1,308 @@
+package com.hsm.simulator.service;
+
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.SymmetricKeyType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records every {@link Pkcs11CryptoService} call in the {@code hsm.crypto.operation} timer, tagged by
+ * operation, algorithm, key class, payload-size bucket and outcome, with percentile histograms so
+ * p99 can be derived from the Prometheus endpoint.
+ * <p>
+ * The key class is {@code session} for the keys generated at startup, {@code alias-<family>} for
+ * keystore aliases (e.g. {@code alias-ec}), {@code envelope} for envelope data keys and {@code none}
+ * otherwise; aliases themselves are never
+ * used as tags to keep the series count bounded. For the same reason algorithm names supplied by
+ * clients (signature and key generation algorithms) are tagged only when known, as {@code other}
+ * otherwise.
+ */
+public class InstrumentedCryptoService implements Pkcs11CryptoService {
+
+    private static final String SESSION_KEY = "session";
+    private static final String ENVELOPE_KEY = "envelope";
+    private static final String NO_KEY = "none";
+    private static final String NO_ALGORITHM = "none";
+    private static final String OTHER_ALGORITHM = "other";
+    private static final long NO_PAYLOAD = -1;
+
+    // Algorithm tags by lower-case name: the service's own enums plus the JCA names clients may pass
+    private static final Map<String, String> KNOWN_ALGORITHMS = knownAlgorithms();
+
+    @FunctionalInterface
+    private interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final Pkcs11CryptoService delegate;
+    private final MeterRegistry meterRegistry;
+
+    public InstrumentedCryptoService(Pkcs11CryptoService delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public String encrypt(CryptoAlgorithm algorithm, String plainText) throws CryptoException {
+        return timed("encrypt", algorithm.name(), SESSION_KEY, length(plainText), () -> delegate.encrypt(algorithm, plainText));
+    }
+
+    public String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException {
+        return timed("decrypt", algorithm.name(), SESSION_KEY, length(base64Encrypted), () -> delegate.decrypt(algorithm, base64Encrypted));
+    }
+
+    public BatchResult<String> encryptBatch(CryptoAlgorithm algorithm, List<String> plainTexts) throws CryptoException {
+        return timed("encrypt.batch", algorithm.name(), SESSION_KEY, length(plainTexts), () -> delegate.encryptBatch(algorithm, plainTexts));
+    }
+
+    public BatchResult<String> decryptBatch(CryptoAlgorithm algorithm, List<String> base64EncryptedList) throws CryptoException {
+        return timed("decrypt.batch", algorithm.name(), SESSION_KEY, length(base64EncryptedList), () -> delegate.decryptBatch(algorithm, base64EncryptedList));
+    }
+
+    public long encryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        return timedStream("encrypt.stream", algorithm.name(), SESSION_KEY, () -> delegate.encryptStream(algorithm, in, out));
+    }
+
+    public long decryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        return timedStream("decrypt.stream", algorithm.name(), SESSION_KEY, () -> delegate.decryptStream(algorithm, in, out));
+    }
+
+    public String sign(CryptoAlgorithm signType, String message) throws CryptoException {
+        return timed("sign", signType.name(), SESSION_KEY, length(message), () -> delegate.sign(signType, message));
+    }
+
+    public boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException {
+        return timed("verify", verifyType.name(), SESSION_KEY, length(message), () -> delegate.verify(verifyType, message, base64Signature));
+    }
+
+    public String generateRandom(int byteCount) throws CryptoException {
+        return timed("random", NO_ALGORITHM, NO_KEY, byteCount, () -> delegate.generateRandom(byteCount));
+    }
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes) throws CryptoException {
+        return timed("encrypt.raw", algorithm.name(), SESSION_KEY, length(plainBytes), () -> delegate.encryptBytes(algorithm, plainBytes));
+    }
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted) throws CryptoException {
+        return timed("decrypt.raw", algorithm.name(), SESSION_KEY, length(encrypted), () -> delegate.decryptBytes(algorithm, encrypted));
+    }
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes, byte[] aad) throws CryptoException {
+        return timed("encrypt.raw", algorithm.name(), SESSION_KEY, length(plainBytes), () -> delegate.encryptBytes(algorithm, plainBytes, aad));
+    }
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted, byte[] aad) throws CryptoException {
+        return timed("decrypt.raw", algorithm.name(), SESSION_KEY, length(encrypted), () -> delegate.decryptBytes(algorithm, encrypted, aad));
+    }
+
+    public byte[] signBytes(CryptoAlgorithm signType, byte[] message) throws CryptoException {
+        return timed("sign.raw", signType.name(), SESSION_KEY, length(message), () -> delegate.signBytes(signType, message));
+    }
+
+    public boolean verifyBytes(CryptoAlgorithm verifyType, byte[] message, byte[] signature) throws CryptoException {
+        return timed("verify.raw", verifyType.name(), SESSION_KEY, length(message), () -> delegate.verifyBytes(verifyType, message, signature));
+    }
+
+    public byte[] generateRandomBytes(int byteCount) throws CryptoException {
+        return timed("random.raw", NO_ALGORITHM, NO_KEY, byteCount, () -> delegate.generateRandomBytes(byteCount));
+    }
+
+    public long generateRandomStream(long byteCount, OutputStream out) throws CryptoException, IOException {
+        return timedStream("random.stream", NO_ALGORITHM, NO_KEY, () -> delegate.generateRandomStream(byteCount, out));
+    }
+
+    public List<String> generateKeyPair(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException {
+        return timed("generate.keypair", algorithm, NO_KEY, NO_PAYLOAD, () -> delegate.generateKeyPair(algorithm, keySize, ecCurve, alias));
+    }
+
+    public List<String> generateKey(String algorithm, int keySize, String alias) throws CryptoException {
+        return timed("generate.key", algorithm, NO_KEY, NO_PAYLOAD, () -> delegate.generateKey(algorithm, keySize, alias));
+    }
+
+    public List<String> generateAsymmetricKeys(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        return timed("tool.generate.keypair", asymmetricKeyType.name(), NO_KEY, NO_PAYLOAD,
+                () -> delegate.generateAsymmetricKeys(asymmetricKeyType, id, keyPairLabel));
+    }
+
+    public List<String> generateSymmetricKeys(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        return timed("tool.generate.key", symmetricKeyType.name(), NO_KEY, NO_PAYLOAD,
+                () -> delegate.generateSymmetricKeys(symmetricKeyType, id, keyPairLabel));
+    }
+
+    public InventorySnapshot<List<String>> getListOfKeys(String type) throws CryptoException {
+        return timed("list.keys", NO_ALGORITHM, NO_KEY, NO_PAYLOAD, () -> delegate.getListOfKeys(type));
+    }
+
+    public Map<String, List<String>> getMechanisms() throws CryptoException {
+        return timed("list.mechanisms", NO_ALGORITHM, NO_KEY, NO_PAYLOAD, delegate::getMechanisms);
+    }
+
+    public InventorySnapshot<List<Pkcs11SlotInfo>> getListOfSlots() throws CryptoException {
+        return timed("list.slots", NO_ALGORITHM, NO_KEY, NO_PAYLOAD, delegate::getListOfSlots);
+    }
+
+    public InventorySnapshot<List<Pkcs11ObjectInfo>> getListOfKeysFromSlot(int slotId) throws CryptoException {
+        return timed("list.objects", NO_ALGORITHM, NO_KEY, NO_PAYLOAD, () -> delegate.getListOfKeysFromSlot(slotId));
+    }
+
+    public InventorySnapshot<Pkcs11ObjectPage> getObjectPageFromSlot(int slotId, Pkcs11ObjectQuery query) throws CryptoException {
+        return timed("list.objects.page", NO_ALGORITHM, NO_KEY, NO_PAYLOAD, () -> delegate.getObjectPageFromSlot(slotId, query));
+    }
+
+    public String signMessageWithGiveKeyAlias(String keyAlias, String message, String signatureAlgorithm) throws CryptoException {
+        return timed("alias.sign", signatureAlgorithm, aliasKeyClass(signatureAlgorithm), length(message),
+                () -> delegate.signMessageWithGiveKeyAlias(keyAlias, message, signatureAlgorithm));
+    }
+
+    public String verifyMessageWithGiveKeyAlias(String keyAlias, String message, String base64Signature, String signatureAlgorithm) throws CryptoException {
+        return timed("alias.verify", signatureAlgorithm, aliasKeyClass(signatureAlgorithm), length(message),
+                () -> delegate.verifyMessageWithGiveKeyAlias(keyAlias, message, base64Signature, signatureAlgorithm));
+    }
+
+    public byte[] signBytesWithGivenKeyAlias(String keyAlias, byte[] message, String signatureAlgorithm) throws CryptoException {
+        return timed("alias.sign.raw", signatureAlgorithm, aliasKeyClass(signatureAlgorithm), length(message),
+                () -> delegate.signBytesWithGivenKeyAlias(keyAlias, message, signatureAlgorithm));
+    }
+
+    public boolean verifyBytesWithGivenKeyAlias(String keyAlias, byte[] message, byte[] signature, String signatureAlgorithm) throws CryptoException {
+        return timed("alias.verify.raw", signatureAlgorithm, aliasKeyClass(signatureAlgorithm), length(message),
+                () -> delegate.verifyBytesWithGivenKeyAlias(keyAlias, message, signature, signatureAlgorithm));
+    }
+
+    public BatchResult<String> signBatchWithGivenKeyAlias(String keyAlias, List<String> messages, String signatureAlgorithm) throws CryptoException {
+        return timed("alias.sign.batch", signatureAlgorithm, aliasKeyClass(signatureAlgorithm), length(messages),
+                () -> delegate.signBatchWithGivenKeyAlias(keyAlias, messages, signatureAlgorithm));
+    }
+
+    public BatchResult<Boolean> verifyBatchWithGivenKeyAlias(String keyAlias, List<String> messages, List<String> base64Signatures, String signatureAlgorithm) throws CryptoException {
+        return timed("alias.verify.batch", signatureAlgorithm, aliasKeyClass(signatureAlgorithm), length(messages),
+                () -> delegate.verifyBatchWithGivenKeyAlias(keyAlias, messages, base64Signatures, signatureAlgorithm));
+    }
+
+    public EnvelopeCiphertext encryptEnvelope(byte[] plainBytes) throws CryptoException {
+        return timed("envelope.encrypt", CryptoAlgorithm.AES.name(), ENVELOPE_KEY, length(plainBytes), () -> delegate.encryptEnvelope(plainBytes));
+    }
+
+    public byte[] decryptEnvelope(byte[] wrappedKey, byte[] cipherText) throws CryptoException {
+        return timed("envelope.decrypt", CryptoAlgorithm.AES.name(), ENVELOPE_KEY, length(cipherText), () -> delegate.decryptEnvelope(wrappedKey, cipherText));
+    }
+
+    private <T, E extends Exception> T timed(String operation, String algorithm, String keyClass, long payloadBytes, Call<T, E> call) throws E {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(operation, algorithm, keyClass, payloadBucket(payloadBytes), outcome));
+        }
+    }
+
+    // The size of a stream is only known once it has been consumed
+    private long timedStream(String operation, String algorithm, String keyClass, Call<Long, IOException> call) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long bytes = NO_PAYLOAD;
+        String outcome = "failure";
+        try {
+            bytes = call.call();
+            outcome = "success";
+            return bytes;
+        } finally {
+            sample.stop(timer(operation, algorithm, keyClass, payloadBucket(bytes), outcome));
+        }
+    }
+
+    private Timer timer(String operation, String algorithm, String keyClass, String payload, String outcome) {
+        return Timer.builder("hsm.crypto.operation")
+                .description("Latency of Pkcs11CryptoService operations")
+                .tag("operation", operation)
+                .tag("algorithm", algorithmTag(algorithm))
+                .tag("key", keyClass)
+                .tag("payload", payload)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String algorithmTag(String algorithm) {
+        if (algorithm == null) {
+            return NO_ALGORITHM;
+        }
+        return KNOWN_ALGORITHMS.getOrDefault(algorithm.trim().toLowerCase(Locale.ROOT), OTHER_ALGORITHM);
+    }
+
+    private static Map<String, String> knownAlgorithms() {
+        List<String> names = new ArrayList<>(List.of(NO_ALGORITHM,
+                "RSA", "EC", "DSA", "DH", "AES", "DES", "DESede", "HmacSHA1", "HmacSHA256", "HmacSHA384", "HmacSHA512",
+                "NONEwithRSA", "SHA1withRSA", "SHA224withRSA", "SHA256withRSA", "SHA384withRSA", "SHA512withRSA",
+                "RSASSA-PSS", "SHA1withRSASSA-PSS", "SHA224withRSASSA-PSS", "SHA256withRSASSA-PSS",
+                "SHA384withRSASSA-PSS", "SHA512withRSASSA-PSS",
+                "NONEwithECDSA", "SHA1withECDSA", "SHA224withECDSA", "SHA256withECDSA", "SHA384withECDSA", "SHA512withECDSA",
+                "NONEwithDSA", "SHA1withDSA", "SHA224withDSA", "SHA256withDSA"));
+        Arrays.stream(CryptoAlgorithm.values()).map(Enum::name).forEach(names::add);
+        Arrays.stream(AsymmetricKeyType.values()).map(Enum::name).forEach(names::add);
+        Arrays.stream(SymmetricKeyType.values()).map(Enum::name).forEach(names::add);
+        Map<String, String> known = new HashMap<>();
+        names.forEach(name -> known.put(name.toLowerCase(Locale.ROOT), name));
+        return Map.copyOf(known);
+    }
+
+    private static String payloadBucket(long bytes) {
+        if (bytes < 0) return "none";
+        if (bytes <= 64) return "<=64B";
+        if (bytes <= 1024) return "<=1KiB";
+        if (bytes <= 16 * 1024) return "<=16KiB";
+        if (bytes <= 1024 * 1024) return "<=1MiB";
+        return ">1MiB";
+    }
+
+    // SHA256withECDSA -> alias-ec, SHA256withRSA/PSS -> alias-rsa
+    private static String aliasKeyClass(String signatureAlgorithm) {
+        if (signatureAlgorithm == null) {
+            return "alias";
+        }
+        String upper = signatureAlgorithm.toUpperCase(Locale.ROOT);
+        if (upper.contains("ECDSA")) return "alias-ec";
+        if (upper.contains("RSA")) return "alias-rsa";
+        if (upper.contains("DSA")) return "alias-dsa";
+        return "alias";
+    }
+
+    private static long length(String value) {
+        return value == null ? NO_PAYLOAD : value.length();
+    }
+
+    private static long length(byte[] value) {
+        return value == null ? NO_PAYLOAD : value.length;
+    }
+
+    private static long length(List<String> values) {
+        if (values == null) {
+            return NO_PAYLOAD;
+        }
+        long total = 0;
+        for (String value : values) {
+            total += value == null ? 0 : value.length();
+        }
+        return total;
+    }
+}
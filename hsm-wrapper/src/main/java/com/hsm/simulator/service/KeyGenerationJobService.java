@@ -0,0 +1,16 @@
+package com.hsm.simulator.service;
+
+import com.hsm.simulator.dto.JobInfo;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.SymmetricKeyType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface KeyGenerationJobService {
+    JobInfo submitKeyPairGeneration(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException;
+    JobInfo submitKeyGeneration(String algorithm, int keySize, String alias) throws CryptoException;
+    JobInfo submitAsymmetricKeyGeneration(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException;
+    JobInfo submitSymmetricKeyGeneration(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException;
+    JobInfo getJob(String jobId) throws CryptoException;
+    SseEmitter subscribe(String jobId) throws CryptoException;
+}
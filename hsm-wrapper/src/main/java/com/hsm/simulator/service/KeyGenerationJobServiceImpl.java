@@ -0,0 +1,211 @@
+package com.hsm.simulator.service;
+
+import com.hsm.simulator.config.CryptoServiceConfig;
+import com.hsm.simulator.dto.JobInfo;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.exception.HsmBusyException;
+import com.hsm.simulator.model.JobStatus;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.SymmetricKeyType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs key generation in the background so that slow key types (RSA_16384, DH_10000, ...) do not hold
+ * an HTTP connection or a servlet thread for minutes.
+ * <p>
+ * Jobs run on {@code jobs.parallelism} worker threads; at most {@code jobs.queue-capacity} more may
+ * wait, further submissions are rejected with {@link HsmBusyException}. Finished jobs stay queryable
+ * for {@code jobs.retention}. That is the admission control for jobs: once accepted, a job waits for
+ * its KEYGEN permit however long synchronous key generation keeps the lane busy, rather than failing
+ * with "HSM is busy" after the acquire timeout (see {@link CryptoServiceConfig#KEY_GENERATION_JOBS}).
+ * It is metered like the synchronous endpoints.
+ */
+@Service
+public class KeyGenerationJobServiceImpl implements KeyGenerationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyGenerationJobServiceImpl.class);
+
+    private static final class Job {
+        private final String id;
+        private final String operation;
+        private final Instant submittedAt = Instant.now();
+        private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant completedAt;
+        private volatile List<String> result;
+        private volatile String error;
+
+        private Job(String id, String operation) {
+            this.id = id;
+            this.operation = operation;
+        }
+
+        private JobInfo toInfo() {
+            return new JobInfo(id, operation, status, submittedAt, startedAt, completedAt, result, error);
+        }
+    }
+
+    private final Pkcs11CryptoService cryptoService;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final long eventsTimeoutMillis;
+
+    public KeyGenerationJobServiceImpl(@Qualifier(CryptoServiceConfig.KEY_GENERATION_JOBS) Pkcs11CryptoService cryptoService,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${jobs.parallelism:2}") int parallelism,
+                                       @Value("${jobs.queue-capacity:32}") int queueCapacity,
+                                       @Value("${jobs.retention:PT1H}") Duration retention,
+                                       @Value("${jobs.events.timeout:PT30M}") Duration eventsTimeout) {
+        this.cryptoService = cryptoService;
+        this.retention = retention;
+        this.eventsTimeoutMillis = eventsTimeout.toMillis();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(Math.max(1, parallelism), Math.max(1, parallelism),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "hsm-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("hsm.jobs.queued", workers, executor -> executor.getQueue().size())
+                .description("Key generation jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("hsm.jobs.running", workers, ThreadPoolExecutor::getActiveCount)
+                .description("Key generation jobs currently running")
+                .register(meterRegistry);
+    }
+
+    public JobInfo submitKeyPairGeneration(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException {
+        return submit("generateKeyPair", () -> cryptoService.generateKeyPair(algorithm, keySize, ecCurve, alias));
+    }
+
+    public JobInfo submitKeyGeneration(String algorithm, int keySize, String alias) throws CryptoException {
+        return submit("generateKey", () -> cryptoService.generateKey(algorithm, keySize, alias));
+    }
+
+    public JobInfo submitAsymmetricKeyGeneration(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        return submit("tool.generateAsymmetricKeyPair", () -> cryptoService.generateAsymmetricKeys(asymmetricKeyType, id, keyPairLabel));
+    }
+
+    public JobInfo submitSymmetricKeyGeneration(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        return submit("tool.generateSymmetricKey", () -> cryptoService.generateSymmetricKeys(symmetricKeyType, id, keyPairLabel));
+    }
+
+    public JobInfo getJob(String jobId) throws CryptoException {
+        return find(jobId).toInfo();
+    }
+
+    /**
+     * Streams the job's state as {@code status} events: the current state right away, then every
+     * transition. The stream completes once the job has succeeded or failed.
+     */
+    public SseEmitter subscribe(String jobId) throws CryptoException {
+        Job job = find(jobId);
+        SseEmitter emitter = new SseEmitter(eventsTimeoutMillis);
+        emitter.onCompletion(() -> job.subscribers.remove(emitter));
+        emitter.onTimeout(() -> job.subscribers.remove(emitter));
+        emitter.onError(e -> job.subscribers.remove(emitter));
+        // Register before reading the state, so a transition in between is not missed
+        job.subscribers.add(emitter);
+        send(job, emitter);
+        if (job.status.isTerminal() && job.subscribers.remove(emitter)) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.purge-interval:PT1M}", initialDelayString = "${jobs.purge-interval:PT1M}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.status.isTerminal() && job.completedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private JobInfo submit(String operation, Supplier<List<String>> generation) {
+        Job job = new Job(UUID.randomUUID().toString(), operation);
+        jobs.put(job.id, job);
+        try {
+            CompletableFuture.supplyAsync(() -> {
+                job.startedAt = Instant.now();
+                job.status = JobStatus.RUNNING;
+                publish(job);
+                return generation.get();
+            }, workers).whenComplete((result, failure) -> complete(job, result, failure));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new HsmBusyException("Too many key generation jobs queued, try again later");
+        }
+        return job.toInfo();
+    }
+
+    private void complete(Job job, List<String> result, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            log.warn("Job {} ({}) failed: {}", job.id, job.operation, cause.getMessage());
+            job.error = cause.getMessage();
+        } else {
+            job.result = result;
+        }
+        job.completedAt = Instant.now();
+        job.status = failure != null ? JobStatus.FAILED : JobStatus.SUCCEEDED;
+        publish(job);
+    }
+
+    private void publish(Job job) {
+        boolean terminal = job.status.isTerminal();
+        for (SseEmitter emitter : job.subscribers) {
+            send(job, emitter);
+            if (terminal && job.subscribers.remove(emitter)) {
+                emitter.complete();
+            }
+        }
+    }
+
+    private static void send(Job job, SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(job.toInfo()));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter's error callback unsubscribes it
+            job.subscribers.remove(emitter);
+        }
+    }
+
+    private Job find(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new CryptoException("Unknown or expired job: " + jobId);
+        }
+        return job;
+    }
+}
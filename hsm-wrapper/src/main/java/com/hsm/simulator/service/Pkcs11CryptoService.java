@@ -1,29 +1,56 @@
 package com.hsm.simulator.service;
 
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
 import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
 import com.hsm.simulator.dto.Pkcs11SlotInfo;
 import com.hsm.simulator.exception.CryptoException;
 import com.hsm.simulator.model.CryptoAlgorithm;
 import com.hsm.simulator.util.AsymmetricKeyType;
 import com.hsm.simulator.util.SymmetricKeyType;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 public interface Pkcs11CryptoService {
     String encrypt(CryptoAlgorithm algorithm, String plainText) throws CryptoException;
     String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException;
+    BatchResult<String> encryptBatch(CryptoAlgorithm algorithm, List<String> plainTexts) throws CryptoException;
+    BatchResult<String> decryptBatch(CryptoAlgorithm algorithm, List<String> base64EncryptedList) throws CryptoException;
+    long encryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException;
+    long decryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException;
     String sign(CryptoAlgorithm signType, String message) throws CryptoException;
     boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException;
     String generateRandom(int byteCount) throws CryptoException;
+    byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes) throws CryptoException;
+    byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted) throws CryptoException;
+    byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes, byte[] aad) throws CryptoException;
+    byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted, byte[] aad) throws CryptoException;
+    byte[] signBytes(CryptoAlgorithm signType, byte[] message) throws CryptoException;
+    boolean verifyBytes(CryptoAlgorithm verifyType, byte[] message, byte[] signature) throws CryptoException;
+    byte[] generateRandomBytes(int byteCount) throws CryptoException;
+    long generateRandomStream(long byteCount, OutputStream out) throws CryptoException, IOException;
     List<String> generateKeyPair(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException;
     List<String> generateKey(String algorithm,int keySize, String alias ) throws CryptoException;
     List<String> generateAsymmetricKeys(AsymmetricKeyType asymmetricKeyType,String id, String keyPairLabel) throws CryptoException;
     List<String> generateSymmetricKeys(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException;
-    List<String> getListOfKeys(String type) throws CryptoException;
+    InventorySnapshot<List<String>> getListOfKeys(String type) throws CryptoException;
     Map<String, List<String>> getMechanisms() throws CryptoException;
-    List<Pkcs11SlotInfo> getListOfSlots() throws CryptoException;
-    List<Pkcs11ObjectInfo> getListOfKeysFromSlot(int slotId) throws CryptoException;
+    InventorySnapshot<List<Pkcs11SlotInfo>> getListOfSlots() throws CryptoException;
+    InventorySnapshot<List<Pkcs11ObjectInfo>> getListOfKeysFromSlot(int slotId) throws CryptoException;
+    InventorySnapshot<Pkcs11ObjectPage> getObjectPageFromSlot(int slotId, Pkcs11ObjectQuery query) throws CryptoException;
     String signMessageWithGiveKeyAlias(String keyAlias, String message, String signatureAlgorithm) throws CryptoException;
     String verifyMessageWithGiveKeyAlias(String keyAlias, String message,String base64Signature, String signatureAlgorithm) throws CryptoException;
+    byte[] signBytesWithGivenKeyAlias(String keyAlias, byte[] message, String signatureAlgorithm) throws CryptoException;
+    boolean verifyBytesWithGivenKeyAlias(String keyAlias, byte[] message, byte[] signature, String signatureAlgorithm) throws CryptoException;
+    BatchResult<String> signBatchWithGivenKeyAlias(String keyAlias, List<String> messages, String signatureAlgorithm) throws CryptoException;
+    BatchResult<Boolean> verifyBatchWithGivenKeyAlias(String keyAlias, List<String> messages, List<String> base64Signatures, String signatureAlgorithm) throws CryptoException;
+    EnvelopeCiphertext encryptEnvelope(byte[] plainBytes) throws CryptoException;
+    byte[] decryptEnvelope(byte[] wrappedKey, byte[] cipherText) throws CryptoException;
 }
@@ -1,9 +1,22 @@
 package com.hsm.simulator.service;
 
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
 import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
 import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import com.hsm.simulator.util.BatchExecutor;
 import com.hsm.simulator.util.CryptoUtils;
-import com.hsm.simulator.util.Pkcs11ToolHandler;
+import com.hsm.simulator.util.DataKeyCache;
+import com.hsm.simulator.util.KeyAliasCache;
+import com.hsm.simulator.util.KeyPairPool;
+import com.hsm.simulator.util.Pkcs11Engine;
+import com.hsm.simulator.util.ProviderPool;
+import com.hsm.simulator.util.RandomReservoir;
+import com.hsm.simulator.util.TokenInventory;
+import com.hsm.simulator.util.TokenObjectIndex;
 import com.hsm.simulator.config.Pkcs11Config;
 import com.hsm.simulator.exception.CryptoException;
 import com.hsm.simulator.model.CryptoAlgorithm;
@@ -11,70 +24,154 @@ import com.hsm.simulator.util.CryptoConstants;
 import com.hsm.simulator.util.AsymmetricKeyType;
 import com.hsm.simulator.util.SymmetricKeyType;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.AuthProvider;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
 import java.security.KeyStore;
-import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
 import java.security.Provider;
-import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.security.spec.ECGenParameterSpec;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 @Service
+@Profile("!softtoken")
 public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
 
+    private static final Logger log = LoggerFactory.getLogger(Pkcs11CryptoServiceImpl.class);
+
+    // RSA pair, HMAC key and the AES key behind AES, AES_GCM and CMAC
+    private record SessionKeys(KeyPair rsaKeyPair, SecretKey hmacKey, SecretKey aesKey) {
+    }
+
     private final AuthProvider hsmProvider;
-    private KeyPair rsaKeyPair;
-    private SecretKey pbkKeyPair;
-    private SecretKey hmacKey;
-    private SecretKey cmacKey;
+    private volatile SessionKeys sessionKeys;
     private final String hsmPin;
-    private final String slotOrSlotId;
-    private final Pkcs11ToolHandler pkcs11ToolHandler;
+    private final Pkcs11Config pkcs11Config;
+    private final Pkcs11Engine pkcs11Engine;
     private final CryptoUtils cryptoUtils;
-
-    public Pkcs11CryptoServiceImpl(Pkcs11Config pkcs11Config, Pkcs11ToolHandler pkcs11ToolHandler, CryptoUtils cryptoUtils) {
+    private final KeyAliasCache keyAliasCache;
+    private final TokenInventory tokenInventory;
+    private final TokenObjectIndex tokenObjectIndex;
+    private final ProviderPool providerPool;
+    private final BatchExecutor batchExecutor;
+    private final KeyPairPool keyPairPool;
+    private final RandomReservoir randomReservoir;
+    private final int streamChunkSize;
+    private final DataKeyCache dataKeyCache;
+    private final String envelopeKekAlias;
+    private volatile SecretKey envelopeKek;
+    private final boolean persistentKeys;
+    private final String bootstrapKeyLabel;
+
+    public Pkcs11CryptoServiceImpl(Pkcs11Config pkcs11Config, Pkcs11Engine pkcs11Engine, CryptoUtils cryptoUtils,
+                                   KeyAliasCache keyAliasCache, TokenInventory tokenInventory, ProviderPool providerPool,
+                                   BatchExecutor batchExecutor, KeyPairPool keyPairPool, RandomReservoir randomReservoir,
+                                   DataKeyCache dataKeyCache, TokenObjectIndex tokenObjectIndex,
+                                   @Value("${stream.chunk-size:65536}") int streamChunkSize,
+                                   @Value("${envelope.kek-alias:envelope-kek}") String envelopeKekAlias,
+                                   @Value("${startup.persistent-keys:true}") boolean persistentKeys,
+                                   @Value("${startup.bootstrap-key-label:bootstrap}") String bootstrapKeyLabel) {
         this.hsmProvider = pkcs11Config.getPkcs11Provider();
         this.hsmPin = pkcs11Config.getHsmPin();
-        this.slotOrSlotId = pkcs11Config.getSlotOrSlotId();
-        this.pkcs11ToolHandler = pkcs11ToolHandler;
+        this.pkcs11Config = pkcs11Config;
+        this.pkcs11Engine = pkcs11Engine;
         this.cryptoUtils = cryptoUtils;
+        this.keyAliasCache = keyAliasCache;
+        this.tokenInventory = tokenInventory;
+        this.tokenObjectIndex = tokenObjectIndex;
+        this.providerPool = providerPool;
+        this.batchExecutor = batchExecutor;
+        this.keyPairPool = keyPairPool;
+        this.randomReservoir = randomReservoir;
+        this.streamChunkSize = streamChunkSize;
+        this.dataKeyCache = dataKeyCache;
+        this.envelopeKekAlias = envelopeKekAlias;
+        this.persistentKeys = persistentKeys;
+        this.bootstrapKeyLabel = bootstrapKeyLabel;
     }
 
     @PostConstruct
-    public void init() throws NoSuchAlgorithmException {
-        KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance(CryptoConstants.RSA_ALGORITHM, hsmProvider);
-        keyPairGen.initialize(2048);
-        rsaKeyPair = keyPairGen.generateKeyPair();
-
-        // Initialize HMAC key
-        hmacKey = KeyGenerator.getInstance(CryptoConstants.HMAC_ALGORITHM, hsmProvider).generateKey();
+    public void init() {
+        if (!pkcs11Config.isLazyStartup()) {
+            sessionKeys();
+        }
+    }
 
-        // Initialize CMAC key
-        KeyGenerator keyGenerator = KeyGenerator.getInstance(CryptoConstants.AES_ALGORITHM, hsmProvider);
-        keyGenerator.init(128); // 128-bit AES key
-        cmacKey = keyGenerator.generateKey();
+    /**
+     * Builds the slot and object inventory once the application is up, so the first dashboard poll
+     * is already served from memory.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmInventory() {
+        try {
+            // Lazy startup: resolve the session keys now, unless a request already did
+            sessionKeys();
+        } catch (CryptoException e) {
+            log.warn("Failed to load session keys at startup : {}", e.getMessage());
+        }
+        try {
+            for (Pkcs11SlotInfo slot : getListOfSlots().getData()) {
+                if (slot.isInitialized()) {
+                    getListOfKeysFromSlot(Integer.parseUnsignedInt(slot.getSlotDecimal()));
+                }
+            }
+        } catch (CryptoException | NumberFormatException e) {
+            // Not fatal: the views are loaded on first request instead
+            log.warn("Failed to build token inventory at startup : {}", e.getMessage());
+        }
     }
 
 
     public String encrypt(CryptoAlgorithm algorithm, String plainText) throws CryptoException {
+        return Base64.getEncoder().encodeToString(encryptBytes(algorithm, plainText.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    public String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException {
+        byte[] base64EncryptedDecoded = Base64.getDecoder().decode(base64Encrypted.trim());
+        return new String(decryptBytes(algorithm, base64EncryptedDecoded), StandardCharsets.UTF_8);
+    }
+
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes) throws CryptoException {
+        return encryptBytes(algorithm, plainBytes, null);
+    }
+
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted) throws CryptoException {
+        return decryptBytes(algorithm, encrypted, null);
+    }
+
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes, byte[] aad) throws CryptoException {
+        requireAadSupport(algorithm, aad);
         try {
             return switch (algorithm) {
-                case RSA -> cryptoUtils.encryptWithRsa(rsaKeyPair, plainText, hsmProvider);
-                case AES -> cryptoUtils.encryptWithAes(cmacKey, plainText, hsmProvider);
+                case RSA -> cryptoUtils.encryptBytesWithRsa(sessionKeys().rsaKeyPair(), plainBytes, hsmProvider);
+                case AES -> cryptoUtils.encryptBytesWithAes(sessionKeys().aesKey(), plainBytes, hsmProvider);
+                case AES_GCM -> cryptoUtils.encryptBytesWithAesGcm(sessionKeys().aesKey(), plainBytes, aad, hsmProvider);
                 default -> throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
             };
         } catch (Exception e) {
@@ -83,12 +180,13 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
     }
 
 
-    public String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException {
-        byte[] base64EncryptedDecoded = Base64.getDecoder().decode(base64Encrypted.trim());
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted, byte[] aad) throws CryptoException {
+        requireAadSupport(algorithm, aad);
         try {
             return switch (algorithm) {
-                case RSA -> cryptoUtils.decryptWithRsa(rsaKeyPair,base64EncryptedDecoded,hsmProvider);
-                case AES -> cryptoUtils.decryptWithAes(cmacKey,base64EncryptedDecoded,hsmProvider);
+                case RSA -> cryptoUtils.decryptBytesWithRsa(sessionKeys().rsaKeyPair(), encrypted, hsmProvider);
+                case AES -> cryptoUtils.decryptBytesWithAes(sessionKeys().aesKey(), encrypted, hsmProvider);
+                case AES_GCM -> cryptoUtils.decryptBytesWithAesGcm(sessionKeys().aesKey(), encrypted, aad, hsmProvider);
                 default -> throw new CryptoException("Unsupported algorithm: " + algorithm);
             };
         } catch (Exception e) {
@@ -97,63 +195,132 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
     }
 
 
+    // Only AES-GCM authenticates additional data; ignoring it elsewhere would silently drop the binding
+    private static void requireAadSupport(CryptoAlgorithm algorithm, byte[] aad) {
+        if (aad != null && aad.length > 0 && algorithm != CryptoAlgorithm.AES_GCM) {
+            throw new CryptoException("Additional authenticated data is only supported with " + CryptoAlgorithm.AES_GCM);
+        }
+    }
+
+
+    public BatchResult<String> encryptBatch(CryptoAlgorithm algorithm, List<String> plainTexts) throws CryptoException {
+        BatchExecutor.ChunkTask<String> task = switch (algorithm) {
+            case RSA -> (fromIndex, toIndex) -> cryptoUtils.encryptBatchWithRsa(sessionKeys().rsaKeyPair(), plainTexts.subList(fromIndex, toIndex), hsmProvider);
+            case AES -> (fromIndex, toIndex) -> cryptoUtils.encryptBatchWithAes(sessionKeys().aesKey(), plainTexts.subList(fromIndex, toIndex), hsmProvider);
+            case AES_GCM -> (fromIndex, toIndex) -> cryptoUtils.encryptBatchWithAesGcm(sessionKeys().aesKey(), plainTexts.subList(fromIndex, toIndex), hsmProvider);
+            default -> throw new CryptoException("Unsupported algorithm: " + algorithm);
+        };
+        return batchExecutor.execute("encrypt." + algorithm, plainTexts.size(), task);
+    }
+
+
+    public BatchResult<String> decryptBatch(CryptoAlgorithm algorithm, List<String> base64EncryptedList) throws CryptoException {
+        BatchExecutor.ChunkTask<String> task = switch (algorithm) {
+            case RSA -> (fromIndex, toIndex) -> cryptoUtils.decryptBatchWithRsa(sessionKeys().rsaKeyPair(), base64EncryptedList.subList(fromIndex, toIndex), hsmProvider);
+            case AES -> (fromIndex, toIndex) -> cryptoUtils.decryptBatchWithAes(sessionKeys().aesKey(), base64EncryptedList.subList(fromIndex, toIndex), hsmProvider);
+            case AES_GCM -> (fromIndex, toIndex) -> cryptoUtils.decryptBatchWithAesGcm(sessionKeys().aesKey(), base64EncryptedList.subList(fromIndex, toIndex), hsmProvider);
+            default -> throw new CryptoException("Unsupported algorithm: " + algorithm);
+        };
+        return batchExecutor.execute("decrypt." + algorithm, base64EncryptedList.size(), task);
+    }
+
+
+    public long encryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        if (algorithm != CryptoAlgorithm.AES) {
+            throw new CryptoException("Unsupported algorithm for streaming: " + algorithm);
+        }
+        try {
+            return cryptoUtils.encryptStreamWithAes(sessionKeys().aesKey(), in, out, streamChunkSize, hsmProvider);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Stream encryption failed : " + e.getMessage());
+        }
+    }
+
+
+    public long decryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        if (algorithm != CryptoAlgorithm.AES) {
+            throw new CryptoException("Unsupported algorithm for streaming: " + algorithm);
+        }
+        try {
+            return cryptoUtils.decryptStreamWithAes(sessionKeys().aesKey(), in, out, streamChunkSize, hsmProvider);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Stream decryption failed : " + e.getMessage());
+        }
+    }
+
+
     public String sign(CryptoAlgorithm signType, String message) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytes(signType, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    public boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException {
+        byte[] base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
+        return verifyBytes(verifyType, message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded);
+    }
+
+
+    public byte[] signBytes(CryptoAlgorithm signType, byte[] message) throws CryptoException {
         return switch (signType) {
-            case HMAC -> cryptoUtils.signMessageWithHmac(message, hmacKey, hsmProvider);
-            case CMAC -> cryptoUtils.signMessageWithCmac(message, cmacKey, hsmProvider);
-            case RSA -> cryptoUtils.signMessageWithRsa(message, rsaKeyPair, hsmProvider);
+            case HMAC -> cryptoUtils.signBytesWithHmac(message, sessionKeys().hmacKey(), hsmProvider);
+            case CMAC -> cryptoUtils.signBytesWithCmac(message, sessionKeys().aesKey(), hsmProvider);
+            case RSA -> cryptoUtils.signBytesWithRsa(message, sessionKeys().rsaKeyPair(), hsmProvider);
             default -> throw new CryptoException("Unsupported signType: " + signType);
         };
     }
 
 
-    public boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException {
-        byte[] base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
+    public boolean verifyBytes(CryptoAlgorithm verifyType, byte[] message, byte[] signature) throws CryptoException {
         return switch (verifyType) {
-            case HMAC -> cryptoUtils.verifyMessageWithHmac(message, base64SignatureDecoded, hmacKey, hsmProvider);
-            case CMAC -> cryptoUtils.verifyMessageWithCmac(message, base64SignatureDecoded, cmacKey, hsmProvider);
-            case RSA -> cryptoUtils.verifyMessageWithRsa(message, base64SignatureDecoded, rsaKeyPair, hsmProvider);
+            case HMAC -> cryptoUtils.verifyBytesWithHmac(message, signature, sessionKeys().hmacKey(), hsmProvider);
+            case CMAC -> cryptoUtils.verifyBytesWithCmac(message, signature, sessionKeys().aesKey(), hsmProvider);
+            case RSA -> cryptoUtils.verifyBytesWithRsa(message, signature, sessionKeys().rsaKeyPair(), hsmProvider);
             default -> throw new CryptoException("Unsupported verifyType: " + verifyType);
         };
     }
 
 
     public String generateRandom(int byteCount) throws CryptoException {
-        try {
-            SecureRandom secureRandom = SecureRandom.getInstance(CryptoConstants.PKCS11_PROVIDER, hsmProvider);
-            byte[] randomBytes = new byte[byteCount];
-            secureRandom.nextBytes(randomBytes);
-            return Base64.getEncoder().encodeToString(randomBytes);
-        } catch (Exception e) {
-            throw new CryptoException("Random generation failed :" + e.getMessage());
-        }
+        return Base64.getEncoder().encodeToString(generateRandomBytes(byteCount));
+    }
+
+
+    public byte[] generateRandomBytes(int byteCount) throws CryptoException {
+        return randomReservoir.nextBytes(byteCount);
+    }
+
+
+    public long generateRandomStream(long byteCount, OutputStream out) throws CryptoException, IOException {
+        return randomReservoir.stream(byteCount, out);
     }
 
     public List<String> generateKeyPair(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException {
         try {
 
-            KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance(algorithm, hsmProvider);
+            if ("EC".equalsIgnoreCase(algorithm) && (ecCurve == null || ecCurve.isEmpty())) {
+                throw new CryptoException("Curve name required for EC algorithm i.e secp256r1");
+            }
 
-            if ("EC".equalsIgnoreCase(algorithm)) {
-                if (ecCurve == null || ecCurve.isEmpty()) {
-                    throw new CryptoException("Curve name required for EC algorithm i.e secp256r1");
+            // Shared PKCS#11 KeyStore, loaded once by the alias cache
+            KeyStore keyStore = keyAliasCache.getKeyStore(hsmProvider);
+            // Checked before taking a pooled pair too, so duplicate aliases do not drain the pool
+            synchronized (keyStore) {
+                if (keyStore.containsAlias(alias)) {
+                    throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
                 }
-                keyPairGen.initialize(new ECGenParameterSpec(ecCurve));
-            } else {
-                keyPairGen.initialize(keySize);
             }
 
-            KeyPair keyPair = keyPairGen.generateKeyPair();
-
-            // Generate self-signed cert
-            X509Certificate x509Certificate = cryptoUtils.generateSelfSignedCertificate(keyPair, algorithm);
-
-            // Load PKCS#11 KeyStore
-            KeyStore keyStore = KeyStore.getInstance("PKCS11", hsmProvider);
-            keyStore.load(null, hsmPin.toCharArray());
-
-            if (keyStore.containsAlias(alias)) {
-                throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
+            // A pre-generated pair (with its certificate) if the pool keeps this spec, otherwise generate inline
+            KeyPairPool.PooledKeyPair pooled = keyPairPool.take(algorithm, keySize, ecCurve).orElse(null);
+            KeyPair keyPair;
+            X509Certificate x509Certificate;
+            if (pooled != null) {
+                keyPair = pooled.getKeyPair();
+                x509Certificate = pooled.getCertificate();
+            } else {
+                keyPair = cryptoUtils.generateKeyPair(algorithm, keySize, ecCurve, hsmProvider);
+                // Generate self-signed cert
+                x509Certificate = cryptoUtils.generateSelfSignedCertificate(keyPair, algorithm);
             }
 
             KeyStore.PrivateKeyEntry entry = new KeyStore.PrivateKeyEntry(
@@ -161,7 +328,18 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
                     new Certificate[]{x509Certificate}
             );
             KeyStore.ProtectionParameter protection = new KeyStore.PasswordProtection(hsmPin.toCharArray());
-            keyStore.setEntry(alias, entry, protection);
+            synchronized (keyStore) {
+                if (keyStore.containsAlias(alias)) {
+                    // Created concurrently while the pair was prepared
+                    if (pooled != null) {
+                        keyPairPool.giveBack(pooled);
+                    }
+                    throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
+                }
+                keyStore.setEntry(alias, entry, protection);
+            }
+            keyAliasCache.invalidate(alias);
+            tokenInventory.invalidateAll();
 
             List<String> result = new ArrayList<>();
 
@@ -187,17 +365,19 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
             keyGen.init(keySize);
             SecretKey secretKey = keyGen.generateKey();
 
-            // Save the key in the keystore
-            KeyStore keyStore = KeyStore.getInstance("PKCS11", hsmProvider);
-            keyStore.load(null, hsmPin.toCharArray());
+            // Save the key in the shared keystore
+            KeyStore keyStore = keyAliasCache.getKeyStore(hsmProvider);
             KeyStore.SecretKeyEntry secretKeyEntry = new KeyStore.SecretKeyEntry(secretKey);
             KeyStore.ProtectionParameter protectionParam = new KeyStore.PasswordProtection(hsmPin.toCharArray());
 
-            if (keyStore.containsAlias(alias)) {
-                throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
+            synchronized (keyStore) {
+                if (keyStore.containsAlias(alias)) {
+                    throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
+                }
+                keyStore.setEntry(alias, secretKeyEntry, protectionParam);
             }
-
-            keyStore.setEntry(alias, secretKeyEntry, protectionParam);
+            keyAliasCache.invalidate(alias);
+            tokenInventory.invalidateAll();
 
             List<String> result = new ArrayList<>();
 
@@ -219,7 +399,11 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
     public List<String> generateAsymmetricKeys(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException {
 
         try {
-            return pkcs11ToolHandler.generateKeyPair(slotOrSlotId, hsmPin, asymmetricKeyType, id, keyPairLabel);
+            List<String> result = pkcs11Engine.generateKeyPair(pkcs11Config.getSlotOrSlotId(), hsmPin, asymmetricKeyType, id, keyPairLabel);
+            // Objects created outside the keystore are only visible after a reload
+            keyAliasCache.invalidateAll();
+            tokenInventory.invalidateAll();
+            return result;
         } catch (IOException e) {
             throw new CryptoException("KeyPair generation and import failed !", e);
         } catch (InterruptedException e) {
@@ -230,7 +414,10 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
 
     public List<String> generateSymmetricKeys(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException {
         try {
-            return pkcs11ToolHandler.generateKeys(slotOrSlotId, hsmPin, symmetricKeyType, id, keyPairLabel);
+            List<String> result = pkcs11Engine.generateKeys(pkcs11Config.getSlotOrSlotId(), hsmPin, symmetricKeyType, id, keyPairLabel);
+            keyAliasCache.invalidateAll();
+            tokenInventory.invalidateAll();
+            return result;
         } catch (IOException e) {
             throw new CryptoException("Key generation and import failed !", e);
         } catch (InterruptedException e) {
@@ -239,9 +426,9 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
         }
     }
 
-    public List<String> getListOfKeys(String type) throws CryptoException {
+    public InventorySnapshot<List<String>> getListOfKeys(String type) throws CryptoException {
         try {
-            return pkcs11ToolHandler.getListOfKeys(slotOrSlotId, hsmPin, type);
+            return tokenInventory.get("keys:" + type, () -> pkcs11Engine.getListOfKeys(pkcs11Config.getSlotOrSlotId(), hsmPin, type));
         } catch (IOException e) {
             throw new CryptoException("Failed to list keys !", e);
         } catch (InterruptedException e) {
@@ -265,9 +452,9 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
         }
     }
 
-    public List<Pkcs11SlotInfo> getListOfSlots() throws CryptoException {
+    public InventorySnapshot<List<Pkcs11SlotInfo>> getListOfSlots() throws CryptoException {
         try {
-            return pkcs11ToolHandler.getListOfSlots(slotOrSlotId, hsmPin);
+            return tokenInventory.get("slots", () -> pkcs11Engine.getListOfSlots(pkcs11Config.getSlotOrSlotId(), hsmPin));
 
         } catch (IOException e) {
             throw new CryptoException("Failed to retrieve slots!", e);
@@ -278,9 +465,9 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
 
     }
 
-    public List<Pkcs11ObjectInfo> getListOfKeysFromSlot(int slotId) throws CryptoException {
+    public InventorySnapshot<List<Pkcs11ObjectInfo>> getListOfKeysFromSlot(int slotId) throws CryptoException {
         try {
-            return pkcs11ToolHandler.getObjectsListInSlot(slotId,hsmPin);
+            return tokenInventory.get("objects:" + slotId, () -> pkcs11Engine.getObjectsListInSlot(slotId, hsmPin));
         } catch (IOException e) {
             throw new CryptoException("Failed to list keys from slot " + slotId + "!", e);
         } catch (InterruptedException e) {
@@ -289,9 +476,14 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
         }
     }
 
+    public InventorySnapshot<Pkcs11ObjectPage> getObjectPageFromSlot(int slotId, Pkcs11ObjectQuery query) throws CryptoException {
+        return tokenObjectIndex.page(slotId, getListOfKeysFromSlot(slotId), query);
+    }
+
     public String signMessageWithGiveKeyAlias(String keyAlias, String message,String signatureAlgorithm) throws CryptoException {
         try {
-            return cryptoUtils.signMessageWithGivenKeyAlias(message, keyAlias,signatureAlgorithm, hsmPin, hsmProvider);
+            return providerPool.withProvider(holding(keyAlias), provider ->
+                    cryptoUtils.signMessageWithGivenKeyAlias(message, keyAlias, signatureAlgorithm, provider));
 
         } catch (Exception e) {
             throw new CryptoException("Signing failed : " + e.getMessage());
@@ -300,12 +492,198 @@ public class Pkcs11CryptoServiceImpl implements Pkcs11CryptoService {
 
     public String verifyMessageWithGiveKeyAlias(String keyAlias, String message,String base64Signature, String signatureAlgorithm) throws CryptoException{
         try {
-            return cryptoUtils.verifyMessageWithGivenKeyAlias(message, base64Signature, keyAlias, signatureAlgorithm, hsmPin, hsmProvider);
+            return providerPool.withProvider(holding(keyAlias), provider ->
+                    cryptoUtils.verifyMessageWithGivenKeyAlias(message, base64Signature, keyAlias, signatureAlgorithm, provider));
+        } catch (Exception e) {
+            throw new CryptoException("Verification failed : " + e.getMessage());
+        }
+    }
+
+    public byte[] signBytesWithGivenKeyAlias(String keyAlias, byte[] message, String signatureAlgorithm) throws CryptoException {
+        try {
+            return providerPool.withProvider(holding(keyAlias), provider ->
+                    cryptoUtils.signBytesWithGivenKeyAlias(message, keyAlias, signatureAlgorithm, provider));
+        } catch (Exception e) {
+            throw new CryptoException("Signing failed : " + e.getMessage());
+        }
+    }
+
+    public boolean verifyBytesWithGivenKeyAlias(String keyAlias, byte[] message, byte[] signature, String signatureAlgorithm) throws CryptoException {
+        try {
+            return providerPool.withProvider(holding(keyAlias), provider ->
+                    cryptoUtils.verifyBytesWithGivenKeyAlias(message, signature, keyAlias, signatureAlgorithm, provider));
         } catch (Exception e) {
             throw new CryptoException("Verification failed : " + e.getMessage());
         }
     }
 
+    public BatchResult<String> signBatchWithGivenKeyAlias(String keyAlias, List<String> messages, String signatureAlgorithm) throws CryptoException {
+        // Each chunk runs on one pool member and resolves the (cached) key handle of that member's slot
+        return batchExecutor.execute("sign", messages.size(), (fromIndex, toIndex) -> providerPool.withProvider(holding(keyAlias), provider ->
+                cryptoUtils.signMessagesWithPrivateKey(messages.subList(fromIndex, toIndex),
+                        keyAliasCache.getPrivateKey(keyAlias, provider), signatureAlgorithm, provider)));
+    }
 
+    public BatchResult<Boolean> verifyBatchWithGivenKeyAlias(String keyAlias, List<String> messages, List<String> base64Signatures, String signatureAlgorithm) throws CryptoException {
+        if (messages.size() != base64Signatures.size()) {
+            throw new CryptoException("Number of messages and signatures must match");
+        }
+        return batchExecutor.execute("verify", messages.size(), (fromIndex, toIndex) -> providerPool.withProvider(holding(keyAlias), provider ->
+                cryptoUtils.verifyMessagesWithPublicKey(messages.subList(fromIndex, toIndex), base64Signatures.subList(fromIndex, toIndex),
+                        keyAliasCache.getCertificate(keyAlias, provider).getPublicKey(), signatureAlgorithm, provider)));
+    }
+
+    // Pool members that can use the alias; keys generated through the API exist on the primary token only
+    private Predicate<AuthProvider> holding(String keyAlias) {
+        return provider -> provider == hsmProvider || keyAliasCache.containsAlias(keyAlias, provider);
+    }
 
+    public EnvelopeCiphertext encryptEnvelope(byte[] plainBytes) throws CryptoException {
+        byte[] dataKey = null;
+        try {
+            // Cached data key if it still has room, else a fresh one from the token's RNG wrapped in the token
+            DataKeyCache.DataKey key = dataKeyCache.encryptionKey(plainBytes.length, () -> {
+                byte[] freshKey = randomReservoir.nextBytes(CryptoConstants.DATA_KEY_SIZE / 8);
+                return new DataKeyCache.DataKey(freshKey, cryptoUtils.wrapKeyWithAes(getEnvelopeKek(), freshKey, hsmProvider));
+            });
+            dataKey = key.plainKey();
+            return new EnvelopeCiphertext(envelopeKekAlias, key.wrappedKey(), cryptoUtils.encryptBytesWithDataKey(dataKey, plainBytes));
+        } catch (Exception e) {
+            throw new CryptoException("Envelope encryption failed : " + e.getMessage());
+        } finally {
+            if (dataKey != null) {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+        }
+    }
+
+    public byte[] decryptEnvelope(byte[] wrappedKey, byte[] cipherText) throws CryptoException {
+        byte[] dataKey;
+        try {
+            dataKey = dataKeyCache.decryptionKey(wrappedKey, wrapped -> cryptoUtils.unwrapKeyWithAes(getEnvelopeKek(), wrapped, hsmProvider));
+        } catch (Exception e) {
+            throw new CryptoException("Envelope decryption failed : data key could not be unwrapped : " + e.getMessage());
+        }
+        try {
+            return cryptoUtils.decryptBytesWithDataKey(dataKey, cipherText);
+        } catch (Exception e) {
+            throw new CryptoException("Envelope decryption failed : " + e.getMessage());
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    // The key-encryption key is a token object, so envelopes stay decryptable across restarts; it is
+    // created on first use when the token does not hold it yet
+    private SecretKey getEnvelopeKek() throws GeneralSecurityException {
+        SecretKey kek = envelopeKek;
+        if (kek == null) {
+            synchronized (this) {
+                kek = envelopeKek;
+                if (kek == null) {
+                    kek = loadOrCreateEnvelopeKek();
+                    envelopeKek = kek;
+                }
+            }
+        }
+        return kek;
+    }
+
+    private SecretKey loadOrCreateEnvelopeKek() throws GeneralSecurityException {
+        return loadOrCreateSecretKey(envelopeKekAlias, CryptoConstants.AES_ALGORITHM, CryptoConstants.DATA_KEY_SIZE);
+    }
+
+    // Resolved on first use (or at startup when startup.lazy=false); requests racing for it wait for one load
+    private SessionKeys sessionKeys() {
+        SessionKeys keys = sessionKeys;
+        if (keys == null) {
+            synchronized (this) {
+                keys = sessionKeys;
+                if (keys == null) {
+                    keys = loadSessionKeys();
+                    sessionKeys = keys;
+                }
+            }
+        }
+        return keys;
+    }
+
+    // Persistent keys are token objects found by label, so the token generates them once, not on every
+    // boot, and cipher texts and MACs stay valid across restarts
+    private SessionKeys loadSessionKeys() {
+        long start = System.nanoTime();
+        try {
+            SessionKeys keys;
+            if (persistentKeys) {
+                keys = new SessionKeys(
+                        loadOrCreateRsaKeyPair(bootstrapKeyLabel + "-rsa"),
+                        loadOrCreateSecretKey(bootstrapKeyLabel + "-hmac", CryptoConstants.HMAC_ALGORITHM, 0),
+                        loadOrCreateSecretKey(bootstrapKeyLabel + "-aes", CryptoConstants.AES_ALGORITHM, CryptoConstants.SESSION_AES_KEY_SIZE));
+            } else {
+                KeyGenerator aesKeyGenerator = KeyGenerator.getInstance(CryptoConstants.AES_ALGORITHM, hsmProvider);
+                aesKeyGenerator.init(CryptoConstants.SESSION_AES_KEY_SIZE);
+                keys = new SessionKeys(
+                        cryptoUtils.generateKeyPair(CryptoConstants.RSA_ALGORITHM, CryptoConstants.SESSION_RSA_KEY_SIZE, null, hsmProvider),
+                        KeyGenerator.getInstance(CryptoConstants.HMAC_ALGORITHM, hsmProvider).generateKey(),
+                        aesKeyGenerator.generateKey());
+            }
+            log.info("Session keys {} in {} ms", persistentKeys ? "loaded" : "generated",
+                    (System.nanoTime() - start) / 1_000_000);
+            return keys;
+        } catch (Exception e) {
+            throw new CryptoException("Failed to load session keys : " + e.getMessage(), e);
+        }
+    }
+
+    private KeyPair loadOrCreateRsaKeyPair(String alias) throws Exception {
+        KeyStore keyStore = keyAliasCache.getKeyStore(hsmProvider);
+        KeyPair keyPair;
+        synchronized (keyStore) {
+            if (keyStore.getKey(alias, hsmPin.toCharArray()) instanceof PrivateKey existing) {
+                Certificate certificate = keyStore.getCertificate(alias);
+                if (certificate == null) {
+                    throw new GeneralSecurityException("No certificate found for alias: " + alias);
+                }
+                return new KeyPair(certificate.getPublicKey(), existing);
+            }
+            if (keyStore.containsAlias(alias)) {
+                throw new GeneralSecurityException("Alias '" + alias + "' is not a key pair");
+            }
+            KeyPair generated = cryptoUtils.generateKeyPair(CryptoConstants.RSA_ALGORITHM, CryptoConstants.SESSION_RSA_KEY_SIZE, null, hsmProvider);
+            X509Certificate certificate = cryptoUtils.generateSelfSignedCertificate(generated, CryptoConstants.RSA_ALGORITHM);
+            keyStore.setEntry(alias, new KeyStore.PrivateKeyEntry(generated.getPrivate(), new Certificate[]{certificate}),
+                    new KeyStore.PasswordProtection(hsmPin.toCharArray()));
+            keyPair = new KeyPair(certificate.getPublicKey(), (PrivateKey) keyStore.getKey(alias, hsmPin.toCharArray()));
+        }
+        keyAliasCache.invalidate(alias);
+        tokenInventory.invalidateAll();
+        log.info("Created key pair '{}'", alias);
+        return keyPair;
+    }
+
+    // keySize 0 keeps the generator's default size
+    private SecretKey loadOrCreateSecretKey(String alias, String algorithm, int keySize) throws GeneralSecurityException {
+        KeyStore keyStore = keyAliasCache.getKeyStore(hsmProvider);
+        SecretKey key;
+        synchronized (keyStore) {
+            if (keyStore.getKey(alias, hsmPin.toCharArray()) instanceof SecretKey existing) {
+                return existing;
+            }
+            if (keyStore.containsAlias(alias)) {
+                throw new GeneralSecurityException("Alias '" + alias + "' is not a secret key");
+            }
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(algorithm, hsmProvider);
+            if (keySize > 0) {
+                keyGenerator.init(keySize);
+            }
+            keyStore.setEntry(alias, new KeyStore.SecretKeyEntry(keyGenerator.generateKey()),
+                    new KeyStore.PasswordProtection(hsmPin.toCharArray()));
+            // Use the token object just stored rather than the session key it was generated as
+            key = (SecretKey) keyStore.getKey(alias, hsmPin.toCharArray());
+        }
+        keyAliasCache.invalidate(alias);
+        tokenInventory.invalidateAll();
+        log.info("Created secret key '{}'", alias);
+        return key;
+    }
 }
@@ -0,0 +1,665 @@
+package com.hsm.simulator.service;
+
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.dto.EnvelopeCiphertext;
+import com.hsm.simulator.dto.InventorySnapshot;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.util.AsymmetricKeyType;
+import com.hsm.simulator.util.BatchExecutor;
+import com.hsm.simulator.util.CryptoConstants;
+import com.hsm.simulator.util.CryptoUtils;
+import com.hsm.simulator.util.DataKeyCache;
+import com.hsm.simulator.util.SymmetricKeyType;
+import com.hsm.simulator.util.TokenInventory;
+import com.hsm.simulator.util.TokenObjectIndex;
+import jakarta.annotation.PostConstruct;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link Pkcs11CryptoService} backed by an in-memory software token instead of SoftHSM, for CI and
+ * load environments; enabled with the {@code softtoken} profile.
+ * <p>
+ * Keys live in concurrent maps and are used through the JDK providers (BouncyCastle for AESCMAC and
+ * named EC curves). All operations go through the same {@link CryptoUtils} methods as the PKCS#11
+ * implementation, so cipher texts (IV-prefixed AES), signatures and response lines have the same
+ * format. The token exposes a single, always initialized slot 0; nothing survives a restart.
+ */
+@Service
+@Profile("softtoken")
+public class SoftTokenCryptoServiceImpl implements Pkcs11CryptoService {
+
+    private static final int SLOT_ID = 0;
+    private static final String PRIVATE_KEY_ACCESS = "sensitive, always sensitive, never extractable, local";
+
+    // One object as it would be found on the token, rendered like the native engine renders it
+    private record TokenObject(String type, String keyType, String label, String id, String subject, String usage, String access) {
+    }
+
+    private final CryptoUtils cryptoUtils;
+    private final TokenInventory tokenInventory;
+    private final TokenObjectIndex tokenObjectIndex;
+    private final BatchExecutor batchExecutor;
+    private final int streamChunkSize;
+    private final int maxRandomBytes;
+    private final long maxStreamRandomBytes;
+    private final DataKeyCache dataKeyCache;
+    private final String envelopeKekAlias;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Map<String, KeyStore.Entry> entries = new ConcurrentHashMap<>();
+    private final List<TokenObject> objects = new CopyOnWriteArrayList<>();
+    private final Provider bouncyCastle;
+    private KeyPair rsaKeyPair;
+    private SecretKey hmacKey;
+    private SecretKey cmacKey;
+
+    public SoftTokenCryptoServiceImpl(CryptoUtils cryptoUtils, TokenInventory tokenInventory, BatchExecutor batchExecutor,
+                                      DataKeyCache dataKeyCache, TokenObjectIndex tokenObjectIndex,
+                                      @Value("${stream.chunk-size:65536}") int streamChunkSize,
+                                      @Value("${rng.max-bytes:65536}") int maxRandomBytes,
+                                      @Value("${rng.stream.max-bytes:1073741824}") long maxStreamRandomBytes,
+                                      @Value("${envelope.kek-alias:envelope-kek}") String envelopeKekAlias) {
+        this.cryptoUtils = cryptoUtils;
+        this.tokenInventory = tokenInventory;
+        this.tokenObjectIndex = tokenObjectIndex;
+        this.batchExecutor = batchExecutor;
+        this.streamChunkSize = streamChunkSize;
+        this.maxRandomBytes = maxRandomBytes;
+        this.maxStreamRandomBytes = maxStreamRandomBytes;
+        this.dataKeyCache = dataKeyCache;
+        this.envelopeKekAlias = envelopeKekAlias;
+        // Appended last, so the JDK providers stay preferred wherever they implement an algorithm
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        this.bouncyCastle = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+    }
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance(CryptoConstants.RSA_ALGORITHM);
+        keyPairGen.initialize(CryptoConstants.SESSION_RSA_KEY_SIZE);
+        rsaKeyPair = keyPairGen.generateKeyPair();
+
+        hmacKey = KeyGenerator.getInstance(CryptoConstants.HMAC_ALGORITHM).generateKey();
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(CryptoConstants.AES_ALGORITHM);
+        keyGenerator.init(CryptoConstants.SESSION_AES_KEY_SIZE);
+        cmacKey = keyGenerator.generateKey();
+    }
+
+
+    public String encrypt(CryptoAlgorithm algorithm, String plainText) throws CryptoException {
+        return Base64.getEncoder().encodeToString(encryptBytes(algorithm, plainText.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    public String decrypt(CryptoAlgorithm algorithm, String base64Encrypted) throws CryptoException {
+        byte[] base64EncryptedDecoded = Base64.getDecoder().decode(base64Encrypted.trim());
+        return new String(decryptBytes(algorithm, base64EncryptedDecoded), StandardCharsets.UTF_8);
+    }
+
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes) throws CryptoException {
+        return encryptBytes(algorithm, plainBytes, null);
+    }
+
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted) throws CryptoException {
+        return decryptBytes(algorithm, encrypted, null);
+    }
+
+
+    public byte[] encryptBytes(CryptoAlgorithm algorithm, byte[] plainBytes, byte[] aad) throws CryptoException {
+        requireAadSupport(algorithm, aad);
+        try {
+            return switch (algorithm) {
+                case RSA -> cryptoUtils.encryptBytesWithRsa(rsaKeyPair, plainBytes, null);
+                case AES -> cryptoUtils.encryptBytesWithAes(cmacKey, plainBytes, null);
+                case AES_GCM -> cryptoUtils.encryptBytesWithAesGcm(cmacKey, plainBytes, aad, null);
+                default -> throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+            };
+        } catch (Exception e) {
+            throw new CryptoException("Encryption failed : " + e.getMessage());
+        }
+    }
+
+
+    public byte[] decryptBytes(CryptoAlgorithm algorithm, byte[] encrypted, byte[] aad) throws CryptoException {
+        requireAadSupport(algorithm, aad);
+        try {
+            return switch (algorithm) {
+                case RSA -> cryptoUtils.decryptBytesWithRsa(rsaKeyPair, encrypted, null);
+                case AES -> cryptoUtils.decryptBytesWithAes(cmacKey, encrypted, null);
+                case AES_GCM -> cryptoUtils.decryptBytesWithAesGcm(cmacKey, encrypted, aad, null);
+                default -> throw new CryptoException("Unsupported algorithm: " + algorithm);
+            };
+        } catch (Exception e) {
+            throw new CryptoException("Decryption failed : " + e.getMessage());
+        }
+    }
+
+
+    // Only AES-GCM authenticates additional data; ignoring it elsewhere would silently drop the binding
+    private static void requireAadSupport(CryptoAlgorithm algorithm, byte[] aad) {
+        if (aad != null && aad.length > 0 && algorithm != CryptoAlgorithm.AES_GCM) {
+            throw new CryptoException("Additional authenticated data is only supported with " + CryptoAlgorithm.AES_GCM);
+        }
+    }
+
+
+    public BatchResult<String> encryptBatch(CryptoAlgorithm algorithm, List<String> plainTexts) throws CryptoException {
+        BatchExecutor.ChunkTask<String> task = switch (algorithm) {
+            case RSA -> (fromIndex, toIndex) -> cryptoUtils.encryptBatchWithRsa(rsaKeyPair, plainTexts.subList(fromIndex, toIndex), null);
+            case AES -> (fromIndex, toIndex) -> cryptoUtils.encryptBatchWithAes(cmacKey, plainTexts.subList(fromIndex, toIndex), null);
+            case AES_GCM -> (fromIndex, toIndex) -> cryptoUtils.encryptBatchWithAesGcm(cmacKey, plainTexts.subList(fromIndex, toIndex), null);
+            default -> throw new CryptoException("Unsupported algorithm: " + algorithm);
+        };
+        return batchExecutor.execute("encrypt." + algorithm, plainTexts.size(), task);
+    }
+
+
+    public BatchResult<String> decryptBatch(CryptoAlgorithm algorithm, List<String> base64EncryptedList) throws CryptoException {
+        BatchExecutor.ChunkTask<String> task = switch (algorithm) {
+            case RSA -> (fromIndex, toIndex) -> cryptoUtils.decryptBatchWithRsa(rsaKeyPair, base64EncryptedList.subList(fromIndex, toIndex), null);
+            case AES -> (fromIndex, toIndex) -> cryptoUtils.decryptBatchWithAes(cmacKey, base64EncryptedList.subList(fromIndex, toIndex), null);
+            case AES_GCM -> (fromIndex, toIndex) -> cryptoUtils.decryptBatchWithAesGcm(cmacKey, base64EncryptedList.subList(fromIndex, toIndex), null);
+            default -> throw new CryptoException("Unsupported algorithm: " + algorithm);
+        };
+        return batchExecutor.execute("decrypt." + algorithm, base64EncryptedList.size(), task);
+    }
+
+
+    public long encryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        if (algorithm != CryptoAlgorithm.AES) {
+            throw new CryptoException("Unsupported algorithm for streaming: " + algorithm);
+        }
+        try {
+            return cryptoUtils.encryptStreamWithAes(cmacKey, in, out, streamChunkSize, null);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Stream encryption failed : " + e.getMessage());
+        }
+    }
+
+
+    public long decryptStream(CryptoAlgorithm algorithm, InputStream in, OutputStream out) throws CryptoException, IOException {
+        if (algorithm != CryptoAlgorithm.AES) {
+            throw new CryptoException("Unsupported algorithm for streaming: " + algorithm);
+        }
+        try {
+            return cryptoUtils.decryptStreamWithAes(cmacKey, in, out, streamChunkSize, null);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Stream decryption failed : " + e.getMessage());
+        }
+    }
+
+
+    public String sign(CryptoAlgorithm signType, String message) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytes(signType, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    public boolean verify(CryptoAlgorithm verifyType, String message, String base64Signature) throws CryptoException {
+        byte[] base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
+        return verifyBytes(verifyType, message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded);
+    }
+
+
+    public byte[] signBytes(CryptoAlgorithm signType, byte[] message) throws CryptoException {
+        return switch (signType) {
+            case HMAC -> cryptoUtils.signBytesWithHmac(message, hmacKey, null);
+            case CMAC -> cryptoUtils.signBytesWithCmac(message, cmacKey, null);
+            case RSA -> cryptoUtils.signBytesWithRsa(message, rsaKeyPair, null);
+            default -> throw new CryptoException("Unsupported signType: " + signType);
+        };
+    }
+
+
+    public boolean verifyBytes(CryptoAlgorithm verifyType, byte[] message, byte[] signature) throws CryptoException {
+        return switch (verifyType) {
+            case HMAC -> cryptoUtils.verifyBytesWithHmac(message, signature, hmacKey, null);
+            case CMAC -> cryptoUtils.verifyBytesWithCmac(message, signature, cmacKey, null);
+            case RSA -> cryptoUtils.verifyBytesWithRsa(message, signature, rsaKeyPair, null);
+            default -> throw new CryptoException("Unsupported verifyType: " + verifyType);
+        };
+    }
+
+
+    public String generateRandom(int byteCount) throws CryptoException {
+        return Base64.getEncoder().encodeToString(generateRandomBytes(byteCount));
+    }
+
+
+    public byte[] generateRandomBytes(int byteCount) throws CryptoException {
+        if (byteCount <= 0 || byteCount > maxRandomBytes) {
+            throw new CryptoException("Byte count must be between 1 and " + maxRandomBytes + ", use the streaming endpoint for more");
+        }
+        byte[] bytes = new byte[byteCount];
+        secureRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+
+    public long generateRandomStream(long byteCount, OutputStream out) throws CryptoException, IOException {
+        if (byteCount <= 0 || byteCount > maxStreamRandomBytes) {
+            throw new CryptoException("Byte count must be between 1 and " + maxStreamRandomBytes);
+        }
+        byte[] block = new byte[(int) Math.min(streamChunkSize, byteCount)];
+        long remaining = byteCount;
+        while (remaining > 0) {
+            int length = (int) Math.min(block.length, remaining);
+            secureRandom.nextBytes(block);
+            out.write(block, 0, length);
+            remaining -= length;
+        }
+        Arrays.fill(block, (byte) 0);
+        return byteCount;
+    }
+
+    public List<String> generateKeyPair(String algorithm, int keySize, String ecCurve, String alias) throws CryptoException {
+        try {
+
+            if ("EC".equalsIgnoreCase(algorithm) && (ecCurve == null || ecCurve.isEmpty())) {
+                throw new CryptoException("Curve name required for EC algorithm i.e secp256r1");
+            }
+
+            KeyPair keyPair = cryptoUtils.generateKeyPair(algorithm, keySize, ecCurve, null);
+            X509Certificate x509Certificate = cryptoUtils.generateSelfSignedCertificate(keyPair, algorithm);
+
+            KeyStore.PrivateKeyEntry entry = new KeyStore.PrivateKeyEntry(
+                    keyPair.getPrivate(),
+                    new Certificate[]{x509Certificate}
+            );
+            if (entries.putIfAbsent(alias, entry) != null) {
+                throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
+            }
+            // Stored like the PKCS#11 keystore stores a key entry: private key and certificate, both labelled with the alias
+            String id = HexFormat.of().formatHex(alias.getBytes(StandardCharsets.UTF_8));
+            objects.add(new TokenObject("PrivateKey", keyPair.getPrivate().getAlgorithm(), alias, id, null,
+                    privateKeyUsage(keyPair.getPrivate().getAlgorithm()), PRIVATE_KEY_ACCESS));
+            objects.add(new TokenObject("Certificate", null, alias, id, subjectOf(x509Certificate), null, null));
+            tokenInventory.invalidateAll();
+
+            List<String> result = new ArrayList<>();
+
+            result.add("Algorithm: " + keyPair.getPrivate().getAlgorithm());
+            result.add("Key Type: " + keyPair.getClass().getSimpleName());
+            // Reported as the token keystore, so clients see the same lines as with SoftHSM
+            result.add("KeyStore Type: " + CryptoConstants.PKCS11_PROVIDER);
+            result.add("Format: " + keyPair.getPublic().getFormat());
+            result.add("Key Size: " + keySize + " bits");
+            result.add("Alias: " + alias);
+            result.add("Certificate (Base64): " + Base64.getEncoder().encodeToString(x509Certificate.getEncoded()));
+
+            return result;
+
+        } catch (Exception e) {
+            throw new CryptoException("Key generation failed : " + e.getMessage());
+        }
+    }
+
+
+    public List<String> generateKey(String algorithm, int keySize, String alias) throws CryptoException {
+        try {
+            KeyGenerator keyGen = KeyGenerator.getInstance(algorithm);
+            keyGen.init(keySize);
+            SecretKey secretKey = keyGen.generateKey();
+
+            if (entries.putIfAbsent(alias, new KeyStore.SecretKeyEntry(secretKey)) != null) {
+                throw new CryptoException("Alias '" + alias + "' already exists in the keystore");
+            }
+            objects.add(new TokenObject("SecretKey", secretKey.getAlgorithm().toUpperCase(Locale.ROOT), alias, null, null,
+                    "encrypt, decrypt, wrap, unwrap", PRIVATE_KEY_ACCESS));
+            tokenInventory.invalidateAll();
+
+            List<String> result = new ArrayList<>();
+
+            result.add("Algorithm: " + secretKey.getAlgorithm());
+            result.add("Key Type: " + secretKey.getClass().getSimpleName());
+            result.add("KeyStore Type: " + CryptoConstants.PKCS11_PROVIDER);
+            result.add("Format: " + secretKey.getFormat());
+            result.add("Key Size: " + keySize + " bits");
+            result.add("Alias: " + alias);
+
+            return result;
+
+        } catch (Exception e) {
+            throw new CryptoException("Key generation failed : " + e.getMessage());
+        }
+    }
+
+
+    public List<String> generateAsymmetricKeys(AsymmetricKeyType asymmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        String[] keySpec = asymmetricKeyType.getKeySpec().split(":");
+        String keyAlgorithm = keySpec[0].toUpperCase(Locale.ROOT);
+        try {
+            String objectId = HexFormat.of().formatHex(HexFormat.of().parseHex(id));
+            // Named curves such as prime256v1 or secp112r1 are only known to BouncyCastle
+            boolean ec = "EC".equals(keyAlgorithm);
+            cryptoUtils.generateKeyPair(keyAlgorithm, ec ? 0 : Integer.parseInt(keySpec[1]), ec ? keySpec[1] : null,
+                    ec ? bouncyCastle : null);
+
+            TokenObject privateKey = new TokenObject("PrivateKey", keyAlgorithm, keyPairLabel, objectId, null,
+                    privateKeyUsage(keyAlgorithm), PRIVATE_KEY_ACCESS);
+            TokenObject publicKey = new TokenObject("PublicKey", keyAlgorithm, keyPairLabel, objectId, null,
+                    "RSA".equals(keyAlgorithm) ? "encrypt, verify, wrap" : "verify", "local");
+            objects.add(privateKey);
+            objects.add(publicKey);
+            tokenInventory.invalidateAll();
+
+            List<String> output = new ArrayList<>();
+            output.add("Key pair generated:");
+            output.addAll(describe(privateKey));
+            output.addAll(describe(publicKey));
+            return output;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new CryptoException("KeyPair generation and import failed !", e);
+        }
+    }
+
+    public List<String> generateSymmetricKeys(SymmetricKeyType symmetricKeyType, String id, String keyPairLabel) throws CryptoException {
+        String[] keySpec = symmetricKeyType.getKeySpec().split(":");
+        String keyAlgorithm = keySpec[0].toUpperCase(Locale.ROOT);
+        try {
+            String objectId = HexFormat.of().formatHex(HexFormat.of().parseHex(id));
+            KeyGenerator keyGen = KeyGenerator.getInstance("DES3".equals(keyAlgorithm) ? "DESede" : keyAlgorithm);
+            if ("AES".equals(keyAlgorithm)) {
+                keyGen.init(Integer.parseInt(keySpec[1]) * 8);
+            }
+            keyGen.generateKey();
+
+            TokenObject secretKey = new TokenObject("SecretKey", keyAlgorithm, keyPairLabel, objectId, null,
+                    "encrypt, decrypt, wrap, unwrap", PRIVATE_KEY_ACCESS);
+            objects.add(secretKey);
+            tokenInventory.invalidateAll();
+
+            List<String> output = new ArrayList<>();
+            output.add("Key generated:");
+            output.addAll(describe(secretKey));
+            return output;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new CryptoException("Key generation and import failed !", e);
+        }
+    }
+
+    public InventorySnapshot<List<String>> getListOfKeys(String type) throws CryptoException {
+        try {
+            String objectType = type == null ? null : objectTypeOf(type);
+            return tokenInventory.get("keys:" + type, () -> {
+                List<String> output = new ArrayList<>();
+                for (TokenObject object : objects) {
+                    if (objectType == null || objectType.equals(object.type())) {
+                        output.addAll(describe(object));
+                    }
+                }
+                return output;
+            });
+        } catch (IOException e) {
+            throw new CryptoException("Failed to list keys !", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoException("Failed to list keys due to an interruption", e);
+        }
+    }
+
+    public Map<String, List<String>> getMechanisms() throws CryptoException {
+        Map<String, Set<String>> mechanisms = new TreeMap<>();
+        for (Provider provider : Security.getProviders()) {
+            for (Provider.Service service : provider.getServices()) {
+                mechanisms.computeIfAbsent(service.getType(), k -> new TreeSet<>()).add(service.getAlgorithm());
+            }
+        }
+        Map<String, List<String>> result = new TreeMap<>();
+        mechanisms.forEach((type, algorithms) -> result.put(type, new ArrayList<>(algorithms)));
+        return result;
+    }
+
+    public InventorySnapshot<List<Pkcs11SlotInfo>> getListOfSlots() throws CryptoException {
+        try {
+            return tokenInventory.get("slots", () -> {
+                Pkcs11SlotInfo slotInfo = new Pkcs11SlotInfo();
+                slotInfo.setSlotIndex(0);
+                slotInfo.setSlotHex("0x" + Integer.toHexString(SLOT_ID));
+                slotInfo.setSlotDecimal(Integer.toString(SLOT_ID));
+                slotInfo.setLabel("SoftToken");
+                slotInfo.setManufacturer("HSM Simulator");
+                slotInfo.setModel("In-memory token");
+                slotInfo.setFlags("rng, token initialized, PIN initialized");
+                slotInfo.setHwVersion("1.0");
+                slotInfo.setFwVersion("1.0");
+                slotInfo.setSerial("0000000000000000");
+                slotInfo.setPinMinMax("4/255");
+                slotInfo.setInitialized(true);
+                return List.of(slotInfo);
+            });
+        } catch (IOException e) {
+            throw new CryptoException("Failed to retrieve slots!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoException("Failed to retrieve slots due to an interruption", e);
+        }
+    }
+
+    public InventorySnapshot<List<Pkcs11ObjectInfo>> getListOfKeysFromSlot(int slotId) throws CryptoException {
+        if (slotId != SLOT_ID) {
+            throw new CryptoException("Failed to list keys from slot " + slotId + "!", new IOException("Invalid slot id: " + slotId));
+        }
+        try {
+            return tokenInventory.get("objects:" + slotId, () -> {
+                List<Pkcs11ObjectInfo> result = new ArrayList<>();
+                for (TokenObject object : objects) {
+                    // Same object types as the PKCS#11 engines report
+                    if (!"SecretKey".equals(object.type())) {
+                        result.add(new Pkcs11ObjectInfo(object.type(), object.label(), object.id(),
+                                object.subject(), object.usage(), object.access()));
+                    }
+                }
+                return result;
+            });
+        } catch (IOException e) {
+            throw new CryptoException("Failed to list keys from slot " + slotId + "!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoException("Failed to list keys from slot " + slotId + " due to an interruption", e);
+        }
+    }
+
+    public InventorySnapshot<Pkcs11ObjectPage> getObjectPageFromSlot(int slotId, Pkcs11ObjectQuery query) throws CryptoException {
+        return tokenObjectIndex.page(slotId, getListOfKeysFromSlot(slotId), query);
+    }
+
+    public String signMessageWithGiveKeyAlias(String keyAlias, String message, String signatureAlgorithm) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytesWithGivenKeyAlias(keyAlias, message.getBytes(StandardCharsets.UTF_8), signatureAlgorithm));
+    }
+
+    public String verifyMessageWithGiveKeyAlias(String keyAlias, String message, String base64Signature, String signatureAlgorithm) throws CryptoException {
+        byte[] base64SignatureDecoded;
+        try {
+            base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
+        } catch (IllegalArgumentException e) {
+            throw new CryptoException("Verification failed : " + e.getMessage());
+        }
+        boolean verified = verifyBytesWithGivenKeyAlias(keyAlias, message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded, signatureAlgorithm);
+        return verified ? "Message Verified Successfully" : "Message Verification Failed";
+    }
+
+    public byte[] signBytesWithGivenKeyAlias(String keyAlias, byte[] message, String signatureAlgorithm) throws CryptoException {
+        try {
+            return cryptoUtils.signBytesWithPrivateKey(message, privateKey(keyAlias), signatureAlgorithm, null);
+        } catch (Exception e) {
+            throw new CryptoException("Signing failed : " + e.getMessage());
+        }
+    }
+
+    public boolean verifyBytesWithGivenKeyAlias(String keyAlias, byte[] message, byte[] signature, String signatureAlgorithm) throws CryptoException {
+        try {
+            return cryptoUtils.verifyBytesWithPublicKey(message, signature, certificate(keyAlias).getPublicKey(), signatureAlgorithm, null);
+        } catch (Exception e) {
+            throw new CryptoException("Verification failed : " + e.getMessage());
+        }
+    }
+
+    public BatchResult<String> signBatchWithGivenKeyAlias(String keyAlias, List<String> messages, String signatureAlgorithm) throws CryptoException {
+        return batchExecutor.execute("sign", messages.size(), (fromIndex, toIndex) ->
+                cryptoUtils.signMessagesWithPrivateKey(messages.subList(fromIndex, toIndex), privateKey(keyAlias), signatureAlgorithm, null));
+    }
+
+    public BatchResult<Boolean> verifyBatchWithGivenKeyAlias(String keyAlias, List<String> messages, List<String> base64Signatures, String signatureAlgorithm) throws CryptoException {
+        if (messages.size() != base64Signatures.size()) {
+            throw new CryptoException("Number of messages and signatures must match");
+        }
+        return batchExecutor.execute("verify", messages.size(), (fromIndex, toIndex) ->
+                cryptoUtils.verifyMessagesWithPublicKey(messages.subList(fromIndex, toIndex), base64Signatures.subList(fromIndex, toIndex),
+                        certificate(keyAlias).getPublicKey(), signatureAlgorithm, null));
+    }
+
+    public EnvelopeCiphertext encryptEnvelope(byte[] plainBytes) throws CryptoException {
+        byte[] dataKey = null;
+        try {
+            DataKeyCache.DataKey key = dataKeyCache.encryptionKey(plainBytes.length, () -> {
+                byte[] freshKey = new byte[CryptoConstants.DATA_KEY_SIZE / 8];
+                secureRandom.nextBytes(freshKey);
+                return new DataKeyCache.DataKey(freshKey, cryptoUtils.wrapKeyWithAes(envelopeKek(), freshKey, null));
+            });
+            dataKey = key.plainKey();
+            return new EnvelopeCiphertext(envelopeKekAlias, key.wrappedKey(), cryptoUtils.encryptBytesWithDataKey(dataKey, plainBytes));
+        } catch (Exception e) {
+            throw new CryptoException("Envelope encryption failed : " + e.getMessage());
+        } finally {
+            if (dataKey != null) {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+        }
+    }
+
+    public byte[] decryptEnvelope(byte[] wrappedKey, byte[] cipherText) throws CryptoException {
+        byte[] dataKey;
+        try {
+            dataKey = dataKeyCache.decryptionKey(wrappedKey, wrapped -> cryptoUtils.unwrapKeyWithAes(envelopeKek(), wrapped, null));
+        } catch (Exception e) {
+            throw new CryptoException("Envelope decryption failed : data key could not be unwrapped : " + e.getMessage());
+        }
+        try {
+            return cryptoUtils.decryptBytesWithDataKey(dataKey, cipherText);
+        } catch (Exception e) {
+            throw new CryptoException("Envelope decryption failed : " + e.getMessage());
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    // Created on first use and kept as a token object, like the PKCS#11 backend does
+    private synchronized SecretKey envelopeKek() throws GeneralSecurityException {
+        KeyStore.Entry entry = entries.get(envelopeKekAlias);
+        if (entry instanceof KeyStore.SecretKeyEntry secretKeyEntry) {
+            return secretKeyEntry.getSecretKey();
+        }
+        if (entry != null) {
+            throw new GeneralSecurityException("Alias '" + envelopeKekAlias + "' is not a secret key");
+        }
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(CryptoConstants.AES_ALGORITHM);
+        keyGenerator.init(CryptoConstants.DATA_KEY_SIZE);
+        SecretKey kek = keyGenerator.generateKey();
+        entries.put(envelopeKekAlias, new KeyStore.SecretKeyEntry(kek));
+        objects.add(new TokenObject("SecretKey", CryptoConstants.AES_ALGORITHM, envelopeKekAlias, null, null,
+                "encrypt, decrypt, wrap, unwrap", PRIVATE_KEY_ACCESS));
+        tokenInventory.invalidateAll();
+        return kek;
+    }
+
+    private PrivateKey privateKey(String alias) {
+        if (entries.get(alias) instanceof KeyStore.PrivateKeyEntry entry) {
+            return entry.getPrivateKey();
+        }
+        throw new CryptoException("No private key found for alias: " + alias);
+    }
+
+    private Certificate certificate(String alias) {
+        if (entries.get(alias) instanceof KeyStore.PrivateKeyEntry entry) {
+            return entry.getCertificate();
+        }
+        throw new CryptoException("No certificate found for alias: " + alias);
+    }
+
+    // Renders an object the way "pkcs11-tool --list-objects" does, like the native engine
+    private static List<String> describe(TokenObject object) {
+        List<String> lines = new ArrayList<>();
+        if ("Certificate".equals(object.type())) {
+            lines.add("Certificate Object; type = X.509 cert");
+            lines.add("  label:      " + object.label());
+            lines.add("  subject:    " + object.subject());
+            lines.add("  ID:         " + object.id());
+            return lines;
+        }
+        String header = switch (object.type()) {
+            case "PrivateKey" -> "Private Key Object; ";
+            case "PublicKey" -> "Public Key Object; ";
+            default -> "Secret Key Object; ";
+        };
+        lines.add(header + object.keyType());
+        lines.add("  label:      " + object.label());
+        lines.add("  ID:         " + object.id());
+        lines.add("  Usage:      " + object.usage());
+        lines.add("  Access:     " + object.access());
+        return lines;
+    }
+
+    private static String privateKeyUsage(String keyAlgorithm) {
+        return switch (keyAlgorithm.toUpperCase(Locale.ROOT)) {
+            case "RSA" -> "decrypt, sign, unwrap";
+            case "EC", "DH" -> "sign, derive";
+            default -> "sign";
+        };
+    }
+
+    private static String subjectOf(X509Certificate certificate) {
+        return "DN: " + certificate.getSubjectX500Principal().getName();
+    }
+
+    private static String objectTypeOf(String type) throws IOException {
+        return switch (type) {
+            case "cert" -> "Certificate";
+            case "privkey" -> "PrivateKey";
+            case "pubkey" -> "PublicKey";
+            case "secrkey" -> "SecretKey";
+            case "data" -> "Data";
+            default -> throw new IOException("Unsupported object type: " + type);
+        };
+    }
+}
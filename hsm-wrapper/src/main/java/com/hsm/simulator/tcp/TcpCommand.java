@@ -0,0 +1,43 @@
+package com.hsm.simulator.tcp;
+
+import com.hsm.simulator.exception.CryptoException;
+
+/**
+ * Commands of the framed TCP protocol, identified on the wire by a one-byte code.
+ */
+public enum TcpCommand {
+    ECHO(0x00),
+    ENCRYPT(0x01),
+    DECRYPT(0x02),
+    SIGN(0x03),
+    VERIFY(0x04),
+    RANDOM(0x05),
+    ALIAS_SIGN(0x06),
+    ALIAS_VERIFY(0x07);
+
+    private static final TcpCommand[] BY_CODE = new TcpCommand[256];
+
+    static {
+        for (TcpCommand command : values()) {
+            BY_CODE[command.code] = command;
+        }
+    }
+
+    private final int code;
+
+    TcpCommand(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static TcpCommand fromCode(int code) {
+        TcpCommand command = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (command == null) {
+            throw new CryptoException("Unknown command code: " + code);
+        }
+        return command;
+    }
+}
@@ -0,0 +1,95 @@
+package com.hsm.simulator.tcp;
+
+import com.hsm.simulator.exception.CryptoException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.service.Pkcs11CryptoService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the body of one command, runs it on {@link Pkcs11CryptoService} and returns the response
+ * payload. Variable-length fields are a 4-byte big-endian length followed by the bytes; text fields
+ * (algorithm, alias) are UTF-8.
+ * <pre>
+ * ECHO          data                          -> data
+ * ENCRYPT       algorithm, data               -> cipher text
+ * DECRYPT       algorithm, data               -> plain bytes
+ * SIGN          algorithm, data               -> signature / MAC
+ * VERIFY        algorithm, data, signature    -> 1 byte, 1 = verified
+ * RANDOM        int32 byte count              -> random bytes
+ * ALIAS_SIGN    alias, sig algorithm, data    -> signature
+ * ALIAS_VERIFY  alias, sig algorithm, data, signature -> 1 byte, 1 = verified
+ * </pre>
+ */
+class TcpCommandHandler {
+
+    private final Pkcs11CryptoService cryptoService;
+    private final int maxRandomBytes;
+
+    TcpCommandHandler(Pkcs11CryptoService cryptoService, int maxRandomBytes) {
+        this.cryptoService = cryptoService;
+        this.maxRandomBytes = maxRandomBytes;
+    }
+
+    byte[] handle(TcpCommand command, ByteBuffer body) throws CryptoException {
+        return switch (command) {
+            case ECHO -> bytes(body);
+            case ENCRYPT -> cryptoService.encryptBytes(algorithm(body), bytes(body));
+            case DECRYPT -> cryptoService.decryptBytes(algorithm(body), bytes(body));
+            case SIGN -> cryptoService.signBytes(algorithm(body), bytes(body));
+            case VERIFY -> {
+                CryptoAlgorithm algorithm = algorithm(body);
+                byte[] message = bytes(body);
+                yield flag(cryptoService.verifyBytes(algorithm, message, bytes(body)));
+            }
+            case RANDOM -> cryptoService.generateRandomBytes(byteCount(body));
+            case ALIAS_SIGN -> {
+                String alias = text(body);
+                String signatureAlgorithm = text(body);
+                yield cryptoService.signBytesWithGivenKeyAlias(alias, bytes(body), signatureAlgorithm);
+            }
+            case ALIAS_VERIFY -> {
+                String alias = text(body);
+                String signatureAlgorithm = text(body);
+                byte[] message = bytes(body);
+                yield flag(cryptoService.verifyBytesWithGivenKeyAlias(alias, message, bytes(body), signatureAlgorithm));
+            }
+        };
+    }
+
+    private int byteCount(ByteBuffer body) {
+        int byteCount = body.getInt();
+        if (byteCount <= 0 || byteCount > maxRandomBytes) {
+            throw new CryptoException("Byte count must be between 1 and " + maxRandomBytes);
+        }
+        return byteCount;
+    }
+
+    private static CryptoAlgorithm algorithm(ByteBuffer body) {
+        String name = text(body);
+        try {
+            return CryptoAlgorithm.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new CryptoException("Unsupported algorithm: " + name);
+        }
+    }
+
+    private static String text(ByteBuffer body) {
+        return new String(bytes(body), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0 || length > body.remaining()) {
+            throw new CryptoException("Malformed field: length " + length + " with " + body.remaining() + " bytes left");
+        }
+        byte[] value = new byte[length];
+        body.get(value);
+        return value;
+    }
+
+    private static byte[] flag(boolean value) {
+        return new byte[] {(byte) (value ? 1 : 0)};
+    }
+}
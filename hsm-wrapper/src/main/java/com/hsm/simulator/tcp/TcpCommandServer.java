@@ -0,0 +1,390 @@
+package com.hsm.simulator.tcp;
+
+import com.hsm.simulator.exception.HsmBusyException;
+import com.hsm.simulator.service.Pkcs11CryptoService;
+import com.hsm.simulator.util.VirtualThreads;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Framed binary command listener for clients that drive the HSM over TCP (payment switches and the
+ * like) instead of REST. Runs next to the HTTP API when {@code tcp.server.enabled=true}.
+ * <p>
+ * Every frame is a 4-byte big-endian length followed by that many bytes. A request frame holds a
+ * 4-byte request id, a 1-byte {@link TcpCommand} code and the command body (see
+ * {@link TcpCommandHandler}); the response frame holds the same request id, a status byte
+ * ({@code 0} ok, {@code 1} error, {@code 2} busy) and the result, or a UTF-8 message on failure.
+ * <p>
+ * One selector thread does all socket I/O; commands run on worker threads. Clients may pipeline up
+ * to {@code tcp.server.max-pipelined} requests per connection, and responses may come back out of
+ * order, so clients match them by request id. A connection at its pipelining limit has its further
+ * frames left unparsed in its buffer, and is not read from, until responses drain.
+ */
+@Component
+@ConditionalOnProperty(name = "tcp.server.enabled", havingValue = "true")
+public class TcpCommandServer {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpCommandServer.class);
+
+    private static final byte STATUS_OK = 0;
+    private static final byte STATUS_ERROR = 1;
+    private static final byte STATUS_BUSY = 2;
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int HEADER_BYTES = 5; // request id + command
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    // Timer tag per status byte
+    private static final String[] STATUS_TAGS = {"ok", "error", "busy"};
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final TcpCommandHandler handler;
+    // Built once per command and status; indexed by status byte
+    private final Map<TcpCommand, Timer[]> commandTimers = new EnumMap<>(TcpCommand.class);
+    private final Timer[] unknownCommandTimers;
+    private final String bindAddress;
+    private final int port;
+    private final int maxConnections;
+    private final int maxPipelined;
+    private final int maxFrameSize;
+    private final ExecutorService workers;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Queue<Connection> interestUpdates = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public TcpCommandServer(Pkcs11CryptoService cryptoService,
+                            MeterRegistry meterRegistry,
+                            @Value("${tcp.server.bind-address:0.0.0.0}") String bindAddress,
+                            @Value("${tcp.server.port:1500}") int port,
+                            @Value("${tcp.server.max-connections:256}") int maxConnections,
+                            @Value("${tcp.server.max-pipelined:64}") int maxPipelined,
+                            @Value("${tcp.server.max-frame-size:1048576}") int maxFrameSize,
+                            @Value("${rng.max-bytes:65536}") int maxRandomBytes,
+                            @Value("${tcp.server.workers:16}") int workerCount,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.handler = new TcpCommandHandler(cryptoService, maxRandomBytes);
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxConnections = maxConnections;
+        this.maxPipelined = Math.max(1, maxPipelined);
+        this.maxFrameSize = maxFrameSize;
+        ExecutorService virtualWorkers = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor("hsm-tcp-worker-").orElse(null) : null;
+        this.workers = virtualWorkers != null ? virtualWorkers : platformWorkers(Math.max(1, workerCount));
+
+        for (TcpCommand command : TcpCommand.values()) {
+            commandTimers.put(command, timers(meterRegistry, command.name()));
+        }
+        this.unknownCommandTimers = timers(meterRegistry, "unknown");
+        Gauge.builder("hsm.tcp.connections", connections, AtomicInteger::get)
+                .description("Open TCP command connections")
+                .register(meterRegistry);
+        Gauge.builder("hsm.tcp.queue.depth", pending, AtomicInteger::get)
+                .description("TCP commands received but not yet answered")
+                .register(meterRegistry);
+    }
+
+    private static Timer[] timers(MeterRegistry meterRegistry, String command) {
+        Timer[] timers = new Timer[STATUS_TAGS.length];
+        for (int status = 0; status < timers.length; status++) {
+            timers[status] = Timer.builder("hsm.tcp.command")
+                    .description("TCP commands by command and status; the count rate is ops/sec")
+                    .tag("command", command)
+                    .tag("status", STATUS_TAGS[status])
+                    .register(meterRegistry);
+        }
+        return timers;
+    }
+
+    private static ExecutorService platformWorkers(int workerCount) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "hsm-tcp-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(bindAddress, port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "hsm-tcp-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("TCP command server listening on {}", serverChannel.getLocalAddress());
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        selector.wakeup();
+        selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        workers.shutdownNow();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                applyInterestUpdates();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException e) {
+                        log.debug("Closing TCP connection {} : {}", connection.channel, e.getMessage());
+                        close(connection);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                log.error("TCP command server stopped unexpectedly", e);
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Failed to close selector : {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        if (connections.get() >= maxConnections) {
+            log.warn("Rejecting TCP connection from {}: {} connections open", channel.getRemoteAddress(), maxConnections);
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.incrementAndGet();
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.readBuffer) < 0) {
+            close(connection);
+            return;
+        }
+        dispatchFrames(connection);
+        updateInterest(connection);
+    }
+
+    // Dispatches the complete frames in the read buffer while the connection is under its pipelining
+    // limit; the rest stays buffered until responses drain (see applyInterestUpdates)
+    private void dispatchFrames(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        boolean paused = false;
+        while (buffer.remaining() >= LENGTH_BYTES) {
+            if (connection.inFlight.get() >= maxPipelined) {
+                paused = true;
+                break;
+            }
+            int frameLength = buffer.getInt(buffer.position());
+            if (frameLength < HEADER_BYTES || frameLength > maxFrameSize) {
+                throw new IOException("Invalid frame length " + frameLength);
+            }
+            if (buffer.remaining() < LENGTH_BYTES + frameLength) {
+                break;
+            }
+            buffer.position(buffer.position() + LENGTH_BYTES);
+            byte[] frame = new byte[frameLength];
+            buffer.get(frame);
+            dispatch(connection, ByteBuffer.wrap(frame));
+        }
+        buffer.compact();
+        // Grow the buffer when a single frame does not fit yet
+        if (!paused && !buffer.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, LENGTH_BYTES + maxFrameSize));
+            buffer.flip();
+            larger.put(buffer);
+            connection.readBuffer = larger;
+        }
+    }
+
+    private void dispatch(Connection connection, ByteBuffer frame) {
+        connection.inFlight.incrementAndGet();
+        pending.incrementAndGet();
+        workers.execute(() -> {
+            int requestId = frame.getInt();
+            int code = frame.get() & 0xFF;
+            Timer[] timers = unknownCommandTimers;
+            byte status = STATUS_ERROR;
+            byte[] payload;
+            long start = System.nanoTime();
+            try {
+                TcpCommand tcpCommand = TcpCommand.fromCode(code);
+                timers = commandTimers.get(tcpCommand);
+                payload = handler.handle(tcpCommand, frame);
+                status = STATUS_OK;
+            } catch (HsmBusyException e) {
+                status = STATUS_BUSY;
+                payload = message(e);
+            } catch (BufferUnderflowException e) {
+                payload = "Malformed command body".getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                payload = message(e);
+            }
+            timers[status].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            respond(connection, requestId, status, payload);
+        });
+    }
+
+    private void respond(Connection connection, int requestId, byte status, byte[] payload) {
+        ByteBuffer response = ByteBuffer.allocate(LENGTH_BYTES + HEADER_BYTES + payload.length);
+        response.putInt(HEADER_BYTES + payload.length).putInt(requestId).put(status).put(payload).flip();
+        connection.outbound.add(response);
+        connection.inFlight.decrementAndGet();
+        pending.decrementAndGet();
+        // Interest ops may only change on the selector thread
+        interestUpdates.add(connection);
+        selector.wakeup();
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer head;
+        while ((head = connection.outbound.peek()) != null) {
+            connection.channel.write(head);
+            if (head.hasRemaining()) {
+                break;
+            }
+            connection.outbound.poll();
+        }
+        updateInterest(connection);
+    }
+
+    private void applyInterestUpdates() {
+        Connection connection;
+        while ((connection = interestUpdates.poll()) != null) {
+            if (!connection.key.isValid()) {
+                continue;
+            }
+            try {
+                // Frames held back by the pipelining limit
+                if (connection.readBuffer.position() > 0) {
+                    dispatchFrames(connection);
+                }
+                updateInterest(connection);
+            } catch (IOException e) {
+                log.debug("Closing TCP connection {} : {}", connection.channel, e.getMessage());
+                close(connection);
+            }
+        }
+    }
+
+    private void updateInterest(Connection connection) {
+        if (connection.key == null || !connection.key.isValid()) {
+            return;
+        }
+        int ops = 0;
+        if (connection.inFlight.get() < maxPipelined) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!connection.outbound.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection) {
+        if (connection.key.isValid()) {
+            connections.decrementAndGet();
+        }
+        closeQuietly(connection.key);
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Failed to close channel : {}", e.getMessage());
+        }
+    }
+
+    private static byte[] message(Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,150 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.dto.BatchItemResult;
+import com.hsm.simulator.dto.BatchResult;
+import com.hsm.simulator.exception.CryptoException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a batch into contiguous chunks and runs them on a fixed set of workers, or on one virtual
+ * thread per chunk when {@code spring.threads.virtual.enabled} is set and the runtime supports it.
+ * <p>
+ * Each chunk runs on one worker thread, so a chunk task can borrow a single engine (and with it a
+ * single PKCS#11 session) for all of its items. Results are returned in input order; a chunk that
+ * fails as a whole marks only its own items as failed. Batches larger than {@code batch.max-items}
+ * are rejected up front.
+ */
+@Component
+public class BatchExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchExecutor.class);
+
+    @FunctionalInterface
+    public interface ChunkTask<T> {
+        /**
+         * Processes items {@code [fromIndex, toIndex)} and returns one result per item, in order.
+         */
+        List<BatchItemResult<T>> process(int fromIndex, int toIndex) throws Exception;
+    }
+
+    private final int parallelism;
+    private final int minChunkSize;
+    private final int maxItems;
+    private final ExecutorService workers;
+    private final MeterRegistry meterRegistry;
+
+    public BatchExecutor(@Value("${batch.parallelism:4}") int parallelism,
+                         @Value("${batch.min-chunk-size:16}") int minChunkSize,
+                         @Value("${batch.max-items:10000}") int maxItems,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                         MeterRegistry meterRegistry) {
+        this.parallelism = Math.max(1, parallelism);
+        this.minChunkSize = Math.max(1, minChunkSize);
+        this.maxItems = maxItems;
+        this.meterRegistry = meterRegistry;
+        // Concurrent batches no longer share a fixed set of workers; each one still uses at most
+        // batch.parallelism chunks, and HSM access stays bounded by the provider pool
+        ExecutorService virtualWorkers = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor("hsm-batch-").orElse(null) : null;
+        if (virtualThreads && virtualWorkers == null) {
+            log.warn("spring.threads.virtual.enabled is set but this runtime has no virtual threads (Java 21+); using platform threads");
+        }
+        this.workers = virtualWorkers != null ? virtualWorkers : platformWorkers(this.parallelism);
+    }
+
+    private static ExecutorService platformWorkers(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "hsm-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a batch of {@code size} items. {@code operation} names the batch in the
+     * {@code hsm.batch.*} metrics, e.g. {@code "sign"} or {@code "encrypt.AES"}.
+     */
+    public <T> BatchResult<T> execute(String operation, int size, ChunkTask<T> task) {
+        if (size > maxItems) {
+            throw new CryptoException("Batch of " + size + " items exceeds the limit of " + maxItems);
+        }
+        long start = System.nanoTime();
+        int chunks = Math.max(1, Math.min(parallelism, (size + minChunkSize - 1) / minChunkSize));
+        int chunkSize = (size + chunks - 1) / chunks;
+
+        List<Future<List<BatchItemResult<T>>>> futures = new ArrayList<>(chunks);
+        for (int from = 0; from < size; from += chunkSize) {
+            int fromIndex = from;
+            int toIndex = Math.min(size, from + chunkSize);
+            futures.add(workers.submit(() -> task.process(fromIndex, toIndex)));
+        }
+
+        List<BatchItemResult<T>> results = new ArrayList<>(size);
+        int fromIndex = 0;
+        for (Future<List<BatchItemResult<T>>> future : futures) {
+            int toIndex = Math.min(size, fromIndex + chunkSize);
+            results.addAll(collect(future, fromIndex, toIndex));
+            fromIndex = toIndex;
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        BatchResult<T> batchResult = new BatchResult<>(results, elapsedNanos);
+        Timer.builder("hsm.batch.duration")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("hsm.batch.items")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(size);
+        DistributionSummary.builder("hsm.batch.throughput")
+                .description("Items per second of completed batches")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(batchResult.getItemsPerSecond());
+        return batchResult;
+    }
+
+    private <T> List<BatchItemResult<T>> collect(Future<List<BatchItemResult<T>>> future, int fromIndex, int toIndex) {
+        String error;
+        try {
+            List<BatchItemResult<T>> chunkResults = future.get();
+            for (int i = 0; i < chunkResults.size(); i++) {
+                chunkResults.get(i).setIndex(fromIndex + i);
+            }
+            return chunkResults;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            error = "Batch interrupted";
+        } catch (ExecutionException e) {
+            error = e.getCause().getMessage();
+        }
+        List<BatchItemResult<T>> failed = new ArrayList<>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            failed.add(BatchItemResult.failure(i, error));
+        }
+        return failed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
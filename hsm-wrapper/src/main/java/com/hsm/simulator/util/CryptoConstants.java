@@ -15,4 +15,9 @@ public class CryptoConstants {
     public static final String RSA_TRANSFORMATION = "RSA/ECB/PKCS1Padding";
     public static final String RSA_SIGNATURE_ALGORITHM = "SHA256withRSA";
     public static final String PKCS11_PROVIDER = "PKCS11";
+    public static final int SESSION_RSA_KEY_SIZE = 2048;
+    public static final int SESSION_AES_KEY_SIZE = 128;
+    public static final String AES_GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    public static final String SOFTWARE_PROVIDER = "SunJCE";
+    public static final int DATA_KEY_SIZE = 256;
 }
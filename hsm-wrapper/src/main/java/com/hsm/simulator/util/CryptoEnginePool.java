@@ -0,0 +1,247 @@
+package com.hsm.simulator.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pools of pre-initialized {@link Cipher}, {@link Mac} and {@link Signature} engines.
+ * <p>
+ * Engines are pooled per algorithm, mode, key instance and provider instance, so a borrowed engine
+ * skips the provider lookup of {@code getInstance(..)}; callers pass long-lived handles (cached
+ * aliases, bootstrap keys), so an equal but distinct key object gets a pool of its own. Macs, signatures and ciphers without an IV (RSA/ECB) are also
+ * handed out already bound to their key, skipping the init (C_*Init on a token); IV based ciphers
+ * (AES CBC and GCM) still have to be initialized by every task. Each engine is used by a single
+ * thread at a time; an engine whose task throws is discarded instead of being returned. A
+ * {@code null} provider selects the preferred installed provider, as {@code getInstance(algorithm)}
+ * does.
+ * <p>
+ * At most {@code crypto.engine.pool.max-keys} pools are kept: creating one more drops the least
+ * recently used, so keys that are no longer used (and never evicted through {@link KeyAliasCache})
+ * do not keep idle engines, and the token sessions they may hold, forever.
+ */
+@Component
+public class CryptoEnginePool {
+
+    @FunctionalInterface
+    public interface EngineTask<E, T> {
+        T apply(E engine) throws GeneralSecurityException;
+    }
+
+    private enum EngineKind { CIPHER, MAC, SIGNATURE }
+
+    // Key and provider compare by identity: Provider inherits the synchronized, O(entries)
+    // Properties.hashCode/equals, and sensitive token keys (P11Key) all hash to 0
+    private record EngineKey(EngineKind kind, String algorithm, int mode, Key key, Provider provider) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EngineKey that && kind == that.kind && mode == that.mode
+                    && key == that.key && provider == that.provider && algorithm.equals(that.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = kind.hashCode();
+            hash = 31 * hash + algorithm.hashCode();
+            hash = 31 * hash + mode;
+            hash = 31 * hash + System.identityHashCode(key);
+            return 31 * hash + System.identityHashCode(provider);
+        }
+    }
+
+    private static final class Pool {
+        private final BlockingQueue<Object> engines;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private Pool(int poolSize) {
+            this.engines = new ArrayBlockingQueue<>(poolSize);
+        }
+    }
+
+    private final int poolSize;
+    private final int maxPools;
+    private final Map<EngineKey, Pool> pools = new ConcurrentHashMap<>();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    public CryptoEnginePool(@Value("${crypto.engine.pool.size:8}") int poolSize,
+                            @Value("${crypto.engine.pool.max-keys:1024}") int maxPools,
+                            MeterRegistry meterRegistry) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("crypto.engine.pool.size must be at least 1");
+        }
+        this.poolSize = poolSize;
+        this.maxPools = Math.max(1, maxPools);
+        FunctionCounter.builder("hsm.engine.pool.hits", hits, LongAdder::doubleValue)
+                .description("Engine borrows served from the pool")
+                .register(meterRegistry);
+        FunctionCounter.builder("hsm.engine.pool.misses", misses, LongAdder::doubleValue)
+                .description("Engine borrows that had to create a new engine")
+                .register(meterRegistry);
+        FunctionCounter.builder("hsm.engine.pool.discards", discards, LongAdder::doubleValue)
+                .description("Engines dropped after a failed operation")
+                .register(meterRegistry);
+        FunctionCounter.builder("hsm.engine.pool.evictions", evictions, LongAdder::doubleValue)
+                .description("Pools dropped as least recently used beyond crypto.engine.pool.max-keys")
+                .register(meterRegistry);
+        Gauge.builder("hsm.engine.pool.idle", this, CryptoEnginePool::getIdleCount)
+                .description("Idle engines across all pools")
+                .register(meterRegistry);
+        Gauge.builder("hsm.engine.pool.keys", this, CryptoEnginePool::getPoolCount)
+                .description("Pools kept, one per algorithm, key and provider")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code task} with a cipher for the given transformation and key. Transformations without
+     * an IV (e.g. RSA/ECB) are handed out initialized for {@code opmode}; IV based transformations
+     * (CBC, GCM) must be re-initialized by the task with fresh parameters.
+     */
+    public <T> T withCipher(String transformation, int opmode, Key key, Provider provider, EngineTask<Cipher, T> task) throws GeneralSecurityException {
+        EngineKey engineKey = new EngineKey(EngineKind.CIPHER, transformation, opmode, key, provider);
+        return execute(engineKey, task, () -> {
+            Cipher cipher = provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+            if (!requiresIv(transformation)) {
+                cipher.init(opmode, key);
+            }
+            return cipher;
+        });
+    }
+
+    public <T> T withMac(String algorithm, Key key, Provider provider, EngineTask<Mac, T> task) throws GeneralSecurityException {
+        EngineKey engineKey = new EngineKey(EngineKind.MAC, algorithm, 0, key, provider);
+        return execute(engineKey, task, () -> {
+            Mac mac = provider == null ? Mac.getInstance(algorithm) : Mac.getInstance(algorithm, provider);
+            mac.init(key);
+            return mac;
+        });
+    }
+
+    /**
+     * Runs {@code task} with a signature engine initialized for signing when {@code key} is a
+     * {@link PrivateKey} and for verification when it is a {@link PublicKey}.
+     */
+    public <T> T withSignature(String algorithm, Key key, Provider provider, EngineTask<Signature, T> task) throws GeneralSecurityException {
+        EngineKey engineKey = new EngineKey(EngineKind.SIGNATURE, algorithm, 0, key, provider);
+        return execute(engineKey, task, () -> {
+            Signature signature = provider == null ? Signature.getInstance(algorithm) : Signature.getInstance(algorithm, provider);
+            if (key instanceof PrivateKey privateKey) {
+                signature.initSign(privateKey);
+            } else if (key instanceof PublicKey publicKey) {
+                signature.initVerify(publicKey);
+            } else {
+                throw new IllegalArgumentException("Unsupported key for signature: " + key.getClass().getName());
+            }
+            return signature;
+        });
+    }
+
+    /**
+     * Drops every pooled engine bound to {@code key}, e.g. after the key has been deleted or evicted.
+     */
+    public void evict(Key key) {
+        pools.keySet().removeIf(engineKey -> engineKey.key() == key);
+    }
+
+    public void clear() {
+        pools.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getDiscards() {
+        return discards.sum();
+    }
+
+    public int getIdleCount() {
+        return pools.values().stream().mapToInt(pool -> pool.engines.size()).sum();
+    }
+
+    public int getPoolCount() {
+        return pools.size();
+    }
+
+    @FunctionalInterface
+    private interface EngineFactory<E> {
+        E create() throws GeneralSecurityException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E, T> T execute(EngineKey engineKey, EngineTask<E, T> task, EngineFactory<E> factory) throws GeneralSecurityException {
+        Pool pool = pools.get(engineKey);
+        if (pool == null) {
+            pool = pools.computeIfAbsent(engineKey, k -> new Pool(poolSize));
+            if (pools.size() > maxPools) {
+                evictLeastRecentlyUsed(engineKey);
+            }
+        }
+        pool.lastUsedNanos = System.nanoTime();
+        E engine = (E) pool.engines.poll();
+        if (engine != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            engine = factory.create();
+        }
+
+        T result;
+        try {
+            result = task.apply(engine);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            // The engine may be left mid-operation; never hand it out again
+            discards.increment();
+            throw e;
+        }
+        // A full pool simply lets the surplus engine be garbage collected
+        pool.engines.offer(engine);
+        return result;
+    }
+
+    // Only runs when a new pool pushes the count over the cap, so the scan is off the hot path
+    private void evictLeastRecentlyUsed(EngineKey keep) {
+        EngineKey eldest = null;
+        long eldestUsed = 0;
+        for (Map.Entry<EngineKey, Pool> entry : pools.entrySet()) {
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            if (eldest == null || entry.getValue().lastUsedNanos - eldestUsed < 0) {
+                eldest = entry.getKey();
+                eldestUsed = entry.getValue().lastUsedNanos;
+            }
+        }
+        if (eldest != null && pools.remove(eldest) != null) {
+            evictions.increment();
+        }
+    }
+
+    private static boolean requiresIv(String transformation) {
+        String[] parts = transformation.split("/");
+        return parts.length > 1 && !"ECB".equalsIgnoreCase(parts[1]);
+    }
+}
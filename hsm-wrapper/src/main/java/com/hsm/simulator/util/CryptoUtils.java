@@ -1,5 +1,6 @@
 package com.hsm.simulator.util;
 
+import com.hsm.simulator.dto.BatchItemResult;
 import com.hsm.simulator.exception.CryptoException;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.cert.X509CertificateHolder;
@@ -8,186 +9,555 @@ import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
 import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.AuthProvider;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.Key;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
-import java.security.KeyStore;
+import java.security.KeyPairGenerator;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
 import java.security.SecureRandom;
-import java.security.Signature;
+import java.security.SignatureException;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class CryptoUtils {
 
+    private static final int AES_IV_LENGTH = 16;
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private final SecureRandom ivRandom = new SecureRandom();
+    // GCM nonces: a random field fixed per process followed by a 64-bit counter from a random start
+    // (deterministic construction, NIST SP 800-38D 8.2.1); unique within the process without drawing
+    // random bytes per message, and unlikely to meet the nonces of another process under the same key
+    private final int gcmNonceField = ivRandom.nextInt();
+    private final AtomicLong gcmNonceCounter = new AtomicLong(ivRandom.nextLong());
+    private final CryptoEnginePool enginePool;
+    private final ObjectProvider<KeyAliasCache> keyAliasCache;
+
+    public CryptoUtils(CryptoEnginePool enginePool, ObjectProvider<KeyAliasCache> keyAliasCache) {
+        this.enginePool = enginePool;
+        this.keyAliasCache = keyAliasCache;
+    }
+
+    // The *Bytes* variants work on raw bytes and back the binary endpoints; the String variants wrap them
+    // with UTF-8 text and Base64 for the JSON endpoints. Methods that take a Provider accept null for the
+    // preferred installed provider (software token); only the alias methods need a PKCS#11 token
+
     //RSA
-    public String encryptWithRsa(KeyPair rsaKeyPair, String plainText, AuthProvider hsmProvider) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher;
-        cipher = Cipher.getInstance(CryptoConstants.RSA_TRANSFORMATION, hsmProvider);
-        cipher.init(Cipher.ENCRYPT_MODE, rsaKeyPair.getPublic());
-        byte[] encrypted = cipher.doFinal(plainText.getBytes());
-        return Base64.getEncoder().encodeToString(encrypted);
+    public String encryptWithRsa(KeyPair rsaKeyPair, String plainText, Provider hsmProvider) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(encryptBytesWithRsa(rsaKeyPair, plainText.getBytes(StandardCharsets.UTF_8), hsmProvider));
+    }
+
+    public String decryptWithRsa(KeyPair rsaKeyPair, byte[] base64EncryptedDecoded, Provider hsmProvider) throws GeneralSecurityException {
+        return new String(decryptBytesWithRsa(rsaKeyPair, base64EncryptedDecoded, hsmProvider), StandardCharsets.UTF_8);
+    }
+
+    public byte[] encryptBytesWithRsa(KeyPair rsaKeyPair, byte[] plainBytes, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.RSA_TRANSFORMATION, Cipher.ENCRYPT_MODE, rsaKeyPair.getPublic(), hsmProvider,
+                cipher -> cipher.doFinal(plainBytes));
     }
 
-    public String decryptWithRsa(KeyPair rsaKeyPair, byte[] base64EncryptedDecoded, AuthProvider hsmProvider) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = Cipher.getInstance(CryptoConstants.RSA_TRANSFORMATION, hsmProvider);
-        cipher.init(Cipher.DECRYPT_MODE, rsaKeyPair.getPrivate());
-        byte[] decryptedRsa = cipher.doFinal(base64EncryptedDecoded);
-        return new String(decryptedRsa);
+    public byte[] decryptBytesWithRsa(KeyPair rsaKeyPair, byte[] encrypted, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.RSA_TRANSFORMATION, Cipher.DECRYPT_MODE, rsaKeyPair.getPrivate(), hsmProvider,
+                cipher -> cipher.doFinal(encrypted));
     }
 
     //AES
-    public String encryptWithAes(SecretKey cmacKey, String plainText, AuthProvider hsmProvider) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = Cipher.getInstance(CryptoConstants.AES_TRANSFORMATION, hsmProvider);
-        byte[] ivAes = new byte[16];
-        new SecureRandom().nextBytes(ivAes);
-        IvParameterSpec ivSpecAes = new IvParameterSpec(ivAes);
-        cipher.init(Cipher.ENCRYPT_MODE, cmacKey, ivSpecAes);
-        byte[] encryptedAes = cipher.doFinal(plainText.getBytes());
-        byte[] combinedAes = new byte[ivAes.length + encryptedAes.length];
-        System.arraycopy(ivAes, 0, combinedAes, 0, ivAes.length);
-        System.arraycopy(encryptedAes, 0, combinedAes, ivAes.length, encryptedAes.length);
-        return Base64.getEncoder().encodeToString(combinedAes);
-    }
-
-    public String decryptWithAes(SecretKey cmacKey, byte[] base64EncryptedDecoded, AuthProvider hsmProvider) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-        byte[] ivAes = new byte[16];
-        byte[] ciphertextAes = new byte[base64EncryptedDecoded.length - 16];
-        System.arraycopy(base64EncryptedDecoded, 0, ivAes, 0, 16);
-        System.arraycopy(base64EncryptedDecoded, 16, ciphertextAes, 0, ciphertextAes.length);
-        Cipher cipher = Cipher.getInstance(CryptoConstants.AES_TRANSFORMATION, hsmProvider);
-        cipher.init(Cipher.DECRYPT_MODE, cmacKey, new IvParameterSpec(ivAes));
-        byte[] decryptedAes = cipher.doFinal(ciphertextAes);
-        return new String(decryptedAes);
+    public String encryptWithAes(SecretKey cmacKey, String plainText, Provider hsmProvider) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(encryptBytesWithAes(cmacKey, plainText.getBytes(StandardCharsets.UTF_8), hsmProvider));
     }
 
-    // Signing and Verification
-    public String signMessageWithGivenKeyAlias(String message, String keyAlias, String signatureAlgorithm, String hsmPin, AuthProvider hsmProvider) throws CryptoException {
+    public String decryptWithAes(SecretKey cmacKey, byte[] base64EncryptedDecoded, Provider hsmProvider) throws GeneralSecurityException {
+        return new String(decryptBytesWithAes(cmacKey, base64EncryptedDecoded, hsmProvider), StandardCharsets.UTF_8);
+    }
+
+    public byte[] encryptBytesWithAes(SecretKey aesKey, byte[] plainBytes, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_TRANSFORMATION, Cipher.ENCRYPT_MODE, aesKey, hsmProvider,
+                cipher -> encryptAes(cipher, aesKey, plainBytes));
+    }
+
+    public byte[] decryptBytesWithAes(SecretKey aesKey, byte[] ivAndCiphertext, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_TRANSFORMATION, Cipher.DECRYPT_MODE, aesKey, hsmProvider,
+                cipher -> decryptAes(cipher, aesKey, ivAndCiphertext));
+    }
+
+    // Streaming AES: same IV-prefixed layout as encryptWithAes, processed in fixed-size chunks
+    public long encryptStreamWithAes(SecretKey aesKey, InputStream in, OutputStream out, int chunkSize, Provider hsmProvider) throws GeneralSecurityException, IOException {
         try {
-            KeyStore keyStore = KeyStore.getInstance("PKCS11", hsmProvider);
-            keyStore.load(null, hsmPin.toCharArray());
+            return enginePool.withCipher(CryptoConstants.AES_TRANSFORMATION, Cipher.ENCRYPT_MODE, aesKey, hsmProvider, cipher -> {
+                byte[] ivAes = new byte[AES_IV_LENGTH];
+                ivRandom.nextBytes(ivAes);
+                cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(ivAes));
+                write(out, ivAes, AES_IV_LENGTH);
+                return AES_IV_LENGTH + pipe(cipher, in, out, chunkSize);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            //Fetch the key from the keystore for signing
-            Key key = keyStore.getKey(keyAlias, hsmPin.toCharArray());
-            if (key == null) {
-                throw new CryptoException("No private key found for alias: " + keyAlias);
-            }
+    public long decryptStreamWithAes(SecretKey aesKey, InputStream in, OutputStream out, int chunkSize, Provider hsmProvider) throws GeneralSecurityException, IOException {
+        byte[] ivAes = in.readNBytes(AES_IV_LENGTH);
+        if (ivAes.length < AES_IV_LENGTH) {
+            throw new IllegalBlockSizeException("Encrypted stream is shorter than the IV");
+        }
+        try {
+            return enginePool.withCipher(CryptoConstants.AES_TRANSFORMATION, Cipher.DECRYPT_MODE, aesKey, hsmProvider, cipher -> {
+                cipher.init(Cipher.DECRYPT_MODE, aesKey, new IvParameterSpec(ivAes));
+                return pipe(cipher, in, out, chunkSize);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            Signature signature = Signature.getInstance(signatureAlgorithm, hsmProvider);
-            signature.initSign((java.security.PrivateKey) key);
-            signature.update(message.getBytes());
-            byte[] sigBytes = signature.sign();
-            return Base64.getEncoder().encodeToString(sigBytes);
-        } catch (Exception e) {
-            throw new CryptoException("Signing failed with algorithm " + signatureAlgorithm + " : " + e.getMessage());
+    // Both buffers are allocated once per stream, so memory stays constant regardless of payload size
+    private long pipe(Cipher cipher, InputStream in, OutputStream out, int chunkSize) throws GeneralSecurityException {
+        byte[] inBuffer = new byte[chunkSize];
+        byte[] outBuffer = new byte[cipher.getOutputSize(chunkSize)];
+        long total = 0;
+        try {
+            int read;
+            while ((read = in.read(inBuffer)) != -1) {
+                int written = cipher.update(inBuffer, 0, read, outBuffer);
+                write(out, outBuffer, written);
+                total += written;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        int written = cipher.doFinal(outBuffer, 0);
+        write(out, outBuffer, written);
+        return total + written;
     }
 
-    public String verifyMessageWithGivenKeyAlias(String message, String base64Signature, String keyAlias, String signatureAlgorithm, String hsmPin, AuthProvider hsmProvider) {
+    private static void write(OutputStream out, byte[] buffer, int length) {
         try {
-            KeyStore keyStore = KeyStore.getInstance("PKCS11", hsmProvider);
-            keyStore.load(null, hsmPin.toCharArray());
+            out.write(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Batch encryption and decryption: one initialized cipher serves a whole chunk
+    public List<BatchItemResult<String>> encryptBatchWithRsa(KeyPair rsaKeyPair, List<String> plainTexts, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.RSA_TRANSFORMATION, Cipher.ENCRYPT_MODE, rsaKeyPair.getPublic(), hsmProvider,
+                cipher -> processBatch(cipher, plainTexts, "Encryption failed",
+                        (rsaCipher, plainText) -> Base64.getEncoder().encodeToString(rsaCipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8))),
+                        rsaCipher -> rsaCipher.init(Cipher.ENCRYPT_MODE, rsaKeyPair.getPublic())));
+    }
+
+    public List<BatchItemResult<String>> decryptBatchWithRsa(KeyPair rsaKeyPair, List<String> base64EncryptedList, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.RSA_TRANSFORMATION, Cipher.DECRYPT_MODE, rsaKeyPair.getPrivate(), hsmProvider,
+                cipher -> processBatch(cipher, base64EncryptedList, "Decryption failed",
+                        (rsaCipher, base64Encrypted) -> new String(rsaCipher.doFinal(Base64.getDecoder().decode(base64Encrypted.trim())), StandardCharsets.UTF_8),
+                        rsaCipher -> rsaCipher.init(Cipher.DECRYPT_MODE, rsaKeyPair.getPrivate())));
+    }
+
+    public List<BatchItemResult<String>> encryptBatchWithAes(SecretKey cmacKey, List<String> plainTexts, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_TRANSFORMATION, Cipher.ENCRYPT_MODE, cmacKey, hsmProvider,
+                cipher -> processBatch(cipher, plainTexts, "Encryption failed",
+                        (aesCipher, plainText) -> Base64.getEncoder().encodeToString(encryptAes(aesCipher, cmacKey, plainText.getBytes(StandardCharsets.UTF_8))),
+                        null));
+    }
+
+    public List<BatchItemResult<String>> decryptBatchWithAes(SecretKey cmacKey, List<String> base64EncryptedList, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_TRANSFORMATION, Cipher.DECRYPT_MODE, cmacKey, hsmProvider,
+                cipher -> processBatch(cipher, base64EncryptedList, "Decryption failed",
+                        (aesCipher, base64Encrypted) -> new String(decryptAes(aesCipher, cmacKey, Base64.getDecoder().decode(base64Encrypted.trim())), StandardCharsets.UTF_8),
+                        null));
+    }
+
+    // IV is generated per message and written in front of the ciphertext in the same buffer
+    private byte[] encryptAes(Cipher cipher, SecretKey aesKey, byte[] plainBytes) throws GeneralSecurityException {
+        byte[] ivAes = new byte[AES_IV_LENGTH];
+        ivRandom.nextBytes(ivAes);
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(ivAes));
+        byte[] out = new byte[AES_IV_LENGTH + cipher.getOutputSize(plainBytes.length)];
+        System.arraycopy(ivAes, 0, out, 0, AES_IV_LENGTH);
+        int written = cipher.doFinal(plainBytes, 0, plainBytes.length, out, AES_IV_LENGTH);
+        return written + AES_IV_LENGTH == out.length ? out : Arrays.copyOf(out, written + AES_IV_LENGTH);
+    }
+
+    private byte[] decryptAes(Cipher cipher, SecretKey aesKey, byte[] ivAndCiphertext) throws GeneralSecurityException {
+        if (ivAndCiphertext.length < AES_IV_LENGTH) {
+            throw new IllegalBlockSizeException("Encrypted data is shorter than the IV");
+        }
+        cipher.init(Cipher.DECRYPT_MODE, aesKey, new IvParameterSpec(ivAndCiphertext, 0, AES_IV_LENGTH));
+        return cipher.doFinal(ivAndCiphertext, AES_IV_LENGTH, ivAndCiphertext.length - AES_IV_LENGTH);
+    }
+
+    //AES-GCM: nonce followed by cipher text and tag, no padding; the AAD is authenticated but not included
+    public byte[] encryptBytesWithAesGcm(SecretKey aesKey, byte[] plainBytes, byte[] aad, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_GCM_TRANSFORMATION, Cipher.ENCRYPT_MODE, aesKey, hsmProvider,
+                cipher -> encryptGcm(cipher, aesKey, plainBytes, aad));
+    }
+
+    public byte[] decryptBytesWithAesGcm(SecretKey aesKey, byte[] ivAndCiphertext, byte[] aad, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_GCM_TRANSFORMATION, Cipher.DECRYPT_MODE, aesKey, hsmProvider,
+                cipher -> decryptGcm(cipher, aesKey, ivAndCiphertext, aad));
+    }
+
+    /**
+     * Encrypts the remaining bytes of {@code plain} into {@code out} (nonce, cipher text and tag) and
+     * returns the number of bytes written. With direct buffers the data is not copied onto the heap.
+     */
+    public int encryptWithAesGcm(SecretKey aesKey, ByteBuffer plain, ByteBuffer aad, ByteBuffer out, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_GCM_TRANSFORMATION, Cipher.ENCRYPT_MODE, aesKey, hsmProvider, cipher -> {
+            byte[] nonce = nextGcmNonce();
+            cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(GCM_TAG_BITS, nonce));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            if (out.remaining() < GCM_IV_LENGTH + cipher.getOutputSize(plain.remaining())) {
+                throw new ShortBufferException("Output buffer too small for the nonce, cipher text and tag");
+            }
+            out.put(nonce);
+            return GCM_IV_LENGTH + cipher.doFinal(plain, out);
+        });
+    }
+
+    /**
+     * Decrypts the remaining bytes of {@code ivAndCiphertext} as written by
+     * {@link #encryptWithAesGcm(SecretKey, ByteBuffer, ByteBuffer, ByteBuffer, Provider)} into {@code out}
+     * and returns the number of plain bytes.
+     */
+    public int decryptWithAesGcm(SecretKey aesKey, ByteBuffer ivAndCiphertext, ByteBuffer aad, ByteBuffer out, Provider hsmProvider) throws GeneralSecurityException {
+        if (ivAndCiphertext.remaining() < GCM_IV_LENGTH + GCM_TAG_BITS / 8) {
+            throw new IllegalBlockSizeException("Encrypted data is shorter than the nonce and tag");
+        }
+        return enginePool.withCipher(CryptoConstants.AES_GCM_TRANSFORMATION, Cipher.DECRYPT_MODE, aesKey, hsmProvider, cipher -> {
+            byte[] nonce = new byte[GCM_IV_LENGTH];
+            ivAndCiphertext.get(nonce);
+            cipher.init(Cipher.DECRYPT_MODE, aesKey, new GCMParameterSpec(GCM_TAG_BITS, nonce));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            return cipher.doFinal(ivAndCiphertext, out);
+        });
+    }
+
+    public List<BatchItemResult<String>> encryptBatchWithAesGcm(SecretKey aesKey, List<String> plainTexts, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_GCM_TRANSFORMATION, Cipher.ENCRYPT_MODE, aesKey, hsmProvider,
+                cipher -> processBatch(cipher, plainTexts, "Encryption failed",
+                        (gcmCipher, plainText) -> Base64.getEncoder().encodeToString(encryptGcm(gcmCipher, aesKey, plainText.getBytes(StandardCharsets.UTF_8), null)),
+                        null));
+    }
+
+    public List<BatchItemResult<String>> decryptBatchWithAesGcm(SecretKey aesKey, List<String> base64EncryptedList, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withCipher(CryptoConstants.AES_GCM_TRANSFORMATION, Cipher.DECRYPT_MODE, aesKey, hsmProvider,
+                cipher -> processBatch(cipher, base64EncryptedList, "Decryption failed",
+                        (gcmCipher, base64Encrypted) -> new String(decryptGcm(gcmCipher, aesKey, Base64.getDecoder().decode(base64Encrypted.trim()), null), StandardCharsets.UTF_8),
+                        null));
+    }
+
+    // Envelope encryption: the token only wraps and unwraps the data key under its key-encryption key;
+    // the payload is encrypted with that data key in software (SunJCE, AES-NI intrinsics). Both use
+    // the AES-GCM layout above, so a tampered wrapped key or cipher text fails to decrypt
+    public byte[] wrapKeyWithAes(SecretKey keyEncryptionKey, byte[] dataKey, Provider hsmProvider) throws GeneralSecurityException {
+        return encryptBytesWithAesGcm(keyEncryptionKey, dataKey, null, hsmProvider);
+    }
+
+    public byte[] unwrapKeyWithAes(SecretKey keyEncryptionKey, byte[] wrappedKey, Provider hsmProvider) throws GeneralSecurityException {
+        return decryptBytesWithAesGcm(keyEncryptionKey, wrappedKey, null, hsmProvider);
+    }
+
+    // Data keys are short-lived (see DataKeyCache), so their ciphers are not pooled
+    public byte[] encryptBytesWithDataKey(byte[] dataKey, byte[] plainBytes) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CryptoConstants.AES_GCM_TRANSFORMATION, CryptoConstants.SOFTWARE_PROVIDER);
+        return encryptGcm(cipher, new SecretKeySpec(dataKey, CryptoConstants.AES_ALGORITHM), plainBytes, null);
+    }
+
+    public byte[] decryptBytesWithDataKey(byte[] dataKey, byte[] ivAndCiphertext) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CryptoConstants.AES_GCM_TRANSFORMATION, CryptoConstants.SOFTWARE_PROVIDER);
+        return decryptGcm(cipher, new SecretKeySpec(dataKey, CryptoConstants.AES_ALGORITHM), ivAndCiphertext, null);
+    }
+
+    private byte[] encryptGcm(Cipher cipher, SecretKey key, byte[] plainBytes, byte[] aad) throws GeneralSecurityException {
+        byte[] nonce = nextGcmNonce();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, nonce));
+        if (aad != null) {
+            cipher.updateAAD(aad);
+        }
+        byte[] out = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plainBytes.length)];
+        System.arraycopy(nonce, 0, out, 0, GCM_IV_LENGTH);
+        int written = cipher.doFinal(plainBytes, 0, plainBytes.length, out, GCM_IV_LENGTH);
+        return written + GCM_IV_LENGTH == out.length ? out : Arrays.copyOf(out, written + GCM_IV_LENGTH);
+    }
+
+    private byte[] decryptGcm(Cipher cipher, SecretKey key, byte[] ivAndCiphertext, byte[] aad) throws GeneralSecurityException {
+        if (ivAndCiphertext.length < GCM_IV_LENGTH + GCM_TAG_BITS / 8) {
+            throw new IllegalBlockSizeException("Encrypted data is shorter than the nonce and tag");
+        }
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, ivAndCiphertext, 0, GCM_IV_LENGTH));
+        if (aad != null) {
+            cipher.updateAAD(aad);
+        }
+        return cipher.doFinal(ivAndCiphertext, GCM_IV_LENGTH, ivAndCiphertext.length - GCM_IV_LENGTH);
+    }
+
+    private byte[] nextGcmNonce() {
+        return ByteBuffer.allocate(GCM_IV_LENGTH).putInt(gcmNonceField).putLong(gcmNonceCounter.getAndIncrement()).array();
+    }
+
+    @FunctionalInterface
+    private interface BatchItemOperation<E> {
+        String apply(E engine, String item) throws GeneralSecurityException;
+    }
+
+    @FunctionalInterface
+    private interface EngineReset<E> {
+        void reset(E engine) throws GeneralSecurityException;
+    }
 
-            Certificate certificate = keyStore.getCertificate(keyAlias);
-            if (certificate == null) {
-                throw new CryptoException("No certificate found for alias: " + keyAlias);
+    private <E> List<BatchItemResult<String>> processBatch(E engine, List<String> items, String failureMessage,
+                                                           BatchItemOperation<E> operation, EngineReset<E> reset) throws GeneralSecurityException {
+        List<BatchItemResult<String>> results = new ArrayList<>(items.size());
+        for (String item : items) {
+            int index = results.size();
+            if (item == null || item.isEmpty()) {
+                results.add(BatchItemResult.failure(index, "Input must not be empty"));
+                continue;
             }
+            try {
+                results.add(BatchItemResult.success(index, operation.apply(engine, item)));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                results.add(BatchItemResult.failure(index, failureMessage + " : " + e.getMessage()));
+                if (reset != null) {
+                    reset.reset(engine);
+                }
+            }
+        }
+        return results;
+    }
+
+    // Signing and Verification
+    public String signMessageWithGivenKeyAlias(String message, String keyAlias, String signatureAlgorithm, AuthProvider hsmProvider) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytesWithGivenKeyAlias(message.getBytes(StandardCharsets.UTF_8), keyAlias, signatureAlgorithm, hsmProvider));
+    }
+
+    public String verifyMessageWithGivenKeyAlias(String message, String base64Signature, String keyAlias, String signatureAlgorithm, AuthProvider hsmProvider) {
+        byte[] base64SignatureDecoded;
+        try {
+            base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
+        } catch (IllegalArgumentException e) {
+            throw new CryptoException("Verification failed with algorithm " + signatureAlgorithm + " : " + e.getMessage());
+        }
+        boolean verified = verifyBytesWithGivenKeyAlias(message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded, keyAlias, signatureAlgorithm, hsmProvider);
+        return verified ? "Message Verified Successfully" : "Message Verification Failed";
+    }
 
-            Signature signature = Signature.getInstance(signatureAlgorithm, hsmProvider);
-            signature.initVerify(certificate.getPublicKey());
-            signature.update(message.getBytes());
-            byte[] base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
-            return signature.verify(base64SignatureDecoded) ? "Message Verified Successfully" : "Message Verification Failed";
+    public byte[] signBytesWithGivenKeyAlias(byte[] message, String keyAlias, String signatureAlgorithm, AuthProvider hsmProvider) throws CryptoException {
+        try {
+            //Fetch the key from the alias cache for signing
+            PrivateKey privateKey = aliasCache().getPrivateKey(keyAlias, hsmProvider);
+            return signBytesWithPrivateKey(message, privateKey, signatureAlgorithm, hsmProvider);
+        } catch (Exception e) {
+            throw new CryptoException("Signing failed with algorithm " + signatureAlgorithm + " : " + e.getMessage());
+        }
+    }
+
+    public boolean verifyBytesWithGivenKeyAlias(byte[] message, byte[] signatureBytes, String keyAlias, String signatureAlgorithm, AuthProvider hsmProvider) {
+        try {
+            Certificate certificate = aliasCache().getCertificate(keyAlias, hsmProvider);
+            return verifyBytesWithPublicKey(message, signatureBytes, certificate.getPublicKey(), signatureAlgorithm, hsmProvider);
         } catch (Exception e) {
             throw new CryptoException("Verification failed with algorithm " + signatureAlgorithm + " : " + e.getMessage());
         }
     }
 
+    public byte[] signBytesWithPrivateKey(byte[] message, PrivateKey privateKey, String signatureAlgorithm, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withSignature(signatureAlgorithm, privateKey, hsmProvider, signature -> {
+            signature.update(message);
+            return signature.sign();
+        });
+    }
+
+    public boolean verifyBytesWithPublicKey(byte[] message, byte[] signatureBytes, PublicKey publicKey, String signatureAlgorithm, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withSignature(signatureAlgorithm, publicKey, hsmProvider, signature -> {
+            signature.update(message);
+            return signature.verify(signatureBytes);
+        });
+    }
+
+    private KeyAliasCache aliasCache() {
+        KeyAliasCache cache = keyAliasCache.getIfAvailable();
+        if (cache == null) {
+            throw new CryptoException("Key aliases are only resolved on a PKCS#11 token");
+        }
+        return cache;
+    }
+
+
+    // Batch signing and verification: one engine, and so one PKCS#11 session, serves a whole chunk
+    public List<BatchItemResult<String>> signMessagesWithPrivateKey(List<String> messages, PrivateKey privateKey, String signatureAlgorithm, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withSignature(signatureAlgorithm, privateKey, hsmProvider, signature -> {
+            List<BatchItemResult<String>> results = new ArrayList<>(messages.size());
+            for (String message : messages) {
+                int index = results.size();
+                if (message == null || message.isEmpty()) {
+                    results.add(BatchItemResult.failure(index, "Message must not be empty"));
+                    continue;
+                }
+                try {
+                    signature.update(message.getBytes(StandardCharsets.UTF_8));
+                    results.add(BatchItemResult.success(index, Base64.getEncoder().encodeToString(signature.sign())));
+                } catch (SignatureException e) {
+                    results.add(BatchItemResult.failure(index, "Signing failed : " + e.getMessage()));
+                    signature.initSign(privateKey);
+                }
+            }
+            return results;
+        });
+    }
+
+    public List<BatchItemResult<Boolean>> verifyMessagesWithPublicKey(List<String> messages, List<String> base64Signatures, PublicKey publicKey, String signatureAlgorithm, Provider hsmProvider) throws GeneralSecurityException {
+        return enginePool.withSignature(signatureAlgorithm, publicKey, hsmProvider, signature -> {
+            List<BatchItemResult<Boolean>> results = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                String message = messages.get(i);
+                String base64Signature = base64Signatures.get(i);
+                if (message == null || message.isEmpty() || base64Signature == null || base64Signature.isEmpty()) {
+                    results.add(BatchItemResult.failure(i, "Message and signature must not be empty"));
+                    continue;
+                }
+                try {
+                    byte[] base64SignatureDecoded = Base64.getDecoder().decode(base64Signature.trim());
+                    signature.update(message.getBytes(StandardCharsets.UTF_8));
+                    results.add(BatchItemResult.success(i, signature.verify(base64SignatureDecoded)));
+                } catch (IllegalArgumentException e) {
+                    results.add(BatchItemResult.failure(i, "Invalid Base64 signature : " + e.getMessage()));
+                } catch (SignatureException e) {
+                    results.add(BatchItemResult.failure(i, "Verification failed : " + e.getMessage()));
+                    signature.initVerify(publicKey);
+                }
+            }
+            return results;
+        });
+    }
+
 
-    public String signMessageWithRsa(String message, KeyPair rsaKeyPair, AuthProvider hsmProvider) throws CryptoException {
+    public String signMessageWithRsa(String message, KeyPair rsaKeyPair, Provider hsmProvider) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytesWithRsa(message.getBytes(StandardCharsets.UTF_8), rsaKeyPair, hsmProvider));
+    }
+
+    public String signMessageWithCmac(String message,SecretKey cmacKey, Provider hsmProvider) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytesWithCmac(message.getBytes(StandardCharsets.UTF_8), cmacKey, hsmProvider));
+    }
+
+    public String signMessageWithHmac(String message, SecretKey hmacKey, Provider hsmProvider) throws CryptoException {
+        return Base64.getEncoder().encodeToString(signBytesWithHmac(message.getBytes(StandardCharsets.UTF_8), hmacKey, hsmProvider));
+    }
+
+    public boolean verifyMessageWithRsa(String message, byte[] base64SignatureDecoded, KeyPair rsaKeyPair, Provider hsmProvider) {
+        return verifyBytesWithRsa(message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded, rsaKeyPair, hsmProvider);
+    }
+
+    public boolean verifyMessageWithCmac(String message, byte[] base64SignatureDecoded, SecretKey cmacKey, Provider hsmProvider) {
+        return verifyBytesWithCmac(message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded, cmacKey, hsmProvider);
+    }
+
+    public boolean verifyMessageWithHmac(String message, byte[] base64SignatureDecoded, SecretKey hmacKey, Provider hsmProvider) {
+        return verifyBytesWithHmac(message.getBytes(StandardCharsets.UTF_8), base64SignatureDecoded, hmacKey, hsmProvider);
+    }
+
+    public byte[] signBytesWithRsa(byte[] message, KeyPair rsaKeyPair, Provider hsmProvider) throws CryptoException {
         try {
-            Signature signature = Signature.getInstance(CryptoConstants.RSA_SIGNATURE_ALGORITHM, hsmProvider);
-            signature.initSign(rsaKeyPair.getPrivate());
-            signature.update(message.getBytes());
-            byte[] sigBytes = signature.sign();
-            return Base64.getEncoder().encodeToString(sigBytes);
+            return enginePool.withSignature(CryptoConstants.RSA_SIGNATURE_ALGORITHM, rsaKeyPair.getPrivate(), hsmProvider, signature -> {
+                signature.update(message);
+                return signature.sign();
+            });
         } catch (Exception e) {
             throw new CryptoException("RSA signing failed : " + e.getMessage());
         }
     }
 
-    public String signMessageWithCmac(String message,SecretKey cmacKey, AuthProvider hsmProvider) throws CryptoException {
+    public byte[] signBytesWithCmac(byte[] message, SecretKey cmacKey, Provider hsmProvider) throws CryptoException {
         try {
-            Mac mac = Mac.getInstance(CryptoConstants.CMAC_ALGORITHM, hsmProvider);
-            mac.init(cmacKey);
-            byte[] macBytes = mac.doFinal(message.getBytes());
-            return Base64.getEncoder().encodeToString(macBytes);
+            return enginePool.withMac(CryptoConstants.CMAC_ALGORITHM, cmacKey, hsmProvider, mac -> mac.doFinal(message));
         } catch (Exception e) {
             throw new CryptoException("CMAC signing failed : " + e.getMessage());
         }
     }
 
-    public String signMessageWithHmac(String message, SecretKey hmacKey, AuthProvider hsmProvider) throws CryptoException {
+    public byte[] signBytesWithHmac(byte[] message, SecretKey hmacKey, Provider hsmProvider) throws CryptoException {
         try {
-            Mac mac = Mac.getInstance(CryptoConstants.HMAC_ALGORITHM, hsmProvider);
-            mac.init(hmacKey);
-            byte[] macBytes = mac.doFinal(message.getBytes());
-            return Base64.getEncoder().encodeToString(macBytes);
+            return enginePool.withMac(CryptoConstants.HMAC_ALGORITHM, hmacKey, hsmProvider, mac -> mac.doFinal(message));
         } catch (Exception e) {
             throw new CryptoException("HMAC signing failed : " + e.getMessage());
         }
     }
 
-    public boolean verifyMessageWithRsa(String message, byte[] base64SignatureDecoded, KeyPair rsaKeyPair, AuthProvider hsmProvider) {
+    public boolean verifyBytesWithRsa(byte[] message, byte[] signatureBytes, KeyPair rsaKeyPair, Provider hsmProvider) {
         try {
-            Signature signature = Signature.getInstance(CryptoConstants.RSA_SIGNATURE_ALGORITHM, hsmProvider);
-            signature.initVerify(rsaKeyPair.getPublic());
-            signature.update(message.getBytes());
-            return signature.verify(base64SignatureDecoded);
+            return enginePool.withSignature(CryptoConstants.RSA_SIGNATURE_ALGORITHM, rsaKeyPair.getPublic(), hsmProvider, signature -> {
+                signature.update(message);
+                return signature.verify(signatureBytes);
+            });
         } catch (Exception e) {
             throw new CryptoException("RSA verification failed : " + e.getMessage());
         }
     }
 
-    public boolean verifyMessageWithCmac(String message, byte[] base64SignatureDecoded, SecretKey cmacKey, AuthProvider hsmProvider) {
+    public boolean verifyBytesWithCmac(byte[] message, byte[] macBytes, SecretKey cmacKey, Provider hsmProvider) {
         try {
-            Mac mac = Mac.getInstance(CryptoConstants.CMAC_ALGORITHM, hsmProvider);
-            mac.init(cmacKey);
-            byte[] macBytes = mac.doFinal(message.getBytes());
-            return MessageDigest.isEqual(macBytes, base64SignatureDecoded);
+            byte[] expected = enginePool.withMac(CryptoConstants.CMAC_ALGORITHM, cmacKey, hsmProvider, mac -> mac.doFinal(message));
+            return MessageDigest.isEqual(expected, macBytes);
         } catch (Exception e) {
             throw new CryptoException("CMAC verification failed : " + e.getMessage());
         }
     }
 
-    public boolean verifyMessageWithHmac(String message, byte[] base64SignatureDecoded, SecretKey hmacKey, AuthProvider hsmProvider) {
+    public boolean verifyBytesWithHmac(byte[] message, byte[] macBytes, SecretKey hmacKey, Provider hsmProvider) {
         try {
-            Mac mac = Mac.getInstance(CryptoConstants.HMAC_ALGORITHM, hsmProvider);
-            mac.init(hmacKey);
-            byte[] macBytes = mac.doFinal(message.getBytes());
-            return MessageDigest.isEqual(macBytes, base64SignatureDecoded);
+            byte[] expected = enginePool.withMac(CryptoConstants.HMAC_ALGORITHM, hmacKey, hsmProvider, mac -> mac.doFinal(message));
+            return MessageDigest.isEqual(expected, macBytes);
         } catch (Exception e) {
             throw new CryptoException("HMAC verification failed : " + e.getMessage());
         }
     }
 
 
+    public KeyPair generateKeyPair(String algorithm, int keySize, String ecCurve, Provider hsmProvider) throws GeneralSecurityException {
+        KeyPairGenerator keyPairGen = hsmProvider == null
+                ? KeyPairGenerator.getInstance(algorithm)
+                : KeyPairGenerator.getInstance(algorithm, hsmProvider);
+        if ("EC".equalsIgnoreCase(algorithm)) {
+            keyPairGen.initialize(new ECGenParameterSpec(ecCurve));
+        } else {
+            keyPairGen.initialize(keySize);
+        }
+        return keyPairGen.generateKeyPair();
+    }
+
     // Generate self-signed certificate
     public X509Certificate generateSelfSignedCertificate(KeyPair keyPair, String algorithm) throws Exception {
         long now = System.currentTimeMillis();
@@ -0,0 +1,256 @@
+package com.hsm.simulator.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of plain envelope data keys, so that consecutive envelopes share a data key instead of
+ * costing a wrap (or unwrap) in the token each.
+ * <p>
+ * Encryption reuses the current data key until it is older than {@code envelope.cache.max-age}, has
+ * encrypted {@code max-messages} payloads or would exceed {@code max-bytes} of plain text; the next
+ * payload then gets a fresh key. Decryption keeps up to {@code max-entries} unwrapped keys by wrapped
+ * key (LRU, same maximum age), including the keys just used for encryption. Keys leaving the cache are
+ * zeroized; callers get a copy and must zeroize it themselves.
+ */
+@Component
+public class DataKeyCache {
+
+    // Random 96-bit GCM IVs must stay well below 2^32 messages per key
+    private static final long MAX_MESSAGES_LIMIT = 1L << 32;
+
+    public record DataKey(byte[] plainKey, byte[] wrappedKey) {
+    }
+
+    @FunctionalInterface
+    public interface Generator {
+        DataKey generate() throws GeneralSecurityException;
+    }
+
+    @FunctionalInterface
+    public interface Unwrapper {
+        byte[] unwrap(byte[] wrappedKey) throws GeneralSecurityException;
+    }
+
+    private static final class Entry {
+        private final byte[] plainKey;
+        private final byte[] wrappedKey;
+        private final long createdAtNanos = System.nanoTime();
+        private long messages;
+        private long bytes;
+
+        private Entry(byte[] plainKey, byte[] wrappedKey) {
+            this.plainKey = plainKey.clone();
+            this.wrappedKey = wrappedKey;
+        }
+
+        private DataKey copy() {
+            return new DataKey(plainKey.clone(), wrappedKey);
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final long maxMessages;
+    private final long maxBytes;
+    private final MeterRegistry meterRegistry;
+    // Guarded by this
+    private Entry encryptionEntry;
+    private final LinkedHashMap<ByteBuffer, Entry> decryptionEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder encryptHits = new LongAdder();
+    private final LongAdder encryptMisses = new LongAdder();
+    private final LongAdder decryptHits = new LongAdder();
+    private final LongAdder decryptMisses = new LongAdder();
+
+    public DataKeyCache(MeterRegistry meterRegistry,
+                        @Value("${envelope.cache.enabled:true}") boolean enabled,
+                        @Value("${envelope.cache.max-entries:1024}") int maxEntries,
+                        @Value("${envelope.cache.max-age:PT5M}") Duration maxAge,
+                        @Value("${envelope.cache.max-messages:10000}") long maxMessages,
+                        @Value("${envelope.cache.max-bytes:1073741824}") long maxBytes) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxAgeNanos = maxAge.toNanos();
+        this.maxMessages = Math.min(MAX_MESSAGES_LIMIT, Math.max(1, maxMessages));
+        this.maxBytes = Math.max(1, maxBytes);
+        this.meterRegistry = meterRegistry;
+
+        registerCounters("encrypt", encryptHits, encryptMisses);
+        registerCounters("decrypt", decryptHits, decryptMisses);
+        FunctionCounter.builder("hsm.datakey.cache.hsm.calls.avoided", this, cache -> cache.encryptHits.doubleValue() + cache.decryptHits.doubleValue())
+                .description("Token wrap and unwrap calls saved by reusing a cached data key")
+                .register(meterRegistry);
+        Gauge.builder("hsm.datakey.cache.size", this, DataKeyCache::size)
+                .register(meterRegistry);
+        Gauge.builder("hsm.datakey.cache.hit.ratio", this, DataKeyCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns a data key for encrypting {@code plainBytes} bytes: the cached one if it still has room
+     * for them, otherwise a new one from {@code generator}, which then becomes the cached key.
+     */
+    public DataKey encryptionKey(long plainBytes, Generator generator) throws GeneralSecurityException {
+        if (!enabled) {
+            return generator.generate();
+        }
+        synchronized (this) {
+            Entry entry = encryptionEntry;
+            if (entry != null) {
+                String exhausted = exhausted(entry, plainBytes);
+                if (exhausted == null) {
+                    entry.messages++;
+                    entry.bytes += plainBytes;
+                    encryptHits.increment();
+                    return entry.copy();
+                }
+                encryptionEntry = null;
+                evict(entry, exhausted);
+            }
+        }
+        encryptMisses.increment();
+
+        // Generate outside the lock; concurrent misses each make a key, the first one is kept
+        DataKey dataKey = generator.generate();
+        synchronized (this) {
+            // A payload above max-bytes never fits a cached key, so it does not replace the current one
+            if (encryptionEntry == null && plainBytes <= maxBytes) {
+                Entry entry = new Entry(dataKey.plainKey(), dataKey.wrappedKey());
+                entry.messages = 1;
+                entry.bytes = plainBytes;
+                encryptionEntry = entry;
+            }
+            putDecryptionEntry(dataKey.plainKey(), dataKey.wrappedKey());
+        }
+        return dataKey;
+    }
+
+    /**
+     * Returns the plain data key for {@code wrappedKey}, from the cache or else from {@code unwrapper}.
+     */
+    public byte[] decryptionKey(byte[] wrappedKey, Unwrapper unwrapper) throws GeneralSecurityException {
+        if (!enabled) {
+            return unwrapper.unwrap(wrappedKey);
+        }
+        synchronized (this) {
+            ByteBuffer cacheKey = ByteBuffer.wrap(wrappedKey);
+            Entry entry = decryptionEntries.get(cacheKey);
+            if (entry != null) {
+                if (System.nanoTime() - entry.createdAtNanos < maxAgeNanos) {
+                    decryptHits.increment();
+                    return entry.plainKey.clone();
+                }
+                decryptionEntries.remove(cacheKey);
+                evict(entry, "age");
+            }
+        }
+        decryptMisses.increment();
+
+        byte[] plainKey = unwrapper.unwrap(wrappedKey);
+        synchronized (this) {
+            putDecryptionEntry(plainKey, wrappedKey.clone());
+        }
+        return plainKey;
+    }
+
+    /**
+     * Zeroizes and drops keys past their maximum age, so idle keys do not linger in memory.
+     */
+    @Scheduled(fixedDelayString = "${envelope.cache.purge-interval:PT30S}", initialDelayString = "${envelope.cache.purge-interval:PT30S}")
+    public synchronized void purgeExpired() {
+        long now = System.nanoTime();
+        if (encryptionEntry != null && now - encryptionEntry.createdAtNanos >= maxAgeNanos) {
+            evict(encryptionEntry, "age");
+            encryptionEntry = null;
+        }
+        Iterator<Entry> iterator = decryptionEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.createdAtNanos >= maxAgeNanos) {
+                iterator.remove();
+                evict(entry, "age");
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void clear() {
+        if (encryptionEntry != null) {
+            Arrays.fill(encryptionEntry.plainKey, (byte) 0);
+            encryptionEntry = null;
+        }
+        decryptionEntries.values().forEach(entry -> Arrays.fill(entry.plainKey, (byte) 0));
+        decryptionEntries.clear();
+    }
+
+    public synchronized int size() {
+        return decryptionEntries.size() + (encryptionEntry != null ? 1 : 0);
+    }
+
+    public double hitRatio() {
+        long hits = encryptHits.sum() + decryptHits.sum();
+        long total = hits + encryptMisses.sum() + decryptMisses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    // Name of the first usage limit the entry would exceed by encrypting plainBytes more, null if none
+    private String exhausted(Entry entry, long plainBytes) {
+        if (System.nanoTime() - entry.createdAtNanos >= maxAgeNanos) {
+            return "age";
+        }
+        if (entry.messages >= maxMessages) {
+            return "messages";
+        }
+        if (entry.bytes + plainBytes > maxBytes) {
+            return "bytes";
+        }
+        return null;
+    }
+
+    private void putDecryptionEntry(byte[] plainKey, byte[] wrappedKey) {
+        Entry previous = decryptionEntries.put(ByteBuffer.wrap(wrappedKey), new Entry(plainKey, wrappedKey));
+        if (previous != null) {
+            Arrays.fill(previous.plainKey, (byte) 0);
+        }
+        if (decryptionEntries.size() > maxEntries) {
+            Iterator<Entry> eldest = decryptionEntries.values().iterator();
+            Entry entry = eldest.next();
+            eldest.remove();
+            evict(entry, "size");
+        }
+    }
+
+    private void evict(Entry entry, String reason) {
+        Arrays.fill(entry.plainKey, (byte) 0);
+        Counter.builder("hsm.datakey.cache.evictions")
+                .description("Data keys zeroized and dropped from the cache")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void registerCounters(String use, LongAdder hits, LongAdder misses) {
+        FunctionCounter.builder("hsm.datakey.cache.hits", hits, LongAdder::doubleValue)
+                .tag("use", use)
+                .register(meterRegistry);
+        FunctionCounter.builder("hsm.datakey.cache.misses", misses, LongAdder::doubleValue)
+                .tag("use", use)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,331 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.exception.HsmBusyException;
+import com.hsm.simulator.exception.HsmOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of the HSM: each operation class (lane) is a bulkhead with its own
+ * concurrency limit and bounded wait queue, independently of the servlet thread pool (which is
+ * unbounded in practice with virtual threads). A burst of slow key generations thus cannot hold the
+ * capacity cheap MAC or sign requests need. Likewise streams, whose permits are held for the client's
+ * upload or download, are kept in a bulk lane of their own.
+ * <p>
+ * A request that finds its lane's queue full ({@code hsm.concurrency.<lane>.queue-size}) is rejected at
+ * once with {@link HsmOverloadedException} (429); one that waits longer than
+ * {@code hsm.concurrency.acquire-timeout} gets {@link HsmBusyException} (503). Both carry a retry
+ * estimate from the queue length and the lane's average latency.
+ * <p>
+ * With {@code hsm.concurrency.adaptive} the limit moves between {@code min-limit} and
+ * {@code max-limit} (AIMD), decided once per {@code latency-window}: when the calls of the window took
+ * on average more than {@code latency-tolerance} times their no-load latency the limit is cut by
+ * {@code backoff-ratio}, otherwise it grows by one if it was in full use. The no-load latency is the
+ * minimum seen over the last {@code baseline-windows} windows, kept per work class (e.g. algorithm
+ * and payload size), so a 64 KiB AES call is not compared with a 16 byte one, nor RSA-4096 with ECDSA,
+ * and sustained congestion does not become the new normal as a running average would.
+ */
+@Component
+public class HsmConcurrencyLimiter {
+
+    public enum Lane { SYMMETRIC, ASYMMETRIC, KEYGEN, INVENTORY, BULK }
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    // Weight of one call in the average latency behind Retry-After, ~ the last 100 calls
+    private static final double LATENCY_SMOOTHING = 0.01;
+    // Work classes with a baseline of their own per lane; further classes share one
+    private static final int MAX_WORK_CLASSES = 64;
+    private static final String DEFAULT_WORK_CLASS = "default";
+    private static final String OTHER_WORK_CLASS = "other";
+
+    private static final Map<Lane, int[]> DEFAULT_LIMITS = Map.of(
+            Lane.SYMMETRIC, new int[]{64, 256},
+            Lane.ASYMMETRIC, new int[]{32, 128},
+            Lane.KEYGEN, new int[]{4, 16},
+            Lane.INVENTORY, new int[]{4, 32},
+            Lane.BULK, new int[]{16, 64});
+
+    // No-load latency of one work class: the minimum over the last windows, one slot per window
+    private static final class Baseline {
+        private final long[] windowMinimums;
+        private int current;
+
+        private Baseline(int windows) {
+            this.windowMinimums = new long[windows];
+        }
+
+        private long nanos() {
+            long minimum = 0;
+            for (long windowMinimum : windowMinimums) {
+                if (windowMinimum > 0 && (minimum == 0 || windowMinimum < minimum)) {
+                    minimum = windowMinimum;
+                }
+            }
+            return minimum;
+        }
+
+        private void record(long latencyNanos) {
+            long latency = Math.max(1, latencyNanos);
+            if (windowMinimums[current] == 0 || latency < windowMinimums[current]) {
+                windowMinimums[current] = latency;
+            }
+        }
+
+        // Returns false once no window holds a sample, i.e. the class has not been seen for a while
+        private boolean roll() {
+            current = (current + 1) % windowMinimums.length;
+            windowMinimums[current] = 0;
+            return nanos() > 0;
+        }
+    }
+
+    private final class Bulkhead {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition freed = lock.newCondition();
+        private final int minLimit;
+        private final int maxLimit;
+        private final int queueSize;
+        private final long acquireTimeoutNanos;
+        private final Timer waitTimer;
+        private final Counter queueFull;
+        private final Counter timedOut;
+        // Guarded by lock, volatile for the gauges
+        private volatile double limit;
+        private volatile int active;
+        private volatile int queued;
+        private double averageLatencyNanos;
+        private final Map<String, Baseline> baselines = new HashMap<>();
+        private long windowStartNanos = System.nanoTime();
+        private double windowLatencyRatios;
+        private int windowSamples;
+        private boolean windowSaturated;
+
+        private Bulkhead(Lane lane, Environment environment, Duration defaultTimeout, MeterRegistry meterRegistry) {
+            this.name = lane.name().toLowerCase(Locale.ROOT);
+            String prefix = "hsm.concurrency." + name + ".";
+            this.maxLimit = Math.max(1, environment.getProperty(prefix + "max-limit", Integer.class, DEFAULT_LIMITS.get(lane)[0]));
+            this.minLimit = Math.min(maxLimit, Math.max(1, environment.getProperty(prefix + "min-limit", Integer.class, Math.max(1, maxLimit / 4))));
+            this.queueSize = Math.max(0, environment.getProperty(prefix + "queue-size", Integer.class, DEFAULT_LIMITS.get(lane)[1]));
+            this.acquireTimeoutNanos = environment.getProperty(prefix + "acquire-timeout", Duration.class, defaultTimeout).toNanos();
+            this.limit = maxLimit;
+
+            this.waitTimer = Timer.builder("hsm.concurrency.wait")
+                    .description("Time spent waiting for an HSM permit")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            this.queueFull = Counter.builder("hsm.concurrency.rejected")
+                    .description("Requests turned away because the lane queue was full or the wait timed out")
+                    .tag("lane", name).tag("reason", "queue-full")
+                    .register(meterRegistry);
+            this.timedOut = Counter.builder("hsm.concurrency.rejected")
+                    .description("Requests turned away because the lane queue was full or the wait timed out")
+                    .tag("lane", name).tag("reason", "timeout")
+                    .register(meterRegistry);
+            Gauge.builder("hsm.concurrency.limit", this, bulkhead -> Math.floor(bulkhead.limit))
+                    .description("Current concurrency limit of the lane")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            Gauge.builder("hsm.concurrency.active", this, bulkhead -> bulkhead.active)
+                    .description("Requests inside the HSM in this lane")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            Gauge.builder("hsm.concurrency.queued", this, bulkhead -> bulkhead.queued)
+                    .description("Requests waiting for a permit in this lane")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            Gauge.builder("hsm.concurrency.permits.available", this, bulkhead -> Math.max(0, (int) bulkhead.limit - bulkhead.active))
+                    .tag("lane", name)
+                    .register(meterRegistry);
+        }
+
+        // A patient caller is neither turned away by a full queue nor by the acquire timeout
+        private void acquire(boolean patient) {
+            long waitStart = System.nanoTime();
+            lock.lock();
+            try {
+                if (queued == 0 && active < (int) limit) {
+                    active++;
+                    return;
+                }
+                if (!patient && queued >= queueSize) {
+                    queueFull.increment();
+                    throw new HsmOverloadedException("HSM is overloaded, " + queued + " " + name
+                            + " requests already queued", retryAfter());
+                }
+                queued++;
+                try {
+                    long remaining = acquireTimeoutNanos;
+                    while (active >= (int) limit) {
+                        if (patient) {
+                            freed.await();
+                            continue;
+                        }
+                        if (remaining <= 0) {
+                            timedOut.increment();
+                            throw new HsmBusyException("HSM is busy, no " + name + " permit available within "
+                                    + Duration.ofNanos(acquireTimeoutNanos), retryAfter());
+                        }
+                        remaining = freed.awaitNanos(remaining);
+                    }
+                    active++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HsmBusyException("Interrupted while waiting for an HSM permit");
+                } finally {
+                    queued--;
+                }
+            } finally {
+                lock.unlock();
+                waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void release(long latencyNanos, String workClass) {
+            lock.lock();
+            try {
+                boolean saturated = queued > 0 || active >= (int) limit;
+                active--;
+                if (workClass != null) {
+                    averageLatencyNanos = averageLatencyNanos == 0
+                            ? latencyNanos
+                            : averageLatencyNanos + (latencyNanos - averageLatencyNanos) * LATENCY_SMOOTHING;
+                    if (adaptive) {
+                        adapt(latencyNanos, workClass, saturated);
+                    }
+                }
+                // The limit may have grown by a whole permit, so wake every waiter that now fits
+                if ((int) limit - active > 1) {
+                    freed.signalAll();
+                } else {
+                    freed.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adapt(long latencyNanos, String workClass, boolean saturated) {
+            Baseline baseline = baselines.get(workClass);
+            if (baseline == null) {
+                String key = baselines.size() < MAX_WORK_CLASSES ? workClass : OTHER_WORK_CLASS;
+                baseline = baselines.computeIfAbsent(key, k -> new Baseline(baselineWindows));
+            }
+            long baselineNanos = baseline.nanos();
+            baseline.record(latencyNanos);
+            // The first call of a class only sets its baseline
+            if (baselineNanos > 0) {
+                windowLatencyRatios += (double) latencyNanos / baselineNanos;
+                windowSamples++;
+            }
+            windowSaturated |= saturated;
+
+            long now = System.nanoTime();
+            if (now - windowStartNanos < latencyWindowNanos) {
+                return;
+            }
+            if (windowSamples > 0 && windowLatencyRatios / windowSamples > latencyTolerance) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (windowSaturated) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            windowStartNanos = now;
+            windowLatencyRatios = 0;
+            windowSamples = 0;
+            windowSaturated = false;
+            baselines.values().removeIf(classBaseline -> !classBaseline.roll());
+        }
+
+        // Time for the queue ahead of a new request to drain at the current limit and latency
+        private Duration retryAfter() {
+            if (averageLatencyNanos == 0) {
+                return null;
+            }
+            return Duration.ofNanos((long) ((queued + 1) * averageLatencyNanos / Math.max(1, (int) limit)));
+        }
+    }
+
+    private final Map<Lane, Bulkhead> bulkheads = new EnumMap<>(Lane.class);
+    private final boolean adaptive;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final long latencyWindowNanos;
+    private final int baselineWindows;
+
+    public HsmConcurrencyLimiter(Environment environment,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${hsm.concurrency.acquire-timeout:PT2S}") Duration acquireTimeout,
+                                 @Value("${hsm.concurrency.adaptive:true}") boolean adaptive,
+                                 @Value("${hsm.concurrency.latency-tolerance:2.0}") double latencyTolerance,
+                                 @Value("${hsm.concurrency.backoff-ratio:0.9}") double backoffRatio,
+                                 @Value("${hsm.concurrency.latency-window:PT1S}") Duration latencyWindow,
+                                 @Value("${hsm.concurrency.baseline-windows:60}") int baselineWindows) {
+        this.adaptive = adaptive;
+        this.latencyTolerance = Math.max(1, latencyTolerance);
+        this.backoffRatio = Math.min(1, Math.max(0.1, backoffRatio));
+        this.latencyWindowNanos = latencyWindow.toNanos();
+        this.baselineWindows = Math.max(1, baselineWindows);
+        for (Lane lane : Lane.values()) {
+            bulkheads.put(lane, new Bulkhead(lane, environment, acquireTimeout, meterRegistry));
+        }
+    }
+
+    public <T, E extends Exception> T run(Lane lane, Call<T, E> call) throws E {
+        return run(lane, DEFAULT_WORK_CLASS, call);
+    }
+
+    /**
+     * Like {@link #run(Lane, Call)}, with the latency of the call judged against earlier calls of the
+     * same {@code workClass} only, e.g. {@code AES/4} for AES on 8-16 KiB.
+     */
+    public <T, E extends Exception> T run(Lane lane, String workClass, Call<T, E> call) throws E {
+        return execute(lane, workClass, false, call);
+    }
+
+    /**
+     * Like {@link #run(Lane, String, Call)}, for work that was already admitted elsewhere (background
+     * jobs, bounded by their own executor): waits for a permit as long as it takes instead of being
+     * rejected by a full queue or the acquire timeout.
+     */
+    public <T, E extends Exception> T runWhenPermitted(Lane lane, String workClass, Call<T, E> call) throws E {
+        return execute(lane, workClass, true, call);
+    }
+
+    /**
+     * Like {@link #run}, for batches and streams: their latency grows with the input, so it is not
+     * taken as a sign of HSM congestion.
+     */
+    public <T, E extends Exception> T runBulk(Lane lane, Call<T, E> call) throws E {
+        return execute(lane, null, false, call);
+    }
+
+    // A null work class leaves the latency of the call out of the adaptive limit
+    private <T, E extends Exception> T execute(Lane lane, String workClass, boolean patient, Call<T, E> call) throws E {
+        Bulkhead bulkhead = bulkheads.get(lane);
+        bulkhead.acquire(patient);
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            bulkhead.release(System.nanoTime() - start, workClass);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.config.Pkcs11Config;
+import com.hsm.simulator.exception.CryptoException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.security.AuthProvider;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.cert.Certificate;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU/TTL cache of key handles resolved by alias from the PKCS#11 keystore.
+ * <p>
+ * The keystore itself is loaded once per provider and shared, so resolving an alias no longer
+ * re-enumerates every token object. Call {@link #invalidate(String)} or {@link #invalidateAll()}
+ * whenever objects are created on the token.
+ */
+@Component
+@Profile("!softtoken")
+public class KeyAliasCache {
+
+    private enum EntryKind { PRIVATE_KEY, CERTIFICATE }
+
+    // The provider compares by identity: Provider inherits the synchronized, O(entries)
+    // Properties.hashCode/equals, and pool members may share a name
+    private record CacheKey(Provider provider, String alias, EntryKind kind) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CacheKey that && provider == that.provider && kind == that.kind && alias.equals(that.alias);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(provider) + alias.hashCode()) + kind.hashCode();
+        }
+    }
+
+    private record CacheEntry(Object value, long loadedAtNanos) {
+    }
+
+    private final char[] hsmPin;
+    private final CryptoEnginePool enginePool;
+    private final int maxEntries;
+    private final long ttlNanos;
+    // By provider identity, guarded by itself
+    private final Map<Provider, KeyStore> keyStores = new IdentityHashMap<>();
+    private final LinkedHashMap<CacheKey, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Bumped by every invalidation, guarded by this; a load that saw an older value is not cached
+    private long generation;
+    private final Timer keyStoreLoadTimer;
+    private final Timer entryLoadTimer;
+
+    public KeyAliasCache(Pkcs11Config pkcs11Config,
+                         CryptoEnginePool enginePool,
+                         MeterRegistry meterRegistry,
+                         @Value("${keystore.cache.max-entries:1024}") int maxEntries,
+                         @Value("${keystore.cache.ttl:PT10M}") Duration ttl) {
+        this.hsmPin = pkcs11Config.getHsmPin().toCharArray();
+        this.enginePool = enginePool;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.keyStoreLoadTimer = Timer.builder("hsm.keystore.load")
+                .description("Time to load and enumerate the PKCS#11 keystore")
+                .register(meterRegistry);
+        this.entryLoadTimer = Timer.builder("hsm.keystore.cache.load")
+                .description("Time to resolve an alias that missed the cache")
+                .register(meterRegistry);
+        Gauge.builder("hsm.keystore.cache.size", this, KeyAliasCache::size)
+                .register(meterRegistry);
+        Gauge.builder("hsm.keystore.cache.hit.ratio", this, KeyAliasCache::hitRatio)
+                .register(meterRegistry);
+        FunctionCounter.builder("hsm.keystore.cache.hits", hits, LongAdder::doubleValue)
+                .register(meterRegistry);
+        FunctionCounter.builder("hsm.keystore.cache.misses", misses, LongAdder::doubleValue)
+                .register(meterRegistry);
+    }
+
+    public PrivateKey getPrivateKey(String alias, AuthProvider hsmProvider) {
+        return (PrivateKey) get(new CacheKey(hsmProvider, alias, EntryKind.PRIVATE_KEY));
+    }
+
+    public Certificate getCertificate(String alias, AuthProvider hsmProvider) {
+        return (Certificate) get(new CacheKey(hsmProvider, alias, EntryKind.CERTIFICATE));
+    }
+
+    /**
+     * Returns the shared, already loaded keystore of {@code hsmProvider}. Callers that modify it
+     * must synchronize on the returned instance and invalidate the affected aliases.
+     */
+    public KeyStore getKeyStore(AuthProvider hsmProvider) {
+        synchronized (keyStores) {
+            KeyStore keyStore = keyStores.get(hsmProvider);
+            if (keyStore == null) {
+                keyStore = keyStoreLoadTimer.record(() -> {
+                    try {
+                        KeyStore loaded = KeyStore.getInstance(CryptoConstants.PKCS11_PROVIDER, hsmProvider);
+                        loaded.load(null, hsmPin);
+                        return loaded;
+                    } catch (Exception e) {
+                        throw new CryptoException("Failed to load PKCS#11 keystore", e);
+                    }
+                });
+                keyStores.put(hsmProvider, keyStore);
+            }
+            return keyStore;
+        }
+    }
+
+    /**
+     * Whether the keystore of {@code hsmProvider} holds {@code alias}, e.g. to tell which provider pool
+     * members can use a key.
+     */
+    public boolean containsAlias(String alias, AuthProvider hsmProvider) {
+        KeyStore keyStore = getKeyStore(hsmProvider);
+        try {
+            synchronized (keyStore) {
+                return keyStore.containsAlias(alias);
+            }
+        } catch (KeyStoreException e) {
+            return false;
+        }
+    }
+
+    public synchronized void invalidate(String alias) {
+        generation++;
+        Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<CacheKey, CacheEntry> entry = iterator.next();
+            if (entry.getKey().alias().equals(alias)) {
+                release(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached handle and forces the keystores to be reloaded, e.g. after objects were
+     * created on the token outside of the keystore (pkcs11-tool).
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.values().forEach(this::release);
+        entries.clear();
+        synchronized (keyStores) {
+            keyStores.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private Object get(CacheKey cacheKey) {
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+            CacheEntry entry = entries.get(cacheKey);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAtNanos() < ttlNanos) {
+                    hits.increment();
+                    return entry.value();
+                }
+                entries.remove(cacheKey);
+                release(entry);
+            }
+        }
+        misses.increment();
+
+        // Resolve outside the lock; a concurrent miss for the same alias only costs a duplicate lookup
+        Object value = entryLoadTimer.record(() -> load(cacheKey));
+        synchronized (this) {
+            // Invalidated while loading: the handle may be stale, so serve it to this caller only
+            if (generation != loadGeneration) {
+                return value;
+            }
+            // A concurrent miss may have cached its own handle meanwhile; release that one's engines
+            CacheEntry displaced = entries.put(cacheKey, new CacheEntry(value, System.nanoTime()));
+            if (displaced != null && displaced.value() != value) {
+                release(displaced);
+            }
+            if (entries.size() > maxEntries) {
+                Iterator<CacheEntry> eldest = entries.values().iterator();
+                release(eldest.next());
+                eldest.remove();
+            }
+        }
+        return value;
+    }
+
+    private Object load(CacheKey cacheKey) {
+        KeyStore keyStore = getKeyStore((AuthProvider) cacheKey.provider());
+        try {
+            if (cacheKey.kind() == EntryKind.PRIVATE_KEY) {
+                Key key = keyStore.getKey(cacheKey.alias(), hsmPin);
+                if (!(key instanceof PrivateKey)) {
+                    throw new CryptoException("No private key found for alias: " + cacheKey.alias());
+                }
+                return key;
+            }
+            Certificate certificate = keyStore.getCertificate(cacheKey.alias());
+            if (certificate == null) {
+                throw new CryptoException("No certificate found for alias: " + cacheKey.alias());
+            }
+            return certificate;
+        } catch (CryptoException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CryptoException("Failed to resolve alias " + cacheKey.alias() + " : " + e.getMessage(), e);
+        }
+    }
+
+    private void release(CacheEntry entry) {
+        if (entry.value() instanceof Key key) {
+            enginePool.evict(key);
+        } else if (entry.value() instanceof Certificate certificate) {
+            enginePool.evict(certificate.getPublicKey());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.config.Pkcs11Config;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.security.AuthProvider;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps key pairs generated ahead of time, each with its self-signed certificate, so that
+ * {@code generateKeyPair} only has to store a pooled pair under the requested alias.
+ * <p>
+ * Pooled pairs are PKCS#11 session objects; storing one in the keystore makes it a token object.
+ * {@code keypool.specs} lists what to keep, e.g. {@code RSA_2048,RSA_4096,EC_secp256r1}, with
+ * {@code keypool.target-size} pairs each. A spec is refilled in the background once it falls to
+ * {@code keypool.low-water-mark}. Requests for other specs, or for an empty pool, generate inline;
+ * those are counted as misses.
+ */
+@Component
+@Profile("!softtoken")
+public class KeyPairPool {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    public static final class PooledKeyPair {
+        private final KeyPair keyPair;
+        private final X509Certificate certificate;
+        private final String specKey;
+
+        private PooledKeyPair(KeyPair keyPair, X509Certificate certificate, String specKey) {
+            this.keyPair = keyPair;
+            this.certificate = certificate;
+            this.specKey = specKey;
+        }
+
+        public KeyPair getKeyPair() {
+            return keyPair;
+        }
+
+        public X509Certificate getCertificate() {
+            return certificate;
+        }
+    }
+
+    private final class Spec {
+        private final String name;
+        private final String algorithm;
+        private final int keySize;
+        private final String ecCurve;
+        private final BlockingQueue<PooledKeyPair> ready;
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        private final Counter hits;
+        private final Counter misses;
+        private final Timer generation;
+
+        private Spec(String name, MeterRegistry meterRegistry) {
+            int separator = name.indexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid key pool spec '" + name + "', expected e.g. RSA_2048 or EC_secp256r1");
+            }
+            this.name = name;
+            this.algorithm = name.substring(0, separator).toUpperCase(Locale.ROOT);
+            String parameter = name.substring(separator + 1);
+            this.keySize = "EC".equals(algorithm) ? 0 : Integer.parseInt(parameter);
+            this.ecCurve = "EC".equals(algorithm) ? parameter : null;
+            this.ready = new ArrayBlockingQueue<>(targetSize);
+            this.hits = Counter.builder("hsm.keypool.requests")
+                    .description("Key pair requests served from the pool (hit) or generated inline (miss)")
+                    .tag("spec", name).tag("result", "hit")
+                    .register(meterRegistry);
+            this.misses = Counter.builder("hsm.keypool.requests")
+                    .description("Key pair requests served from the pool (hit) or generated inline (miss)")
+                    .tag("spec", name).tag("result", "miss")
+                    .register(meterRegistry);
+            this.generation = Timer.builder("hsm.keypool.generation")
+                    .description("Time to generate and certify one pooled key pair")
+                    .tag("spec", name)
+                    .register(meterRegistry);
+            Gauge.builder("hsm.keypool.available", ready, BlockingQueue::size)
+                    .description("Key pairs ready in the pool")
+                    .tag("spec", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    private final boolean enabled;
+    private final int targetSize;
+    private final int lowWaterMark;
+    private final AuthProvider hsmProvider;
+    private final CryptoUtils cryptoUtils;
+    private final Map<String, Spec> specs;
+    private final ExecutorService refiller;
+
+    public KeyPairPool(Pkcs11Config pkcs11Config,
+                       CryptoUtils cryptoUtils,
+                       MeterRegistry meterRegistry,
+                       @Value("${keypool.enabled:false}") boolean enabled,
+                       @Value("${keypool.specs:RSA_2048,RSA_4096,EC_secp256r1}") List<String> specNames,
+                       @Value("${keypool.target-size:4}") int targetSize,
+                       @Value("${keypool.low-water-mark:2}") int lowWaterMark) {
+        this.enabled = enabled;
+        this.targetSize = Math.max(1, targetSize);
+        this.lowWaterMark = Math.min(Math.max(0, lowWaterMark), this.targetSize - 1);
+        this.hsmProvider = pkcs11Config.getPkcs11Provider();
+        this.cryptoUtils = cryptoUtils;
+
+        Map<String, Spec> configured = new LinkedHashMap<>();
+        if (enabled) {
+            for (String specName : specNames) {
+                if (!specName.isBlank()) {
+                    Spec spec = new Spec(specName.trim(), meterRegistry);
+                    configured.put(key(spec.algorithm, spec.keySize, spec.ecCurve), spec);
+                }
+            }
+        }
+        this.specs = Collections.unmodifiableMap(configured);
+        // One thread: refilling competes with live requests for the token, so it is kept gentle
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hsm-keypool-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fills every spec in the background once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void fill() {
+        specs.values().forEach(this::scheduleRefill);
+    }
+
+    /**
+     * A pooled pair for the given parameters, or empty if the pool is disabled, does not keep this
+     * spec or has run dry.
+     */
+    public Optional<PooledKeyPair> take(String algorithm, int keySize, String ecCurve) {
+        if (!enabled || algorithm == null) {
+            return Optional.empty();
+        }
+        String upper = algorithm.toUpperCase(Locale.ROOT);
+        Spec spec = specs.get(key(upper, "EC".equals(upper) ? 0 : keySize, "EC".equals(upper) ? ecCurve : null));
+        if (spec == null) {
+            return Optional.empty();
+        }
+        PooledKeyPair pooled = spec.ready.poll();
+        (pooled != null ? spec.hits : spec.misses).increment();
+        if (spec.ready.size() <= lowWaterMark) {
+            scheduleRefill(spec);
+        }
+        return Optional.ofNullable(pooled);
+    }
+
+    /**
+     * Returns a pair taken with {@link #take} that could not be stored, e.g. because its alias turned
+     * out to exist, so it is not wasted. Dropped if the pool has been refilled to its target meanwhile.
+     */
+    public void giveBack(PooledKeyPair pooled) {
+        Spec spec = specs.get(pooled.specKey);
+        if (spec != null) {
+            spec.ready.offer(pooled);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private void scheduleRefill(Spec spec) {
+        if (spec.refilling.compareAndSet(false, true)) {
+            refiller.execute(() -> refill(spec));
+        }
+    }
+
+    private void refill(Spec spec) {
+        int generated = 0;
+        try {
+            while (spec.ready.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                PooledKeyPair pooled = spec.generation.recordCallable(() -> {
+                    KeyPair keyPair = cryptoUtils.generateKeyPair(spec.algorithm, spec.keySize, spec.ecCurve, hsmProvider);
+                    return new PooledKeyPair(keyPair, cryptoUtils.generateSelfSignedCertificate(keyPair, spec.algorithm),
+                            key(spec.algorithm, spec.keySize, spec.ecCurve));
+                });
+                if (!spec.ready.offer(pooled)) {
+                    break;
+                }
+                generated++;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refill key pool {} : {}", spec.name, e.getMessage());
+        } finally {
+            spec.refilling.set(false);
+        }
+        log.debug("Key pool {} refilled with {} pairs", spec.name, generated);
+    }
+
+    private static String key(String algorithm, int keySize, String ecCurve) {
+        return algorithm + "/" + keySize + "/" + ecCurve;
+    }
+}
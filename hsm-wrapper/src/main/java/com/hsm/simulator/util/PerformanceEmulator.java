@@ -0,0 +1,357 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.exception.HsmBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes the simulator behave like an HSM with a given performance rating, so load tests against it
+ * are not more optimistic than the real device.
+ * <p>
+ * {@code hsm.emulation.profile} names a profile defined under {@code hsm.emulation.profiles.<name>.*};
+ * empty (default) turns emulation off. A profile has:
+ * <ul>
+ *   <li>{@code rates}: ops/sec caps as {@code rule=tps} pairs, enforced with token buckets that allow
+ *   bursts of {@code burst} (default {@code PT0.1S}) worth of operations;</li>
+ *   <li>{@code latency}: service time added to each call as {@code rule=distribution}, where the
+ *   distribution is {@code fixed:ms}, {@code uniform:min:max}, {@code normal:mean:stddev},
+ *   {@code lognormal:median:sigma} or {@code exponential:mean} (milliseconds);</li>
+ *   <li>{@code sessions}: operations that may be inside the emulated HSM at once (0 = unlimited);</li>
+ *   <li>{@code queue-timeout}: longest wait for a session or rate token (default {@code PT5S}) before
+ *   the call is rejected with {@link HsmBusyException}.</li>
+ * </ul>
+ * A rule is {@code operation[/algorithm[/keySize or curve]]} or {@code *}; operations are the
+ * {@code hsm.crypto.operation} names, and {@code encrypt} also covers {@code encrypt.raw} and
+ * {@code encrypt.batch}. The most specific matching rule applies, and all calls matching one rule share
+ * its bucket.
+ */
+@Component
+public class PerformanceEmulator {
+
+    private static final Logger log = LoggerFactory.getLogger(PerformanceEmulator.class);
+
+    private static final String PROFILES_PREFIX = "hsm.emulation.profiles.";
+    private static final String DEFAULT_RULE = "*";
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    // Token bucket as a virtual schedule (GCRA): each permit moves the next free slot one interval
+    // further; a caller may run once that slot is no more than the burst tolerance ahead of now
+    private static final class TokenBucket {
+        private final double rate;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+
+        private TokenBucket(double rate, Duration burst) {
+            this.rate = rate;
+            this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / rate));
+            this.toleranceNanos = Math.max(0, burst.toNanos());
+        }
+
+        // Reserves the permits and returns how long to wait for them, or -1 if that exceeds maxWaitNanos
+        private long reserve(int permits, long maxWaitNanos) {
+            while (true) {
+                long now = System.nanoTime();
+                long next = nextFreeNanos.get();
+                long wait = Math.max(0, next - toleranceNanos - now);
+                if (wait > maxWaitNanos) {
+                    return -1;
+                }
+                if (nextFreeNanos.compareAndSet(next, Math.max(next, now) + intervalNanos * permits)) {
+                    return wait;
+                }
+            }
+        }
+    }
+
+    private record Latency(String kind, double a, double b) {
+
+        private static Latency parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            String kind = parts[0].toLowerCase(Locale.ROOT);
+            int expected = switch (kind) {
+                case "fixed", "exponential" -> 2;
+                case "uniform", "normal", "lognormal" -> 3;
+                default -> throw new IllegalArgumentException("Unknown latency distribution '" + parts[0] + "'");
+            };
+            if (parts.length != expected) {
+                throw new IllegalArgumentException("Latency '" + spec + "' needs " + (expected - 1) + " value(s)");
+            }
+            return new Latency(kind, Double.parseDouble(parts[1]), expected == 3 ? Double.parseDouble(parts[2]) : 0);
+        }
+
+        private long sampleNanos() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double millis = switch (kind) {
+                case "fixed" -> a;
+                case "uniform" -> a + random.nextDouble() * (b - a);
+                case "normal" -> a + random.nextGaussian() * b;
+                case "lognormal" -> a * Math.exp(random.nextGaussian() * b);
+                default -> -a * Math.log(1 - random.nextDouble());
+            };
+            return Math.max(0, Math.round(millis * 1_000_000));
+        }
+    }
+
+    private record Rule(String name, TokenBucket bucket, Latency latency, Timer rateWait, Timer latencyTimer,
+                        Counter rateRejections) {
+    }
+
+    private final String profile;
+    private final Map<String, TokenBucket> buckets = new LinkedHashMap<>();
+    private final Map<String, Latency> latencies = new LinkedHashMap<>();
+    private final Map<String, Rule> resolved = new ConcurrentHashMap<>();
+    // Algorithms and key sizes/curves some rule names; others cannot match a rule and are not told apart
+    private final Set<String> ruleAlgorithms = new HashSet<>();
+    private final Set<String> ruleKeyParameters = new HashSet<>();
+    private final Semaphore sessions;
+    private final long queueTimeoutNanos;
+    private final MeterRegistry meterRegistry;
+    private final Timer sessionWait;
+    private final Counter sessionRejections;
+
+    public PerformanceEmulator(Environment environment,
+                               MeterRegistry meterRegistry,
+                               @Value("${hsm.emulation.profile:}") String profile) {
+        this.profile = profile.trim();
+        this.meterRegistry = meterRegistry;
+        String prefix = PROFILES_PREFIX + this.profile + ".";
+        if (!this.profile.isEmpty()
+                && environment.getProperty(prefix + "rates") == null
+                && environment.getProperty(prefix + "latency") == null
+                && environment.getProperty(prefix + "sessions") == null) {
+            throw new IllegalStateException("Unknown hsm.emulation.profile '" + this.profile + "', nothing is defined under " + prefix + "*");
+        }
+        Duration burst = Duration.parse(environment.getProperty(prefix + "burst", "PT0.1S"));
+        for (Map.Entry<String, String> rate : parseRules(environment.getProperty(prefix + "rates", "")).entrySet()) {
+            double tps = Double.parseDouble(rate.getValue());
+            if (tps <= 0) {
+                throw new IllegalArgumentException("Rate for '" + rate.getKey() + "' must be positive");
+            }
+            buckets.put(rate.getKey(), new TokenBucket(tps, burst));
+            Gauge.builder("hsm.emulation.rate.limit", () -> tps)
+                    .description("Emulated ops/sec cap")
+                    .tag("rule", rate.getKey())
+                    .register(meterRegistry);
+        }
+        for (Map.Entry<String, String> latency : parseRules(environment.getProperty(prefix + "latency", "")).entrySet()) {
+            latencies.put(latency.getKey(), Latency.parse(latency.getValue()));
+        }
+        for (String rule : union(buckets.keySet(), latencies.keySet())) {
+            String[] parts = rule.split("/");
+            if (parts.length > 1) {
+                ruleAlgorithms.add(parts[1]);
+            }
+            if (parts.length > 2) {
+                ruleKeyParameters.add(parts[2]);
+            }
+        }
+        int sessionCount = Integer.parseInt(environment.getProperty(prefix + "sessions", "0"));
+        this.sessions = sessionCount > 0 ? new Semaphore(sessionCount, true) : null;
+        this.queueTimeoutNanos = Duration.parse(environment.getProperty(prefix + "queue-timeout", "PT5S")).toNanos();
+
+        this.sessionWait = Timer.builder("hsm.emulation.wait")
+                .description("Time queued for an emulated session or rate token")
+                .tag("rule", "session").tag("limit", "session")
+                .register(meterRegistry);
+        this.sessionRejections = Counter.builder("hsm.emulation.rejected")
+                .description("Calls rejected because the emulated limit could not be met within the queue timeout")
+                .tag("rule", "session").tag("limit", "session")
+                .register(meterRegistry);
+        if (sessions != null) {
+            Gauge.builder("hsm.emulation.sessions.active", sessions, s -> sessionCount - s.availablePermits())
+                    .description("Emulated HSM sessions in use")
+                    .register(meterRegistry);
+            Gauge.builder("hsm.emulation.sessions.waiting", sessions, Semaphore::getQueueLength)
+                    .description("Calls queued for an emulated HSM session")
+                    .register(meterRegistry);
+        }
+        if (isEnabled()) {
+            log.info("HSM performance emulation profile '{}': rates {}, latency {}, sessions {}",
+                    this.profile, buckets.keySet(), latencies.keySet(), sessionCount > 0 ? sessionCount : "unlimited");
+        }
+    }
+
+    public boolean isEnabled() {
+        return !profile.isEmpty();
+    }
+
+    /**
+     * Runs {@code call} as one operation of the emulated HSM. {@code keyParameter} is the key size or
+     * curve where known, otherwise null; {@code permits} is the number of items (1 unless batched).
+     */
+    public <T, E extends Exception> T run(String operation, String algorithm, String keyParameter, int permits,
+                                          Call<T, E> call) throws E {
+        // Algorithm and key parameter come from clients: only values a rule names become part of the
+        // cache key, so the cache stays bounded by the profile
+        String ruleAlgorithm = named(algorithm, ruleAlgorithms);
+        String ruleKeyParameter = ruleAlgorithm == null ? null : named(keyParameter, ruleKeyParameters);
+        Rule rule = resolved.computeIfAbsent(operation + "/" + ruleAlgorithm + "/" + ruleKeyParameter,
+                key -> resolve(operation, ruleAlgorithm, ruleKeyParameter));
+        // Rate tokens are waited for outside a session, like requests queued in front of the device
+        if (rule.bucket() != null) {
+            long wait = rule.bucket().reserve(Math.max(1, permits), queueTimeoutNanos);
+            rule.rateWait().record(Math.max(0, wait), TimeUnit.NANOSECONDS);
+            if (wait < 0) {
+                rule.rateRejections().increment();
+                throw new HsmBusyException("Emulated HSM rate of " + rule.bucket().rate + " ops/sec for " + rule.name()
+                        + " exceeded for longer than " + Duration.ofNanos(queueTimeoutNanos));
+            }
+            sleep(wait);
+        }
+        acquireSession();
+        try {
+            if (rule.latency() != null) {
+                long latency = rule.latency().sampleNanos();
+                rule.latencyTimer().record(latency, TimeUnit.NANOSECONDS);
+                sleep(latency);
+            }
+            return call.call();
+        } finally {
+            if (sessions != null) {
+                sessions.release();
+            }
+        }
+    }
+
+    private void acquireSession() {
+        if (sessions == null) {
+            return;
+        }
+        long waitStart = System.nanoTime();
+        try {
+            if (!sessions.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                sessionRejections.increment();
+                throw new HsmBusyException("No emulated HSM session available within " + Duration.ofNanos(queueTimeoutNanos));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HsmBusyException("Interrupted while waiting for an emulated HSM session");
+        } finally {
+            sessionWait.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Rule resolve(String operation, String algorithm, String keyParameter) {
+        List<String> candidates = candidates(operation, algorithm, keyParameter);
+        String rateRule = first(candidates, buckets);
+        String latencyRule = first(candidates, latencies);
+        String name = rateRule != null ? rateRule : latencyRule != null ? latencyRule : DEFAULT_RULE;
+        return new Rule(name,
+                rateRule == null ? null : buckets.get(rateRule),
+                latencyRule == null ? null : latencies.get(latencyRule),
+                Timer.builder("hsm.emulation.wait")
+                        .description("Time queued for an emulated session or rate token")
+                        .tag("rule", name).tag("limit", "rate")
+                        .register(meterRegistry),
+                Timer.builder("hsm.emulation.latency")
+                        .description("Service time added by the emulation profile")
+                        .tag("rule", latencyRule == null ? DEFAULT_RULE : latencyRule)
+                        .register(meterRegistry),
+                Counter.builder("hsm.emulation.rejected")
+                        .description("Calls rejected because the emulated limit could not be met within the queue timeout")
+                        .tag("rule", name).tag("limit", "rate")
+                        .register(meterRegistry));
+    }
+
+    // Most specific first: sign.raw/RSA/2048, sign.raw/RSA, sign.raw, sign/RSA/2048, sign/RSA, sign, *
+    private static List<String> candidates(String operation, String algorithm, String keyParameter) {
+        List<String> candidates = new ArrayList<>();
+        String alg = algorithm == null ? null : algorithm.toUpperCase(Locale.ROOT);
+        String op = operation;
+        while (op != null) {
+            if (alg != null && keyParameter != null) {
+                candidates.add(op + "/" + alg + "/" + keyParameter.toUpperCase(Locale.ROOT));
+            }
+            if (alg != null) {
+                candidates.add(op + "/" + alg);
+            }
+            candidates.add(op);
+            int dot = op.lastIndexOf('.');
+            op = dot > 0 ? op.substring(0, dot) : null;
+        }
+        candidates.add(DEFAULT_RULE);
+        return candidates;
+    }
+
+    private static String named(String value, Set<String> named) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.toUpperCase(Locale.ROOT);
+        return named.contains(normalized) ? normalized : null;
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        Set<String> union = new HashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+
+    private static String first(List<String> candidates, Map<String, ?> rules) {
+        for (String candidate : candidates) {
+            if (rules.containsKey(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // "sign/RSA/2048=1000, encrypt/AES=5000" -> ordered map with normalized rule names
+    private static Map<String, String> parseRules(String spec) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid emulation rule '" + entry.trim() + "', expected rule=value");
+            }
+            String[] parts = entry.substring(0, separator).trim().split("/");
+            StringBuilder rule = new StringBuilder(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                rule.append('/').append(parts[i].toUpperCase(Locale.ROOT));
+            }
+            rules.put(rule.toString(), entry.substring(separator + 1).trim());
+        }
+        return rules;
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HsmBusyException("Interrupted while emulating HSM latency");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Token management operations (key generation, object and slot listing) that are not covered by the
+ * JCA API of the SunPKCS11 provider. Implemented by forking pkcs11-tool ({@link Pkcs11ToolHandler})
+ * or in-process against the PKCS#11 module ({@link Pkcs11NativeEngine}).
+ */
+public interface Pkcs11Engine {
+    List<String> generateKeyPair(String slot, String pin, AsymmetricKeyType asymmetricKeyType, String id, String label) throws IOException, InterruptedException;
+    List<String> generateKeys(String slot, String pin, SymmetricKeyType symmetricKeyType, String id, String label) throws IOException, InterruptedException;
+    List<String> getListOfKeys(String slot, String hsmPin, String type) throws IOException, InterruptedException;
+    List<Pkcs11ObjectInfo> getObjectsListInSlot(int slotId, String hsmPin) throws IOException, InterruptedException;
+    List<Pkcs11SlotInfo> getListOfSlots(String slot, String hsmPin) throws IOException, InterruptedException;
+}
@@ -0,0 +1,492 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.config.Pkcs11Config;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x9.ECNamedCurveTable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
+import sun.security.pkcs11.wrapper.CK_MECHANISM;
+import sun.security.pkcs11.wrapper.CK_SLOT_INFO;
+import sun.security.pkcs11.wrapper.CK_TOKEN_INFO;
+import sun.security.pkcs11.wrapper.CK_VERSION;
+import sun.security.pkcs11.wrapper.PKCS11;
+import sun.security.pkcs11.wrapper.PKCS11Exception;
+
+import javax.crypto.spec.DHParameterSpec;
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.security.AlgorithmParameterGenerator;
+import java.security.GeneralSecurityException;
+import java.security.spec.DSAParameterSpec;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import static sun.security.pkcs11.wrapper.PKCS11Constants.*;
+
+/**
+ * In-process implementation of the pkcs11-tool operations, calling the PKCS#11 module through the
+ * JDK's SunPKCS11 wrapper instead of forking a process per request.
+ * <p>
+ * The module instance is shared with the SunPKCS11 provider. Sessions are pooled per slot and never
+ * closed: closing the last session of an application logs the user out, which would also log out
+ * the provider. Requires {@code --add-exports jdk.crypto.cryptoki/sun.security.pkcs11.wrapper=ALL-UNNAMED},
+ * which the executable jar declares in its manifest.
+ */
+@Component
+@Profile("!softtoken")
+public class Pkcs11NativeEngine implements Pkcs11Engine {
+
+    private static final long CKR_USER_ALREADY_LOGGED_IN = 0x100L;
+    private static final int FIND_BATCH_SIZE = 256;
+    private static final byte[] RSA_PUBLIC_EXPONENT = {0x01, 0x00, 0x01};
+
+    private final String pkcs11ModulePath;
+    private final Map<Long, Deque<Long>> idleSessions = new ConcurrentHashMap<>();
+    private final Counter pooledCheckouts;
+    private final Counter openedCheckouts;
+    private volatile PKCS11 pkcs11;
+
+    public Pkcs11NativeEngine(Pkcs11Config pkcs11Config, MeterRegistry meterRegistry) {
+        this.pkcs11ModulePath = pkcs11Config.getPkcs11ModulePath();
+        this.pooledCheckouts = sessionCheckouts(meterRegistry, "pooled");
+        this.openedCheckouts = sessionCheckouts(meterRegistry, "opened");
+    }
+
+    private static Counter sessionCheckouts(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("hsm.pkcs11.native.session.checkouts")
+                .description("Sessions taken by the in-process engine, reused from its pool or newly opened")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the module on first use. Returns false when the wrapper is not accessible (missing
+     * --add-exports) or the module cannot be loaded, so callers can fall back to pkcs11-tool.
+     */
+    public boolean isAvailable() {
+        try {
+            module();
+            return true;
+        } catch (IOException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public List<String> generateKeyPair(String slot, String pin, AsymmetricKeyType asymmetricKeyType, String id, String label) throws IOException {
+        String[] keySpec = asymmetricKeyType.getKeySpec().split(":");
+        String keyAlgorithm = keySpec[0].toUpperCase();
+        String keyParameter = keySpec[1];
+
+        List<CK_ATTRIBUTE> publicTemplate = new ArrayList<>(List.of(
+                new CK_ATTRIBUTE(CKA_CLASS, CKO_PUBLIC_KEY),
+                new CK_ATTRIBUTE(CKA_TOKEN, true),
+                new CK_ATTRIBUTE(CKA_VERIFY, true),
+                new CK_ATTRIBUTE(CKA_LABEL, label.toCharArray()),
+                new CK_ATTRIBUTE(CKA_ID, HexFormat.of().parseHex(id))));
+        List<CK_ATTRIBUTE> privateTemplate = new ArrayList<>(List.of(
+                new CK_ATTRIBUTE(CKA_CLASS, CKO_PRIVATE_KEY),
+                new CK_ATTRIBUTE(CKA_TOKEN, true),
+                new CK_ATTRIBUTE(CKA_PRIVATE, true),
+                new CK_ATTRIBUTE(CKA_SENSITIVE, true),
+                new CK_ATTRIBUTE(CKA_SIGN, true),
+                new CK_ATTRIBUTE(CKA_LABEL, label.toCharArray()),
+                new CK_ATTRIBUTE(CKA_ID, HexFormat.of().parseHex(id))));
+
+        long mechanism;
+        try {
+            switch (keyAlgorithm) {
+                case "RSA" -> {
+                    mechanism = CKM_RSA_PKCS_KEY_PAIR_GEN;
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_MODULUS_BITS, Long.parseLong(keyParameter)));
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_PUBLIC_EXPONENT, RSA_PUBLIC_EXPONENT));
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_ENCRYPT, true));
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_WRAP, true));
+                    privateTemplate.add(new CK_ATTRIBUTE(CKA_DECRYPT, true));
+                    privateTemplate.add(new CK_ATTRIBUTE(CKA_UNWRAP, true));
+                }
+                case "EC" -> {
+                    mechanism = CKM_EC_KEY_PAIR_GEN;
+                    ASN1ObjectIdentifier curveOid = ECNamedCurveTable.getOID(keyParameter);
+                    if (curveOid == null) {
+                        throw new IOException("Unknown EC curve: " + keyParameter);
+                    }
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_EC_PARAMS, curveOid.getEncoded()));
+                    privateTemplate.add(new CK_ATTRIBUTE(CKA_DERIVE, true));
+                }
+                case "DSA" -> {
+                    mechanism = CKM_DSA_KEY_PAIR_GEN;
+                    AlgorithmParameterGenerator generator = AlgorithmParameterGenerator.getInstance("DSA");
+                    generator.init(Integer.parseInt(keyParameter));
+                    DSAParameterSpec dsaParams = generator.generateParameters().getParameterSpec(DSAParameterSpec.class);
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_PRIME, dsaParams.getP()));
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_SUBPRIME, dsaParams.getQ()));
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_BASE, dsaParams.getG()));
+                }
+                case "DH" -> {
+                    mechanism = CKM_DH_PKCS_KEY_PAIR_GEN;
+                    AlgorithmParameterGenerator generator = AlgorithmParameterGenerator.getInstance("DH");
+                    generator.init(Integer.parseInt(keyParameter));
+                    DHParameterSpec dhParams = generator.generateParameters().getParameterSpec(DHParameterSpec.class);
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_PRIME, dhParams.getP()));
+                    publicTemplate.add(new CK_ATTRIBUTE(CKA_BASE, dhParams.getG()));
+                    privateTemplate.add(new CK_ATTRIBUTE(CKA_DERIVE, true));
+                }
+                default -> throw new IOException("Unsupported key type: " + asymmetricKeyType);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to generate domain parameters for " + asymmetricKeyType + " : " + e.getMessage(), e);
+        }
+
+        long slotId = parseSlot(slot);
+        return withSession(slotId, pin, session -> {
+            long[] handles = module().C_GenerateKeyPair(session, new CK_MECHANISM(mechanism),
+                    publicTemplate.toArray(new CK_ATTRIBUTE[0]), privateTemplate.toArray(new CK_ATTRIBUTE[0]));
+            List<String> output = new ArrayList<>();
+            output.add("Key pair generated:");
+            output.addAll(describeObject(session, handles[1]));
+            output.addAll(describeObject(session, handles[0]));
+            return output;
+        });
+    }
+
+    public List<String> generateKeys(String slot, String pin, SymmetricKeyType symmetricKeyType, String id, String label) throws IOException {
+        String[] keySpec = symmetricKeyType.getKeySpec().split(":");
+        List<CK_ATTRIBUTE> template = new ArrayList<>(List.of(
+                new CK_ATTRIBUTE(CKA_CLASS, CKO_SECRET_KEY),
+                new CK_ATTRIBUTE(CKA_TOKEN, true),
+                new CK_ATTRIBUTE(CKA_PRIVATE, true),
+                new CK_ATTRIBUTE(CKA_SENSITIVE, true),
+                new CK_ATTRIBUTE(CKA_ENCRYPT, true),
+                new CK_ATTRIBUTE(CKA_DECRYPT, true),
+                new CK_ATTRIBUTE(CKA_WRAP, true),
+                new CK_ATTRIBUTE(CKA_UNWRAP, true),
+                new CK_ATTRIBUTE(CKA_LABEL, label.toCharArray()),
+                new CK_ATTRIBUTE(CKA_ID, HexFormat.of().parseHex(id))));
+
+        long mechanism = switch (keySpec[0].toUpperCase()) {
+            case "AES" -> {
+                template.add(new CK_ATTRIBUTE(CKA_VALUE_LEN, Long.parseLong(keySpec[1])));
+                yield CKM_AES_KEY_GEN;
+            }
+            case "DES" -> CKM_DES_KEY_GEN;
+            case "DES3" -> CKM_DES3_KEY_GEN;
+            default -> throw new IOException("Unsupported key type: " + symmetricKeyType);
+        };
+
+        long slotId = parseSlot(slot);
+        return withSession(slotId, pin, session -> {
+            long handle = module().C_GenerateKey(session, new CK_MECHANISM(mechanism), template.toArray(new CK_ATTRIBUTE[0]));
+            List<String> output = new ArrayList<>();
+            output.add("Key generated:");
+            output.addAll(describeObject(session, handle));
+            return output;
+        });
+    }
+
+    public List<String> getListOfKeys(String slot, String hsmPin, String type) throws IOException {
+        CK_ATTRIBUTE[] template = type == null
+                ? new CK_ATTRIBUTE[0]
+                : new CK_ATTRIBUTE[]{new CK_ATTRIBUTE(CKA_CLASS, objectClassOf(type))};
+        return withSession(parseSlot(slot), hsmPin, session -> {
+            List<String> output = new ArrayList<>();
+            for (long handle : findObjects(session, template)) {
+                output.addAll(describeObject(session, handle));
+            }
+            return output;
+        });
+    }
+
+    public List<Pkcs11ObjectInfo> getObjectsListInSlot(int slotId, String hsmPin) throws IOException {
+        return withSession(Integer.toUnsignedLong(slotId), hsmPin, session -> {
+            List<Pkcs11ObjectInfo> objects = new ArrayList<>();
+            for (long handle : findObjects(session, new CK_ATTRIBUTE[0])) {
+                long objectClass = getLong(session, handle, CKA_CLASS);
+                // Same object types as the pkcs11-tool parser reports
+                String objectType = objectClass == CKO_PRIVATE_KEY ? "PrivateKey"
+                        : objectClass == CKO_PUBLIC_KEY ? "PublicKey"
+                        : objectClass == CKO_CERTIFICATE ? "Certificate"
+                        : null;
+                if (objectType != null) {
+                    objects.add(new Pkcs11ObjectInfo(objectType, getLabel(session, handle), getId(session, handle),
+                            objectClass == CKO_CERTIFICATE ? getSubject(session, handle) : null,
+                            objectClass == CKO_CERTIFICATE ? null : getUsage(session, handle, objectClass),
+                            objectClass == CKO_CERTIFICATE ? null : getAccess(session, handle)));
+                }
+            }
+            return objects;
+        });
+    }
+
+    public List<Pkcs11SlotInfo> getListOfSlots(String slot, String hsmPin) throws IOException {
+        try {
+            long[] slotIds = module().C_GetSlotList(false);
+            List<Pkcs11SlotInfo> result = new ArrayList<>(slotIds.length);
+            for (int i = 0; i < slotIds.length; i++) {
+                Pkcs11SlotInfo slotInfo = new Pkcs11SlotInfo();
+                slotInfo.setSlotIndex(i);
+                slotInfo.setSlotHex("0x" + Long.toHexString(slotIds[i]));
+                slotInfo.setSlotDecimal(Long.toString(slotIds[i]));
+
+                CK_SLOT_INFO ckSlotInfo = module().C_GetSlotInfo(slotIds[i]);
+                if ((ckSlotInfo.flags & CKF_TOKEN_PRESENT) != 0) {
+                    CK_TOKEN_INFO tokenInfo = module().C_GetTokenInfo(slotIds[i]);
+                    slotInfo.setLabel(trim(tokenInfo.label));
+                    slotInfo.setManufacturer(trim(tokenInfo.manufacturerID));
+                    slotInfo.setModel(trim(tokenInfo.model));
+                    slotInfo.setFlags(tokenFlags(tokenInfo.flags));
+                    slotInfo.setHwVersion(version(tokenInfo.hardwareVersion));
+                    slotInfo.setFwVersion(version(tokenInfo.firmwareVersion));
+                    slotInfo.setSerial(trim(tokenInfo.serialNumber));
+                    slotInfo.setPinMinMax(tokenInfo.ulMinPinLen + "/" + tokenInfo.ulMaxPinLen);
+                    slotInfo.setInitialized((tokenInfo.flags & CKF_TOKEN_INITIALIZED) != 0);
+                } else {
+                    slotInfo.setInitialized(false);
+                }
+                result.add(slotInfo);
+            }
+            return result;
+        } catch (PKCS11Exception e) {
+            throw new IOException("Failed to list slots : " + e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionTask<T> {
+        T run(long session) throws PKCS11Exception, IOException;
+    }
+
+    private <T> T withSession(long slotId, String pin, SessionTask<T> task) throws IOException {
+        Deque<Long> sessions = idleSessions.computeIfAbsent(slotId, id -> new ConcurrentLinkedDeque<>());
+        Long session = sessions.poll();
+        try {
+            if (session == null) {
+                session = module().C_OpenSession(slotId, CKF_SERIAL_SESSION | CKF_RW_SESSION, null, null);
+                openedCheckouts.increment();
+            } else {
+                pooledCheckouts.increment();
+            }
+            // Login state is shared by all sessions of the application; this is a no-op once logged in
+            login(session, pin);
+            return task.run(session);
+        } catch (PKCS11Exception e) {
+            throw new IOException("PKCS#11 call failed : " + e.getMessage(), e);
+        } finally {
+            // Sessions are never closed (see class comment) and are reused by the next call
+            if (session != null) {
+                sessions.push(session);
+            }
+        }
+    }
+
+    private void login(long session, String pin) throws PKCS11Exception, IOException {
+        if (pin == null) {
+            return;
+        }
+        try {
+            module().C_Login(session, CKU_USER, pin.toCharArray());
+        } catch (PKCS11Exception e) {
+            if (e.getErrorCode() != CKR_USER_ALREADY_LOGGED_IN) {
+                throw e;
+            }
+        }
+    }
+
+    private List<Long> findObjects(long session, CK_ATTRIBUTE[] template) throws PKCS11Exception, IOException {
+        List<Long> handles = new ArrayList<>();
+        module().C_FindObjectsInit(session, template);
+        try {
+            long[] batch;
+            do {
+                batch = module().C_FindObjects(session, FIND_BATCH_SIZE);
+                for (long handle : batch) {
+                    handles.add(handle);
+                }
+            } while (batch.length == FIND_BATCH_SIZE);
+        } finally {
+            module().C_FindObjectsFinal(session);
+        }
+        return handles;
+    }
+
+    // Renders an object the way "pkcs11-tool --list-objects" does, so callers can parse either output
+    private List<String> describeObject(long session, long handle) throws PKCS11Exception, IOException {
+        long objectClass = getLong(session, handle, CKA_CLASS);
+        List<String> lines = new ArrayList<>();
+        if (objectClass == CKO_CERTIFICATE) {
+            lines.add("Certificate Object; type = X.509 cert");
+            lines.add("  label:      " + getLabel(session, handle));
+            lines.add("  subject:    " + getSubject(session, handle));
+            lines.add("  ID:         " + getId(session, handle));
+            return lines;
+        }
+        String header = objectClass == CKO_PRIVATE_KEY ? "Private Key Object; "
+                : objectClass == CKO_PUBLIC_KEY ? "Public Key Object; "
+                : objectClass == CKO_SECRET_KEY ? "Secret Key Object; "
+                : "Data object " + handle;
+        if (objectClass == CKO_DATA) {
+            lines.add(header);
+            lines.add("  label:      " + getLabel(session, handle));
+            return lines;
+        }
+        lines.add(header + keyTypeName(getLong(session, handle, CKA_KEY_TYPE)));
+        lines.add("  label:      " + getLabel(session, handle));
+        lines.add("  ID:         " + getId(session, handle));
+        lines.add("  Usage:      " + getUsage(session, handle, objectClass));
+        lines.add("  Access:     " + getAccess(session, handle));
+        return lines;
+    }
+
+    private String getUsage(long session, long handle, long objectClass) throws IOException {
+        StringJoiner usage = new StringJoiner(", ");
+        if (objectClass != CKO_PRIVATE_KEY) {
+            addIf(usage, getBoolean(session, handle, CKA_ENCRYPT), "encrypt");
+        }
+        if (objectClass != CKO_PUBLIC_KEY) {
+            addIf(usage, getBoolean(session, handle, CKA_DECRYPT), "decrypt");
+            addIf(usage, getBoolean(session, handle, CKA_SIGN), "sign");
+        }
+        if (objectClass != CKO_PRIVATE_KEY) {
+            addIf(usage, getBoolean(session, handle, CKA_VERIFY), "verify");
+            addIf(usage, getBoolean(session, handle, CKA_WRAP), "wrap");
+        }
+        if (objectClass != CKO_PUBLIC_KEY) {
+            addIf(usage, getBoolean(session, handle, CKA_UNWRAP), "unwrap");
+        }
+        addIf(usage, getBoolean(session, handle, CKA_DERIVE), "derive");
+        return usage.length() == 0 ? "none" : usage.toString();
+    }
+
+    private String getAccess(long session, long handle) throws IOException {
+        StringJoiner access = new StringJoiner(", ");
+        addIf(access, getBoolean(session, handle, CKA_SENSITIVE), "sensitive");
+        addIf(access, getBoolean(session, handle, CKA_ALWAYS_SENSITIVE), "always sensitive");
+        addIf(access, Boolean.FALSE.equals(getBooleanOrNull(session, handle, CKA_EXTRACTABLE)), "never extractable");
+        addIf(access, getBoolean(session, handle, CKA_EXTRACTABLE), "extractable");
+        addIf(access, getBoolean(session, handle, CKA_LOCAL), "local");
+        return access.length() == 0 ? "none" : access.toString();
+    }
+
+    private String getLabel(long session, long handle) throws IOException {
+        CK_ATTRIBUTE attribute = getAttribute(session, handle, CKA_LABEL);
+        return attribute == null || attribute.pValue == null ? null : new String(attribute.getCharArray());
+    }
+
+    private String getId(long session, long handle) throws IOException {
+        CK_ATTRIBUTE attribute = getAttribute(session, handle, CKA_ID);
+        return attribute == null || attribute.pValue == null ? null : HexFormat.of().formatHex(attribute.getByteArray());
+    }
+
+    private String getSubject(long session, long handle) throws IOException {
+        CK_ATTRIBUTE attribute = getAttribute(session, handle, CKA_SUBJECT);
+        return attribute == null || attribute.pValue == null ? null : "DN: " + new X500Principal(attribute.getByteArray()).getName();
+    }
+
+    private long getLong(long session, long handle, long type) throws IOException {
+        CK_ATTRIBUTE attribute = getAttribute(session, handle, type);
+        return attribute == null ? -1 : attribute.getLong();
+    }
+
+    private boolean getBoolean(long session, long handle, long type) throws IOException {
+        return Boolean.TRUE.equals(getBooleanOrNull(session, handle, type));
+    }
+
+    private Boolean getBooleanOrNull(long session, long handle, long type) throws IOException {
+        CK_ATTRIBUTE attribute = getAttribute(session, handle, type);
+        return attribute == null || attribute.pValue == null ? null : attribute.getBoolean();
+    }
+
+    // Attributes that do not apply to an object type make the whole call fail, so query them one by one
+    private CK_ATTRIBUTE getAttribute(long session, long handle, long type) throws IOException {
+        CK_ATTRIBUTE[] template = {new CK_ATTRIBUTE(type)};
+        try {
+            module().C_GetAttributeValue(session, handle, template);
+            return template[0];
+        } catch (PKCS11Exception e) {
+            return null;
+        }
+    }
+
+    private PKCS11 module() throws IOException {
+        PKCS11 module = pkcs11;
+        if (module == null) {
+            synchronized (this) {
+                module = pkcs11;
+                if (module == null) {
+                    try {
+                        // Returns the instance the SunPKCS11 provider already loaded for this module path
+                        module = PKCS11.getInstance(pkcs11ModulePath, "C_GetFunctionList", null, false);
+                    } catch (PKCS11Exception e) {
+                        throw new IOException("Failed to load PKCS#11 module " + pkcs11ModulePath + " : " + e.getMessage(), e);
+                    }
+                    pkcs11 = module;
+                }
+            }
+        }
+        return module;
+    }
+
+    private static long parseSlot(String slot) throws IOException {
+        try {
+            return Long.parseUnsignedLong(slot.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("Invalid slot id: " + slot, e);
+        }
+    }
+
+    private static long objectClassOf(String type) throws IOException {
+        return switch (type) {
+            case "cert" -> CKO_CERTIFICATE;
+            case "privkey" -> CKO_PRIVATE_KEY;
+            case "pubkey" -> CKO_PUBLIC_KEY;
+            case "secrkey" -> CKO_SECRET_KEY;
+            case "data" -> CKO_DATA;
+            default -> throw new IOException("Unsupported object type: " + type);
+        };
+    }
+
+    private static String keyTypeName(long keyType) {
+        if (keyType == CKK_RSA) return "RSA";
+        if (keyType == CKK_EC) return "EC";
+        if (keyType == CKK_DSA) return "DSA";
+        if (keyType == CKK_DH) return "DH";
+        if (keyType == CKK_AES) return "AES";
+        if (keyType == CKK_DES) return "DES";
+        if (keyType == CKK_DES3) return "DES3";
+        if (keyType == CKK_GENERIC_SECRET) return "GENERIC";
+        return "0x" + Long.toHexString(keyType);
+    }
+
+    private static String tokenFlags(long flags) {
+        StringJoiner joiner = new StringJoiner(", ");
+        addIf(joiner, (flags & CKF_LOGIN_REQUIRED) != 0, "login required");
+        addIf(joiner, (flags & CKF_RNG) != 0, "rng");
+        addIf(joiner, (flags & CKF_TOKEN_INITIALIZED) != 0, "token initialized");
+        addIf(joiner, (flags & CKF_USER_PIN_INITIALIZED) != 0, "PIN initialized");
+        return joiner.toString();
+    }
+
+    private static void addIf(StringJoiner joiner, boolean condition, String value) {
+        if (condition) {
+            joiner.add(value);
+        }
+    }
+
+    private static String trim(char[] value) {
+        return value == null ? null : new String(value).trim();
+    }
+
+    private static String version(CK_VERSION version) {
+        return version == null ? null : version.major + "." + version.minor;
+    }
+}
@@ -4,7 +4,12 @@ import com.hsm.simulator.builder.Pkcs11CommandBuilder;
 import com.hsm.simulator.config.Pkcs11Config;
 import com.hsm.simulator.dto.Pkcs11ObjectInfo;
 import com.hsm.simulator.dto.Pkcs11SlotInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -17,15 +22,21 @@ import java.util.List;
  * Refer: <a href="https://manpages.ubuntu.com/manpages/plucky/man1/pkcs11-tool.1.html">OpenSC pkcs11-tool...</a>
  */
 @Configuration
-public class Pkcs11ToolHandler {
+@Profile("!softtoken")
+public class Pkcs11ToolHandler implements Pkcs11Engine {
 
+    private static final Logger log = LoggerFactory.getLogger(Pkcs11ToolHandler.class);
 
     private final String pkcs11ToolPath;
     private final String pkcs11ModulePath;
+    private final Counter forks;
 
-    public Pkcs11ToolHandler(Pkcs11Config pkcs11Config) {
+    public Pkcs11ToolHandler(Pkcs11Config pkcs11Config, MeterRegistry meterRegistry) {
         this.pkcs11ToolPath = pkcs11Config.getPkcs11ToolPath();
         this.pkcs11ModulePath = pkcs11Config.getPkcs11ModulePath();
+        this.forks = Counter.builder("hsm.pkcs11.tool.forks")
+                .description("pkcs11-tool processes started")
+                .register(meterRegistry);
     }
 
     public List<String> generateKeyPair(String slot, String pin, AsymmetricKeyType asymmetricKeyType,String id, String label) throws IOException, InterruptedException {
@@ -198,7 +209,10 @@ public class Pkcs11ToolHandler {
     }
 
     private List<String> executeCommand(List<String> command) throws IOException, InterruptedException {
-        System.out.println("Executing command: "+   command);
+        if (log.isDebugEnabled()) {
+            log.debug("Executing command: {}", maskPin(command));
+        }
+        forks.increment();
         var builder = new ProcessBuilder(command);
         builder.redirectErrorStream(true);
         var process = builder.start();
@@ -215,4 +229,13 @@ public class Pkcs11ToolHandler {
         return List.of(outputStream.toString(StandardCharsets.UTF_8).split("\\R"));
     }
 
+    private static List<String> maskPin(List<String> command) {
+        List<String> masked = new ArrayList<>(command);
+        for (int i = 0; i < masked.size() - 1; i++) {
+            if ("--pin".equals(masked.get(i))) {
+                masked.set(i + 1, "****");
+            }
+        }
+        return masked;
+    }
 }
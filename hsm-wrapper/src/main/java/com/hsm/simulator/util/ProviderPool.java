@@ -0,0 +1,182 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.config.Pkcs11Config;
+import com.hsm.simulator.exception.CryptoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.security.AuthProvider;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Stripes operations across several SunPKCS11 providers, each bound to its own slot.
+ * <p>
+ * The first member is the provider of {@link Pkcs11Config}; every file in
+ * {@code pkcs11.pool.config-files} adds one more provider, typically a SoftHSM token holding the same
+ * keys. Only operations whose keys exist on every member (keys resolved by alias, random generation)
+ * may be striped. Keys generated through the API are created on the first member only (token keys
+ * cannot be exported to the others), so alias operations pass a filter to
+ * {@link #withProvider(Predicate, ProviderTask)} and an alias missing on a member runs on the first
+ * member instead. Each member allows {@code pkcs11.pool.sessions-per-slot} concurrent operations, i.e.
+ * sessions checked out of its session manager; callers wait at most {@code pkcs11.pool.acquire-timeout}.
+ */
+@Component
+@Profile("!softtoken")
+public class ProviderPool {
+
+    public enum Strategy { ROUND_ROBIN, LEAST_LOADED }
+
+    @FunctionalInterface
+    public interface ProviderTask<T> {
+        T apply(AuthProvider provider) throws GeneralSecurityException;
+    }
+
+    private static final class Member {
+        private final AuthProvider provider;
+        private final Semaphore permits;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Counter checkouts;
+
+        private Member(AuthProvider provider, int sessions, Timer waitTimer, Counter checkouts) {
+            this.provider = provider;
+            this.permits = new Semaphore(sessions);
+            this.waitTimer = waitTimer;
+            this.checkouts = checkouts;
+        }
+    }
+
+    private final List<Member> members;
+    private final Strategy strategy;
+    private final long acquireTimeoutNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ProviderPool(Pkcs11Config pkcs11Config,
+                        MeterRegistry meterRegistry,
+                        @Value("${pkcs11.pool.config-files:}") List<String> configFiles,
+                        @Value("${pkcs11.pool.strategy:least-loaded}") String strategy,
+                        @Value("${pkcs11.pool.sessions-per-slot:16}") int sessionsPerSlot,
+                        @Value("${pkcs11.pool.acquire-timeout:PT5S}") Duration acquireTimeout) {
+        this.strategy = Strategy.valueOf(strategy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+
+        List<AuthProvider> providers = new ArrayList<>();
+        providers.add(pkcs11Config.getPkcs11Provider());
+        for (String configFile : configFiles) {
+            if (!configFile.isBlank()) {
+                try {
+                    providers.add((AuthProvider) Security.getProvider("SunPKCS11").configure(configFile.trim()));
+                } catch (Exception e) {
+                    throw new IllegalStateException("Failed to initialize PKCS#11 provider from " + configFile, e);
+                }
+            }
+        }
+
+        List<Member> pool = new ArrayList<>(providers.size());
+        for (int i = 0; i < providers.size(); i++) {
+            AuthProvider provider = providers.get(i);
+            String slot = i + ":" + provider.getName();
+            Timer waitTimer = Timer.builder("hsm.provider.pool.wait")
+                    .description("Time spent waiting for a free session on a slot")
+                    .tag("slot", slot)
+                    .register(meterRegistry);
+            Counter checkouts = Counter.builder("hsm.provider.pool.checkouts")
+                    .description("Sessions checked out of a slot")
+                    .tag("slot", slot)
+                    .register(meterRegistry);
+            Member member = new Member(provider, sessionsPerSlot, waitTimer, checkouts);
+            Gauge.builder("hsm.provider.pool.sessions.active", member.inFlight, AtomicInteger::get)
+                    .description("Sessions currently in use on a slot")
+                    .tag("slot", slot)
+                    .register(meterRegistry);
+            Gauge.builder("hsm.provider.pool.saturation", member.inFlight, inFlight -> (double) inFlight.get() / sessionsPerSlot)
+                    .description("Share of a slot's sessions in use (1.0 means callers queue)")
+                    .tag("slot", slot)
+                    .register(meterRegistry);
+            pool.add(member);
+        }
+        this.members = Collections.unmodifiableList(pool);
+    }
+
+    /**
+     * Runs {@code task} on one member, chosen by {@code pkcs11.pool.strategy}.
+     */
+    public <T> T withProvider(ProviderTask<T> task) throws GeneralSecurityException {
+        return withProvider(provider -> true, task);
+    }
+
+    /**
+     * Runs {@code task} on one of the members accepted by {@code eligible}, chosen by
+     * {@code pkcs11.pool.strategy}; on the first member when none is.
+     */
+    public <T> T withProvider(Predicate<AuthProvider> eligible, ProviderTask<T> task) throws GeneralSecurityException {
+        Member member = select(eligible);
+        long waitStart = System.nanoTime();
+        try {
+            if (!member.permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new CryptoException("No PKCS#11 session available on " + member.provider.getName()
+                        + " within " + Duration.ofNanos(acquireTimeoutNanos));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoException("Interrupted while waiting for a PKCS#11 session", e);
+        } finally {
+            member.waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+
+        member.inFlight.incrementAndGet();
+        member.checkouts.increment();
+        try {
+            return task.apply(member.provider);
+        } finally {
+            member.inFlight.decrementAndGet();
+            member.permits.release();
+        }
+    }
+
+    public List<AuthProvider> getProviders() {
+        return members.stream().map(member -> member.provider).toList();
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    private Member select(Predicate<AuthProvider> eligible) {
+        int size = members.size();
+        if (size == 1) {
+            return members.get(0);
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        // Least loaded; scanning from a rotating start spreads ties evenly
+        Member best = null;
+        for (int i = 0; i < size; i++) {
+            Member candidate = members.get((start + i) % size);
+            if (!eligible.test(candidate.provider)) {
+                continue;
+            }
+            if (strategy == Strategy.ROUND_ROBIN) {
+                return candidate;
+            }
+            if (best == null || candidate.inFlight.get() < best.inFlight.get()) {
+                best = candidate;
+            }
+        }
+        return best != null ? best : members.get(0);
+    }
+}
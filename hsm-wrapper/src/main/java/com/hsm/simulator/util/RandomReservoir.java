@@ -0,0 +1,245 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.exception.CryptoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves HSM random bytes from blocks fetched ahead of time, so a request for a nonce or IV costs an
+ * array copy instead of a C_GenerateRandom round trip.
+ * <p>
+ * The reservoir is a queue of {@code rng.reservoir.block-size} blocks; readers claim disjoint
+ * ranges of the head block with a CAS on its offset, so no lock is taken on the request path.
+ * Served bytes are zeroed in the block. A background thread tops the reservoir up to
+ * {@code rng.reservoir.size} once it drops below {@code rng.reservoir.low-water-mark}; if it
+ * runs dry, the rest of a request is read from the HSM directly. Large requests are better served by
+ * {@link #stream}, which reads straight from the HSM in blocks and leaves the reservoir alone.
+ */
+@Component
+@Profile("!softtoken")
+public class RandomReservoir {
+
+    private static final Logger log = LoggerFactory.getLogger(RandomReservoir.class);
+
+    private static final class Block {
+        private final byte[] data;
+        private final AtomicInteger offset = new AtomicInteger();
+
+        private Block(byte[] data) {
+            this.data = data;
+        }
+
+        // Start of a range of min(wanted, left) bytes now owned by the caller, or -1 if exhausted
+        private int claim(int wanted) {
+            while (true) {
+                int start = offset.get();
+                if (start >= data.length) {
+                    return -1;
+                }
+                if (offset.compareAndSet(start, start + Math.min(wanted, data.length - start))) {
+                    return start;
+                }
+            }
+        }
+    }
+
+    private final ProviderPool providerPool;
+    private final boolean enabled;
+    private final int capacity;
+    private final int blockSize;
+    private final int lowWaterMark;
+    private final int maxBytes;
+    private final long maxStreamBytes;
+    private final Queue<Block> blocks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong available = new AtomicLong();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    // By provider identity (Provider.hashCode is synchronized and walks every service entry);
+    // copied on write, as there is one entry per pool member
+    private volatile Map<Provider, SecureRandom> randoms = new IdentityHashMap<>();
+    private final ExecutorService refiller;
+    private final Timer refillTimer;
+    private final Counter reservoirBytes;
+    private final Counter directBytes;
+
+    public RandomReservoir(ProviderPool providerPool,
+                           MeterRegistry meterRegistry,
+                           @Value("${rng.reservoir.enabled:true}") boolean enabled,
+                           @Value("${rng.reservoir.size:1048576}") int capacity,
+                           @Value("${rng.reservoir.block-size:65536}") int blockSize,
+                           @Value("${rng.reservoir.low-water-mark:262144}") int lowWaterMark,
+                           @Value("${rng.max-bytes:65536}") int maxBytes,
+                           @Value("${rng.stream.max-bytes:1073741824}") long maxStreamBytes) {
+        this.providerPool = providerPool;
+        this.enabled = enabled;
+        this.blockSize = Math.max(1, blockSize);
+        this.capacity = Math.max(this.blockSize, capacity);
+        this.lowWaterMark = Math.min(Math.max(0, lowWaterMark), this.capacity - 1);
+        this.maxBytes = maxBytes;
+        this.maxStreamBytes = maxStreamBytes;
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hsm-random-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refillTimer = Timer.builder("hsm.random.refill")
+                .description("Time to fetch one reservoir block from the HSM")
+                .register(meterRegistry);
+        this.reservoirBytes = Counter.builder("hsm.random.bytes")
+                .description("Random bytes served, from the reservoir or directly from the HSM")
+                .tag("source", "reservoir")
+                .register(meterRegistry);
+        this.directBytes = Counter.builder("hsm.random.bytes")
+                .description("Random bytes served, from the reservoir or directly from the HSM")
+                .tag("source", "direct")
+                .register(meterRegistry);
+        Gauge.builder("hsm.random.reservoir.bytes", available, AtomicLong::get)
+                .description("Random bytes ready in the reservoir")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void fill() {
+        if (enabled) {
+            scheduleRefill();
+        }
+    }
+
+    public byte[] nextBytes(int byteCount) throws CryptoException {
+        if (byteCount <= 0 || byteCount > maxBytes) {
+            throw new CryptoException("Byte count must be between 1 and " + maxBytes + ", use the streaming endpoint for more");
+        }
+        byte[] out = new byte[byteCount];
+        int served = enabled ? drain(out) : 0;
+        if (served < byteCount) {
+            byte[] direct = generate(byteCount - served);
+            System.arraycopy(direct, 0, out, served, direct.length);
+            Arrays.fill(direct, (byte) 0);
+            directBytes.increment(direct.length);
+        }
+        if (enabled && available.get() < lowWaterMark) {
+            scheduleRefill();
+        }
+        return out;
+    }
+
+    /**
+     * Writes {@code byteCount} random bytes read directly from the HSM, one block at a time.
+     */
+    public long stream(long byteCount, OutputStream out) throws CryptoException, IOException {
+        if (byteCount <= 0 || byteCount > maxStreamBytes) {
+            throw new CryptoException("Byte count must be between 1 and " + maxStreamBytes);
+        }
+        long remaining = byteCount;
+        while (remaining > 0) {
+            byte[] block = generate((int) Math.min(blockSize, remaining));
+            out.write(block);
+            Arrays.fill(block, (byte) 0);
+            directBytes.increment(block.length);
+            remaining -= block.length;
+        }
+        return byteCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private int drain(byte[] out) {
+        int served = 0;
+        Block block;
+        while (served < out.length && (block = blocks.peek()) != null) {
+            int start = block.claim(out.length - served);
+            if (start < 0) {
+                blocks.remove(block);
+                continue;
+            }
+            int count = Math.min(out.length - served, block.data.length - start);
+            System.arraycopy(block.data, start, out, served, count);
+            Arrays.fill(block.data, start, start + count, (byte) 0);
+            available.addAndGet(-count);
+            served += count;
+            if (start + count == block.data.length) {
+                blocks.remove(block);
+            }
+        }
+        reservoirBytes.increment(served);
+        return served;
+    }
+
+    private void scheduleRefill() {
+        if (refilling.compareAndSet(false, true)) {
+            refiller.execute(this::refill);
+        }
+    }
+
+    private void refill() {
+        try {
+            while (available.get() + blockSize <= capacity && !Thread.currentThread().isInterrupted()) {
+                byte[] data = refillTimer.recordCallable(() -> generate(blockSize));
+                blocks.add(new Block(data));
+                available.addAndGet(data.length);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refill random reservoir : {}", e.getMessage());
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    private byte[] generate(int byteCount) throws CryptoException {
+        try {
+            return providerPool.withProvider(provider -> {
+                byte[] bytes = new byte[byteCount];
+                secureRandom(provider).nextBytes(bytes);
+                return bytes;
+            });
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Random generation failed :" + e.getMessage());
+        }
+    }
+
+    // One PKCS#11 SecureRandom per slot, looked up once instead of per request
+    private SecureRandom secureRandom(Provider provider) throws GeneralSecurityException {
+        SecureRandom secureRandom = randoms.get(provider);
+        if (secureRandom != null) {
+            return secureRandom;
+        }
+        synchronized (this) {
+            secureRandom = randoms.get(provider);
+            if (secureRandom == null) {
+                secureRandom = SecureRandom.getInstance(CryptoConstants.PKCS11_PROVIDER, provider);
+                Map<Provider, SecureRandom> updated = new IdentityHashMap<>(randoms);
+                updated.put(provider, secureRandom);
+                randoms = updated;
+            }
+            return secureRandom;
+        }
+    }
+}
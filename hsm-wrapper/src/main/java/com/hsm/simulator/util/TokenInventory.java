@@ -0,0 +1,94 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.dto.InventorySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory inventory of slot and object listings, so polling clients do not hit the token on every
+ * request.
+ * <p>
+ * Each view is loaded on first use and reloaded in the background every
+ * {@code inventory.refresh-interval}. {@link #invalidateAll()} marks every view stale so the next read
+ * reloads it; a reload that yields the same content keeps the previous ETag and Last-Modified, which
+ * lets unchanged polls be answered with 304.
+ */
+@Component
+public class TokenInventory {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenInventory.class);
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException, InterruptedException;
+    }
+
+    private record Entry(Object data, String etag, long lastModified, boolean stale, Loader<?> loader) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * Returns the cached view {@code key}, loading it with {@code loader} when missing or stale.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> InventorySnapshot<T> get(String key, Loader<T> loader) throws IOException, InterruptedException {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.stale()) {
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry == null || entry.stale()) {
+                    entry = store(key, entry, loader.load(), loader);
+                }
+            }
+        }
+        return new InventorySnapshot<>((T) entry.data(), entry.etag(), entry.lastModified());
+    }
+
+    /**
+     * Marks every view stale, e.g. after objects were created on the token.
+     */
+    public synchronized void invalidateAll() {
+        entries.replaceAll((key, entry) -> new Entry(entry.data(), entry.etag(), entry.lastModified(), true, entry.loader()));
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.refresh-interval:PT30S}", initialDelayString = "${inventory.refresh-interval:PT30S}")
+    public void refresh() {
+        for (String key : entries.keySet()) {
+            try {
+                synchronized (this) {
+                    Entry entry = entries.get(key);
+                    store(key, entry, entry.loader().load(), entry.loader());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Keep serving the last known view; the next refresh or invalidation retries
+                log.warn("Failed to refresh inventory view {} : {}", key, e.getMessage());
+            }
+        }
+    }
+
+    private Entry store(String key, Entry previous, Object data, Loader<?> loader) {
+        Entry entry;
+        if (previous != null && Objects.equals(previous.data(), data)) {
+            entry = new Entry(previous.data(), previous.etag(), previous.lastModified(), false, loader);
+        } else {
+            // Last-Modified is sent with second precision
+            long lastModified = System.currentTimeMillis() / 1000 * 1000;
+            entry = new Entry(data, "\"" + versions.incrementAndGet() + "\"", lastModified, false, loader);
+        }
+        entries.put(key, entry);
+        return entry;
+    }
+}
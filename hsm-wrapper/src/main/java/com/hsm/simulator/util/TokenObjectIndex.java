@@ -0,0 +1,258 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.dto.InventorySnapshot;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
+import com.hsm.simulator.exception.CryptoException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paged, filtered views over the object listings of {@link TokenInventory}. Each slot's listing is
+ * indexed once per inventory version (ETag): objects sorted by label, type and ID, plus position lists
+ * by type, ID and usage entry. A page walks the shortest matching position list from the cursor and stops
+ * after {@code limit + 1} matches, probing the other lists by binary search. The total is a range count
+ * on the position list for a single filter; with several filters it needs one walk over the shortest
+ * list, done on the first request and then kept with the index, so later pages do not repeat it.
+ * <p>
+ * Cursors are the encoded sort key of the last object returned, so paging continues at the right
+ * place even when the inventory was reloaded in between.
+ */
+@Component
+public class TokenObjectIndex {
+
+    private static final int[] NONE = new int[0];
+    private static final char SEPARATOR = '\u0000';
+    // Filter combinations whose total is kept per index
+    private static final int MAX_CACHED_TOTALS = 256;
+
+    private record Index(String etag, Pkcs11ObjectInfo[] objects, String[] sortKeys,
+                         Map<String, int[]> byType, Map<String, int[]> byId, Map<String, int[]> byUsage,
+                         Map<String, Integer> totals) {
+    }
+
+    private final Map<Integer, Index> indexes = new ConcurrentHashMap<>();
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public TokenObjectIndex(@Value("${inventory.page.default-size:100}") int defaultPageSize,
+                            @Value("${inventory.page.max-size:1000}") int maxPageSize) {
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.defaultPageSize = Math.min(this.maxPageSize, Math.max(1, defaultPageSize));
+    }
+
+    /**
+     * Returns the page of {@code objects} selected by {@code query}, with the validators of the listing
+     * it was taken from.
+     */
+    public InventorySnapshot<Pkcs11ObjectPage> page(int slotId, InventorySnapshot<List<Pkcs11ObjectInfo>> objects, Pkcs11ObjectQuery query) {
+        Index index = indexes.compute(slotId, (slot, current) ->
+                current != null && current.etag().equals(objects.getEtag()) ? current : build(objects));
+        int limit = query.getLimit() <= 0 ? defaultPageSize : Math.min(query.getLimit(), maxPageSize);
+
+        // Label prefix and cursor narrow the range of sorted positions
+        int from = 0;
+        int to = index.objects().length;
+        if (query.getLabelPrefix() != null && !query.getLabelPrefix().isEmpty()) {
+            from = lowerBound(index.sortKeys(), query.getLabelPrefix());
+            to = lowerBound(index.sortKeys(), query.getLabelPrefix() + Character.MAX_VALUE);
+        }
+        int start = query.getCursor() == null || query.getCursor().isEmpty()
+                ? from
+                : Math.max(from, upperBound(index.sortKeys(), decodeCursor(query.getCursor())));
+
+        List<int[]> filters = new ArrayList<>();
+        addFilter(filters, index.byType(), query.getType());
+        addFilter(filters, index.byId(), query.getId());
+        addFilter(filters, index.byUsage(), query.getUsage());
+
+        List<Pkcs11ObjectInfo> items = new ArrayList<>(Math.min(limit, Math.max(0, to - start)));
+        int total;
+        int last = -1;
+        boolean more = false;
+        if (filters.isEmpty()) {
+            total = to - from;
+            for (int position = start; position < to && items.size() < limit; position++) {
+                items.add(index.objects()[position]);
+                last = position;
+            }
+            more = last >= 0 && last + 1 < to;
+        } else {
+            // Walk the shortest position list from the cursor and probe the others
+            filters.sort(Comparator.comparingInt(positions -> positions.length));
+            int[] driver = filters.get(0);
+            for (int i = lowerBound(driver, start); i < driver.length && driver[i] < to; i++) {
+                int position = driver[i];
+                if (!matchesAll(filters, position)) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    more = true;
+                    break;
+                }
+                items.add(index.objects()[position]);
+                last = position;
+            }
+            total = total(index, filters, from, to, query);
+        }
+        String nextCursor = more ? encodeCursor(index.sortKeys()[last]) : null;
+        return new InventorySnapshot<>(new Pkcs11ObjectPage(items, nextCursor, total), objects.getEtag(), objects.getLastModified());
+    }
+
+    private static int total(Index index, List<int[]> filters, int from, int to, Pkcs11ObjectQuery query) {
+        int[] driver = filters.get(0);
+        if (filters.size() == 1) {
+            return lowerBound(driver, to) - lowerBound(driver, from);
+        }
+        String key = from + "/" + to + SEPARATOR + filterKey(query.getType()) + SEPARATOR + filterKey(query.getId())
+                + SEPARATOR + filterKey(query.getUsage());
+        Integer cached = index.totals().get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int total = 0;
+        for (int i = lowerBound(driver, from); i < driver.length && driver[i] < to; i++) {
+            if (matchesAll(filters, driver[i])) {
+                total++;
+            }
+        }
+        if (index.totals().size() < MAX_CACHED_TOTALS) {
+            index.totals().put(key, total);
+        }
+        return total;
+    }
+
+    private static String filterKey(String value) {
+        return value == null || value.isBlank() ? "" : normalize(value);
+    }
+
+    private static Index build(InventorySnapshot<List<Pkcs11ObjectInfo>> snapshot) {
+        List<Pkcs11ObjectInfo> sorted = new ArrayList<>(snapshot.getData());
+        sorted.sort(Comparator.comparing(TokenObjectIndex::sortKey));
+        Pkcs11ObjectInfo[] objects = sorted.toArray(new Pkcs11ObjectInfo[0]);
+        String[] sortKeys = new String[objects.length];
+        Map<String, List<Integer>> byType = new HashMap<>();
+        Map<String, List<Integer>> byId = new HashMap<>();
+        Map<String, List<Integer>> byUsage = new HashMap<>();
+        int duplicates = 0;
+        for (int position = 0; position < objects.length; position++) {
+            Pkcs11ObjectInfo object = objects[position];
+            String key = sortKey(object);
+            // Identical objects get a counter so every cursor points at exactly one of them
+            duplicates = position > 0 && sortKey(objects[position - 1]).equals(key) ? duplicates + 1 : 0;
+            sortKeys[position] = duplicates == 0 ? key : key + SEPARATOR + String.format("%08d", duplicates);
+            add(byType, object.getType(), position);
+            add(byId, object.getId(), position);
+            if (object.getUsage() != null) {
+                for (String usage : object.getUsage().split(",")) {
+                    add(byUsage, usage, position);
+                }
+            }
+        }
+        return new Index(snapshot.getEtag(), objects, sortKeys, toArrays(byType), toArrays(byId), toArrays(byUsage),
+                new ConcurrentHashMap<>());
+    }
+
+    private static String sortKey(Pkcs11ObjectInfo object) {
+        return nullToEmpty(object.getLabel()) + SEPARATOR + nullToEmpty(object.getType()) + SEPARATOR
+                + nullToEmpty(object.getId()) + SEPARATOR + nullToEmpty(object.getSubject());
+    }
+
+    private static void add(Map<String, List<Integer>> index, String value, int position) {
+        if (value != null && !value.isBlank()) {
+            List<Integer> positions = index.computeIfAbsent(normalize(value), key -> new ArrayList<>());
+            // An object listing the same usage twice is indexed once
+            if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+                positions.add(position);
+            }
+        }
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> index) {
+        Map<String, int[]> arrays = new HashMap<>();
+        index.forEach((value, positions) -> arrays.put(value, positions.stream().mapToInt(Integer::intValue).toArray()));
+        return arrays;
+    }
+
+    private static void addFilter(List<int[]> filters, Map<String, int[]> index, String value) {
+        if (value != null && !value.isBlank()) {
+            filters.add(index.getOrDefault(normalize(value), NONE));
+        }
+    }
+
+    private static boolean matchesAll(List<int[]> filters, int position) {
+        for (int i = 1; i < filters.size(); i++) {
+            if (Arrays.binarySearch(filters.get(i), position) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // First index whose key is >= key
+    private static int lowerBound(String[] keys, String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index whose key is > key
+    private static int upperBound(String[] keys, String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(int[] positions, int position) {
+        int index = Arrays.binarySearch(positions, position);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static String encodeCursor(String sortKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sortKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CryptoException("Invalid cursor : " + e.getMessage());
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,50 @@
+package com.hsm.simulator.util;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads without compiling against Java 21: the project targets Java 17, so the
+ * {@code Thread.ofVirtual()} and {@code Executors.newThreadPerTaskExecutor(..)} APIs are looked up
+ * reflectively and are simply absent on older runtimes.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return factory("probe-").isPresent();
+    }
+
+    /**
+     * A factory of virtual threads named {@code prefix0}, {@code prefix1}, ... if the runtime has them.
+     */
+    public static Optional<ThreadFactory> factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * An executor that starts one virtual thread per task, if the runtime has virtual threads.
+     */
+    public static Optional<ExecutorService> newThreadPerTaskExecutor(String prefix) {
+        return factory(prefix).flatMap(threadFactory -> {
+            try {
+                return Optional.of((ExecutorService) Executors.class
+                        .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, threadFactory));
+            } catch (ReflectiveOperationException e) {
+                return Optional.empty();
+            }
+        });
+    }
+}
@@ -12,6 +12,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -108,4 +109,27 @@ class CryptoControllerTest {
         assertTrue(resp.getBody().isSuccess());
         assertNotNull(resp.getBody().getData());
     }
+
+    @Test
+    void test_signAndVerifyBatch() {
+        Map<String, Object> signReq = new HashMap<>();
+        signReq.put("messages", List.of("entry-1", "entry-2", "entry-3"));
+        ResponseEntity<HsmApiResponse> signResp = restTemplate.postForEntity(
+                baseUrl + "/data/sign/batch/EcKeyPair256_01", signReq, HsmApiResponse.class);
+        assertTrue(signResp.getBody().isSuccess());
+        Map<String, Object> signResult = (Map<String, Object>) signResp.getBody().getData();
+        assertEquals(3, signResult.get("succeeded"));
+
+        List<String> signatures = ((List<Map<String, Object>>) signResult.get("items")).stream()
+                .map(item -> (String) item.get("data"))
+                .toList();
+        Map<String, Object> verifyReq = new HashMap<>();
+        verifyReq.put("messages", List.of("entry-1", "entry-2", "tampered"));
+        verifyReq.put("base64Signatures", signatures);
+        ResponseEntity<HsmApiResponse> verifyResp = restTemplate.postForEntity(
+                baseUrl + "/data/verify/batch/EcKeyPair256_01", verifyReq, HsmApiResponse.class);
+        assertTrue(verifyResp.getBody().isSuccess());
+        List<Map<String, Object>> items = (List<Map<String, Object>>) ((Map<String, Object>) verifyResp.getBody().getData()).get("items");
+        assertEquals(List.of(true, true, false), items.stream().map(item -> item.get("data")).toList());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+package com.hsm.simulator.tcp;
+
+import com.hsm.simulator.exception.HsmBusyException;
+import com.hsm.simulator.model.CryptoAlgorithm;
+import com.hsm.simulator.service.Pkcs11CryptoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TcpCommandServerTest {
+
+    private static final int MAX_FRAME_SIZE = 64 * 1024;
+
+    private final Pkcs11CryptoService cryptoService = mock(Pkcs11CryptoService.class);
+    private TcpCommandServer server;
+    private Socket socket;
+
+    private record Response(int requestId, byte status, byte[] payload) {
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (socket != null) {
+            socket.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void start(int maxPipelined) throws IOException {
+        server = new TcpCommandServer(cryptoService, new SimpleMeterRegistry(), "127.0.0.1", 0,
+                4, maxPipelined, MAX_FRAME_SIZE, 1024, 8, false);
+        server.start();
+        socket = new Socket("127.0.0.1", server.getPort());
+        socket.setSoTimeout(5000);
+    }
+
+    private static byte[] frame(int requestId, TcpCommand command, byte[]... fields) {
+        int bodyLength = Arrays.stream(fields).mapToInt(field -> 4 + field.length).sum();
+        ByteBuffer frame = ByteBuffer.allocate(4 + 5 + bodyLength);
+        frame.putInt(5 + bodyLength).putInt(requestId).put((byte) command.getCode());
+        for (byte[] field : fields) {
+            frame.putInt(field.length).put(field);
+        }
+        return frame.array();
+    }
+
+    // The RANDOM body is a bare byte count, not a length-prefixed field
+    private static byte[] randomFrame(int requestId, int byteCount) {
+        return ByteBuffer.allocate(4 + 5 + 4).putInt(5 + 4).putInt(requestId).put((byte) TcpCommand.RANDOM.getCode())
+                .putInt(byteCount).array();
+    }
+
+    private static byte[] text(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void send(byte[]... chunks) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        for (byte[] chunk : chunks) {
+            out.write(chunk);
+            out.flush();
+        }
+    }
+
+    private Response receive() throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int length = in.readInt();
+        int requestId = in.readInt();
+        byte status = in.readByte();
+        byte[] payload = new byte[length - 5];
+        in.readFully(payload);
+        return new Response(requestId, status, payload);
+    }
+
+    @Test
+    void test_echoRoundTrip() throws Exception {
+        start(8);
+
+        send(frame(7, TcpCommand.ECHO, text("ping")));
+
+        Response response = receive();
+        assertEquals(7, response.requestId());
+        assertEquals(0, response.status());
+        assertArrayEquals(text("ping"), response.payload());
+    }
+
+    @Test
+    void test_frameSplitAcrossWrites() throws Exception {
+        start(8);
+        byte[] frame = frame(1, TcpCommand.ECHO, text("split across three writes"));
+
+        // Inside the length prefix, then inside the body
+        send(Arrays.copyOfRange(frame, 0, 2));
+        Thread.sleep(50);
+        send(Arrays.copyOfRange(frame, 2, 12));
+        Thread.sleep(50);
+        send(Arrays.copyOfRange(frame, 12, frame.length));
+
+        Response response = receive();
+        assertEquals(1, response.requestId());
+        assertArrayEquals(text("split across three writes"), response.payload());
+    }
+
+    @Test
+    void test_framesCoalescedInOneWrite() throws Exception {
+        start(8);
+        byte[] first = frame(1, TcpCommand.ECHO, text("first"));
+        byte[] second = frame(2, TcpCommand.ECHO, text("second"));
+        byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+
+        send(both);
+
+        Set<Integer> requestIds = new HashSet<>();
+        requestIds.add(receive().requestId());
+        requestIds.add(receive().requestId());
+        assertEquals(Set.of(1, 2), requestIds);
+    }
+
+    @Test
+    void test_frameLargerThanInitialBuffer() throws Exception {
+        start(8);
+        byte[] data = new byte[MAX_FRAME_SIZE - 64];
+        Arrays.fill(data, (byte) 0x5A);
+
+        send(frame(3, TcpCommand.ECHO, data));
+
+        Response response = receive();
+        assertEquals(0, response.status());
+        assertArrayEquals(data, response.payload());
+    }
+
+    @Test
+    void test_oversizedFrameClosesConnection() throws Exception {
+        start(8);
+
+        send(ByteBuffer.allocate(4).putInt(MAX_FRAME_SIZE + 1).array());
+
+        assertThrows(EOFException.class, this::receive);
+    }
+
+    @Test
+    void test_frameShorterThanHeaderClosesConnection() throws Exception {
+        start(8);
+
+        send(ByteBuffer.allocate(6).putInt(2).put((byte) 0).put((byte) 0).array());
+
+        assertThrows(EOFException.class, this::receive);
+    }
+
+    @Test
+    void test_failuresAnsweredWithStatus() throws Exception {
+        when(cryptoService.encryptBytes(eq(CryptoAlgorithm.AES), any()))
+                .thenThrow(new HsmBusyException("HSM is busy"));
+        start(8);
+
+        send(frame(1, TcpCommand.ENCRYPT, text("AES"), text("data")));
+        Response busy = receive();
+        assertEquals(2, busy.status());
+        assertArrayEquals(text("HSM is busy"), busy.payload());
+
+        send(frame(2, TcpCommand.ENCRYPT, text("NOPE"), text("data")));
+        assertEquals(1, receive().status());
+
+        // The connection stays usable after command errors
+        send(frame(3, TcpCommand.ECHO, text("still open")));
+        assertEquals(0, receive().status());
+    }
+
+    @Test
+    void test_randomCappedAtRngMaxBytes() throws Exception {
+        when(cryptoService.generateRandomBytes(1024)).thenReturn(new byte[1024]);
+        start(8);
+
+        send(randomFrame(1, 1024));
+        Response allowed = receive();
+        assertEquals(0, allowed.status());
+        assertEquals(1024, allowed.payload().length);
+
+        // Above rng.max-bytes, though well within the frame size
+        send(randomFrame(2, 1025));
+        assertEquals(1, receive().status());
+    }
+
+    @Test
+    void test_pipelinedRequestsLimitedPerConnection() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        when(cryptoService.encryptBytes(eq(CryptoAlgorithm.AES), any())).thenAnswer(invocation -> {
+            started.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                return invocation.getArgument(1);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        start(2);
+
+        // All frames arrive in one read, more than the limit and than the workers
+        int requests = 12;
+        ByteBuffer frames = ByteBuffer.allocate(requests * frame(0, TcpCommand.ENCRYPT, text("AES"), text("data")).length);
+        for (int requestId = 0; requestId < requests; requestId++) {
+            frames.put(frame(requestId, TcpCommand.ENCRYPT, text("AES"), text("data")));
+        }
+        send(frames.array());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (started.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(200);
+        assertEquals(2, started.get());
+
+        release.countDown();
+        Set<Integer> requestIds = new HashSet<>();
+        for (int i = 0; i < requests; i++) {
+            Response response = receive();
+            assertEquals(0, response.status());
+            requestIds.add(response.requestId());
+        }
+        assertEquals(requests, requestIds.size());
+        assertTrue(maxRunning.get() <= 2);
+    }
+}
@@ -0,0 +1,173 @@
+package com.hsm.simulator.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class DataKeyCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger generated = new AtomicInteger();
+    private final AtomicInteger unwrapped = new AtomicInteger();
+
+    private DataKeyCache cache(int maxEntries, Duration maxAge, long maxMessages, long maxBytes) {
+        return new DataKeyCache(meterRegistry, true, maxEntries, maxAge, maxMessages, maxBytes);
+    }
+
+    // Key n is filled with n, wrapped key n is n followed by -1
+    private DataKeyCache.DataKey generate() {
+        byte n = (byte) generated.incrementAndGet();
+        byte[] plainKey = new byte[32];
+        Arrays.fill(plainKey, n);
+        return new DataKeyCache.DataKey(plainKey, new byte[]{n, -1});
+    }
+
+    private byte[] unwrap(byte[] wrappedKey) {
+        unwrapped.incrementAndGet();
+        byte[] plainKey = new byte[32];
+        Arrays.fill(plainKey, wrappedKey[0]);
+        return plainKey;
+    }
+
+    private double evictions(String reason) {
+        var counter = meterRegistry.find("hsm.datakey.cache.evictions").tag("reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void test_encryptionKeyReusedUntilMessageLimit() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ofMinutes(5), 3, 1 << 20);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, cache.encryptionKey(10, this::generate).wrappedKey()[0]);
+        }
+        assertEquals(2, cache.encryptionKey(10, this::generate).wrappedKey()[0]);
+        assertEquals(2, generated.get());
+        assertEquals(1.0, evictions("messages"));
+    }
+
+    @Test
+    void test_encryptionKeyReplacedAtByteLimit() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ofMinutes(5), 1000, 100);
+
+        assertEquals(1, cache.encryptionKey(60, this::generate).wrappedKey()[0]);
+        assertEquals(1, cache.encryptionKey(40, this::generate).wrappedKey()[0]);
+        assertEquals(2, cache.encryptionKey(1, this::generate).wrappedKey()[0]);
+        assertEquals(1.0, evictions("bytes"));
+    }
+
+    @Test
+    void test_payloadAboveByteLimitDoesNotReplaceCurrentKey() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ofMinutes(5), 1000, 100);
+
+        assertEquals(1, cache.encryptionKey(10, this::generate).wrappedKey()[0]);
+        assertEquals(2, cache.encryptionKey(500, this::generate).wrappedKey()[0]);
+        assertEquals(3, cache.encryptionKey(10, this::generate).wrappedKey()[0]);
+        assertEquals(3, cache.encryptionKey(10, this::generate).wrappedKey()[0]);
+    }
+
+    @Test
+    void test_expiredKeysAreNotServed() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ZERO, 1000, 1 << 20);
+
+        cache.encryptionKey(10, this::generate);
+        cache.encryptionKey(10, this::generate);
+        assertEquals(2, generated.get());
+        assertEquals(1.0, evictions("age"));
+
+        cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+        cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+        assertEquals(2, unwrapped.get());
+    }
+
+    @Test
+    void test_purgeExpiredDropsEverything() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ZERO, 1000, 1 << 20);
+        cache.encryptionKey(10, this::generate);
+        cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+
+        cache.purgeExpired();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void test_decryptionKeysCachedByWrappedKey() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ofMinutes(5), 1000, 1 << 20);
+
+        byte[] first = cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+        byte[] second = cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+
+        assertEquals(1, unwrapped.get());
+        assertArrayEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void test_encryptionKeyServesDecryption() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ofMinutes(5), 1000, 1 << 20);
+
+        DataKeyCache.DataKey key = cache.encryptionKey(10, this::generate);
+        byte[] plainKey = cache.decryptionKey(key.wrappedKey(), this::unwrap);
+
+        assertEquals(0, unwrapped.get());
+        assertArrayEquals(key.plainKey(), plainKey);
+    }
+
+    @Test
+    void test_leastRecentlyUsedDecryptionKeyEvicted() throws GeneralSecurityException {
+        DataKeyCache cache = cache(2, Duration.ofMinutes(5), 1000, 1 << 20);
+
+        cache.decryptionKey(new byte[]{1, -1}, this::unwrap);
+        cache.decryptionKey(new byte[]{2, -1}, this::unwrap);
+        cache.decryptionKey(new byte[]{1, -1}, this::unwrap);
+        cache.decryptionKey(new byte[]{3, -1}, this::unwrap);
+        assertEquals(3, unwrapped.get());
+        assertEquals(1.0, evictions("size"));
+
+        cache.decryptionKey(new byte[]{1, -1}, this::unwrap);
+        assertEquals(3, unwrapped.get());
+        cache.decryptionKey(new byte[]{2, -1}, this::unwrap);
+        assertEquals(4, unwrapped.get());
+    }
+
+    @Test
+    void test_callersGetCopiesThatSurviveEviction() throws GeneralSecurityException {
+        DataKeyCache cache = cache(16, Duration.ofMinutes(5), 1000, 1 << 20);
+        byte[] expected = new byte[32];
+        Arrays.fill(expected, (byte) 7);
+
+        byte[] held = cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+        // Zeroizing the caller's copy must not touch the cached key
+        byte[] zeroized = cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+        Arrays.fill(zeroized, (byte) 0);
+        assertArrayEquals(expected, cache.decryptionKey(new byte[]{7, -1}, this::unwrap));
+
+        // Zeroizing the cache's keys must not touch a copy already handed out
+        cache.clear();
+        assertArrayEquals(expected, held);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void test_disabledCacheAlwaysCallsThrough() throws GeneralSecurityException {
+        DataKeyCache cache = new DataKeyCache(meterRegistry, false, 16, Duration.ofMinutes(5), 1000, 1 << 20);
+
+        cache.encryptionKey(10, this::generate);
+        cache.encryptionKey(10, this::generate);
+        cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+        cache.decryptionKey(new byte[]{7, -1}, this::unwrap);
+
+        assertEquals(2, generated.get());
+        assertEquals(2, unwrapped.get());
+        assertEquals(0, cache.size());
+    }
+}
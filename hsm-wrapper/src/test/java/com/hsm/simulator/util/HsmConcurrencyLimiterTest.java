@@ -0,0 +1,241 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.exception.HsmBusyException;
+import com.hsm.simulator.exception.HsmOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HsmConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private HsmConcurrencyLimiter limiter(int maxLimit, int minLimit, int queueSize, Duration acquireTimeout,
+                                          boolean adaptive, double latencyTolerance, double backoffRatio) {
+        // A zero window decides on every call
+        return limiter(maxLimit, minLimit, queueSize, acquireTimeout, adaptive, latencyTolerance, backoffRatio, Duration.ZERO);
+    }
+
+    private HsmConcurrencyLimiter limiter(int maxLimit, int minLimit, int queueSize, Duration acquireTimeout,
+                                          boolean adaptive, double latencyTolerance, double backoffRatio,
+                                          Duration latencyWindow) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("hsm.concurrency.symmetric.max-limit", String.valueOf(maxLimit))
+                .withProperty("hsm.concurrency.symmetric.min-limit", String.valueOf(minLimit))
+                .withProperty("hsm.concurrency.symmetric.queue-size", String.valueOf(queueSize));
+        return new HsmConcurrencyLimiter(environment, meterRegistry, acquireTimeout, adaptive, latencyTolerance, backoffRatio,
+                latencyWindow, 60);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("lane", "symmetric").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("hsm.concurrency.rejected").tag("lane", "symmetric").tag("reason", reason).counter().count();
+    }
+
+    // Occupies a symmetric permit until release is counted down
+    private Future<String> hold(HsmConcurrencyLimiter limiter, CountDownLatch acquired, CountDownLatch release) {
+        return executor.submit(() -> limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> {
+            acquired.countDown();
+            release.await();
+            return "held";
+        }));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void test_fullQueueRejectedWithOverloaded() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(1, 1, 0, Duration.ofSeconds(5), false, 2.0, 0.9);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = hold(limiter, acquired, release);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+
+        assertThrows(HsmOverloadedException.class,
+                () -> limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> "rejected"));
+        assertEquals(1.0, rejected("queue-full"));
+
+        // Other lanes have their own permits
+        assertEquals("asymmetric", limiter.run(HsmConcurrencyLimiter.Lane.ASYMMETRIC, () -> "asymmetric"));
+
+        release.countDown();
+        assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("admitted", limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> "admitted"));
+    }
+
+    @Test
+    void test_waitTimeoutRejectedWithBusy() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(1, 1, 1, Duration.ofMillis(50), false, 2.0, 0.9);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = hold(limiter, acquired, release);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+
+        HsmBusyException e = assertThrows(HsmBusyException.class,
+                () -> limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> "rejected"));
+        assertFalse(e instanceof HsmOverloadedException);
+        assertEquals(1.0, rejected("timeout"));
+        assertEquals(0.0, gauge("hsm.concurrency.queued"));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void test_queuedRequestAdmittedWhenPermitFreed() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(1, 1, 1, Duration.ofSeconds(5), false, 2.0, 0.9);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = hold(limiter, acquired, release);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+
+        Future<String> waiter = executor.submit(() -> limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> "waited"));
+        while (gauge("hsm.concurrency.queued") < 1) {
+            sleep(1);
+        }
+        assertFalse(waiter.isDone());
+
+        release.countDown();
+        assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("waited", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(0.0, gauge("hsm.concurrency.active"));
+    }
+
+    @Test
+    void test_patientCallerWaitsPastQueueSizeAndTimeout() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(1, 1, 0, Duration.ofMillis(50), false, 2.0, 0.9);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = hold(limiter, acquired, release);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+
+        Future<String> job = executor.submit(() -> limiter.runWhenPermitted(HsmConcurrencyLimiter.Lane.SYMMETRIC, "job", () -> "waited"));
+        sleep(200);
+        assertFalse(job.isDone());
+
+        release.countDown();
+        assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("waited", job.get(5, TimeUnit.SECONDS));
+    }
+
+    private static Object sleeping(long millis) {
+        sleep(millis);
+        return null;
+    }
+
+    @Test
+    void test_slowWindowCutsLimitAndSaturatedWindowRaisesIt() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(4, 1, 8, Duration.ofSeconds(5), true, 10.0, 0.25);
+        assertEquals(4.0, gauge("hsm.concurrency.limit"));
+
+        // The baseline is the fastest call seen
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+        assertEquals(4.0, gauge("hsm.concurrency.limit"));
+
+        // Far above the tolerated multiple of the baseline: multiplicative decrease, floored at min-limit
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(300));
+        assertEquals(1.0, gauge("hsm.concurrency.limit"));
+
+        // Back at the baseline with the limit in full use: additive increase
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+        assertEquals(2.0, gauge("hsm.concurrency.limit"));
+
+        // A window that leaves the limit unused does not raise it
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+        assertEquals(2.0, gauge("hsm.concurrency.limit"));
+    }
+
+    @Test
+    void test_limitCutOncePerWindow() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(16, 1, 8, Duration.ofSeconds(5), true, 10.0, 0.5, Duration.ofSeconds(1));
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+
+        // A burst of slow calls within one window
+        List<Future<Object>> slowCalls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            slowCalls.add(executor.submit(() -> limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(200))));
+        }
+        for (Future<Object> slowCall : slowCalls) {
+            slowCall.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(16.0, gauge("hsm.concurrency.limit"));
+
+        // The first call after the window closes it: one cut, not one per slow call
+        sleep(1000);
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(5));
+        assertEquals(8.0, gauge("hsm.concurrency.limit"));
+    }
+
+    @Test
+    void test_workClassesKeepOwnBaselines() throws Exception {
+        HsmConcurrencyLimiter limiter = limiter(4, 1, 8, Duration.ofSeconds(5), true, 10.0, 0.25);
+
+        // Large calls are slow but not congested: they are compared with large calls only
+        for (int i = 0; i < 3; i++) {
+            limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, "encrypt/AES/0", () -> sleeping(1));
+            limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, "encrypt/AES/7", () -> sleeping(100));
+        }
+        assertEquals(4.0, gauge("hsm.concurrency.limit"));
+
+        limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, "encrypt/AES/0", () -> sleeping(100));
+        assertEquals(1.0, gauge("hsm.concurrency.limit"));
+    }
+
+    @Test
+    void test_bulkAndNonAdaptiveCallsLeaveLimitAlone() throws Exception {
+        HsmConcurrencyLimiter adaptive = limiter(4, 1, 8, Duration.ofSeconds(5), true, 50.0, 0.25);
+        adaptive.runBulk(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(2));
+        adaptive.runBulk(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(300));
+        assertEquals(4.0, gauge("hsm.concurrency.limit"));
+
+        meterRegistry.clear();
+        HsmConcurrencyLimiter fixed = limiter(4, 1, 8, Duration.ofSeconds(5), false, 50.0, 0.25);
+        fixed.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(2));
+        fixed.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> sleeping(300));
+        assertEquals(4.0, gauge("hsm.concurrency.limit"));
+    }
+
+    @Test
+    void test_callFailureReleasesPermit() {
+        HsmConcurrencyLimiter limiter = limiter(1, 1, 0, Duration.ofSeconds(5), false, 2.0, 0.9);
+
+        assertThrows(IllegalStateException.class, () -> limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> {
+            throw new IllegalStateException("HSM error");
+        }));
+
+        assertEquals(0.0, gauge("hsm.concurrency.active"));
+        assertEquals("admitted", limiter.run(HsmConcurrencyLimiter.Lane.SYMMETRIC, () -> "admitted"));
+    }
+}
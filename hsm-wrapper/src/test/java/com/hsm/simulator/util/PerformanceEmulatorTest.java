@@ -0,0 +1,141 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.exception.HsmBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerformanceEmulatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private PerformanceEmulator emulator(String... properties) {
+        MockEnvironment environment = new MockEnvironment();
+        for (int i = 0; i < properties.length; i += 2) {
+            environment.setProperty("hsm.emulation.profiles.test." + properties[i], properties[i + 1]);
+        }
+        return new PerformanceEmulator(environment, meterRegistry, "test");
+    }
+
+    private long latencyCalls(String rule) {
+        return meterRegistry.get("hsm.emulation.latency").tag("rule", rule).timer().count();
+    }
+
+    private double rejected(String rule, String limit) {
+        return meterRegistry.get("hsm.emulation.rejected").tag("rule", rule).tag("limit", limit).counter().count();
+    }
+
+    @Test
+    void test_emptyProfileDisablesEmulation() {
+        PerformanceEmulator emulator = new PerformanceEmulator(new MockEnvironment(), meterRegistry, "");
+
+        assertFalse(emulator.isEnabled());
+        assertEquals("done", emulator.run("sign", "RSA", "2048", 1, () -> "done"));
+    }
+
+    @Test
+    void test_unknownProfileRejected() {
+        MockEnvironment environment = new MockEnvironment().withProperty("hsm.emulation.profiles.other.sessions", "4");
+
+        assertThrows(IllegalStateException.class, () -> new PerformanceEmulator(environment, meterRegistry, "missing"));
+    }
+
+    @Test
+    void test_invalidRulesRejected() {
+        assertThrows(IllegalArgumentException.class, () -> emulator("rates", "sign/RSA"));
+        assertThrows(IllegalArgumentException.class, () -> emulator("rates", "sign=0"));
+        assertThrows(IllegalArgumentException.class, () -> emulator("latency", "sign=gamma:1:2"));
+        assertThrows(IllegalArgumentException.class, () -> emulator("latency", "sign=uniform:1"));
+    }
+
+    @Test
+    void test_mostSpecificRuleApplies() {
+        PerformanceEmulator emulator = emulator("latency",
+                "*=fixed:0, sign=fixed:0, sign/rsa=fixed:0, sign.raw/RSA/2048=fixed:0");
+        assertTrue(emulator.isEnabled());
+
+        emulator.run("sign.raw", "RSA", "2048", 1, () -> null);
+        emulator.run("sign.raw", "rsa", "4096", 1, () -> null);
+        emulator.run("sign", "RSA", null, 1, () -> null);
+        emulator.run("sign", "EC", "P-256", 1, () -> null);
+        emulator.run("mac", "HMAC", null, 1, () -> null);
+
+        assertEquals(1, latencyCalls("sign.raw/RSA/2048"));
+        assertEquals(2, latencyCalls("sign/RSA"));
+        assertEquals(1, latencyCalls("sign"));
+        assertEquals(1, latencyCalls("*"));
+    }
+
+    @Test
+    void test_latencyAddedToCall() {
+        PerformanceEmulator emulator = emulator("latency", "encrypt=fixed:50");
+
+        long start = System.nanoTime();
+        emulator.run("encrypt", "AES", "256", 1, () -> null);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void test_rateCapRejectsWhenWaitExceedsQueueTimeout() {
+        PerformanceEmulator emulator = emulator("rates", "encrypt/AES=1", "burst", "PT0S", "queue-timeout", "PT0.01S");
+
+        assertEquals("first", emulator.run("encrypt", "AES", "256", 1, () -> "first"));
+        assertThrows(HsmBusyException.class, () -> emulator.run("encrypt", "AES", "256", 1, () -> "second"));
+        // encrypt.raw falls back to the encrypt/AES rule and shares its bucket
+        assertThrows(HsmBusyException.class, () -> emulator.run("encrypt.raw", "AES", null, 1, () -> "raw"));
+        assertEquals(2.0, rejected("encrypt/AES", "rate"));
+
+        // Calls no rate rule matches are not limited
+        assertEquals("decrypt", emulator.run("decrypt", "AES", "256", 1, () -> "decrypt"));
+    }
+
+    @Test
+    void test_batchTakesOnePermitPerItem() {
+        PerformanceEmulator emulator = emulator("rates", "encrypt=10", "burst", "PT0S", "queue-timeout", "PT0.5S");
+
+        assertEquals("batch", emulator.run("encrypt.batch", "AES", null, 20, () -> "batch"));
+        // The batch used up two seconds' worth of tokens
+        assertThrows(HsmBusyException.class, () -> emulator.run("encrypt", "AES", null, 1, () -> "single"));
+    }
+
+    @Test
+    void test_sessionLimitRejectsAfterQueueTimeout() throws Exception {
+        PerformanceEmulator emulator = emulator("sessions", "1", "queue-timeout", "PT0.05S");
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = executor.submit(() -> emulator.run("sign", "RSA", "2048", 1, () -> {
+            acquired.countDown();
+            release.await();
+            return "held";
+        }));
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("hsm.emulation.sessions.active").gauge().value());
+
+        assertThrows(HsmBusyException.class, () -> emulator.run("mac", "HMAC", null, 1, () -> "rejected"));
+        assertEquals(1.0, rejected("session", "session"));
+
+        release.countDown();
+        assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("admitted", emulator.run("mac", "HMAC", null, 1, () -> "admitted"));
+        assertEquals(0.0, meterRegistry.get("hsm.emulation.sessions.active").gauge().value());
+    }
+}
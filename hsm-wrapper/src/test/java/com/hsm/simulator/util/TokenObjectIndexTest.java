@@ -0,0 +1,186 @@
+package com.hsm.simulator.util;
+
+import com.hsm.simulator.dto.InventorySnapshot;
+import com.hsm.simulator.dto.Pkcs11ObjectInfo;
+import com.hsm.simulator.dto.Pkcs11ObjectPage;
+import com.hsm.simulator.dto.Pkcs11ObjectQuery;
+import com.hsm.simulator.exception.CryptoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenObjectIndexTest {
+
+    private final TokenObjectIndex index = new TokenObjectIndex(2, 3);
+
+    private static Pkcs11ObjectInfo key(String label, String id, String usage) {
+        return new Pkcs11ObjectInfo("key", label, id, null, usage, "private");
+    }
+
+    private static Pkcs11ObjectInfo cert(String label, String id) {
+        return new Pkcs11ObjectInfo("cert", label, id, "CN=" + label, "verify", "public");
+    }
+
+    private static InventorySnapshot<List<Pkcs11ObjectInfo>> snapshot(String etag, Pkcs11ObjectInfo... objects) {
+        return new InventorySnapshot<>(List.of(objects), etag, 1000L);
+    }
+
+    private static Pkcs11ObjectQuery query(String type, String labelPrefix, String id, String usage, String cursor, int limit) {
+        return new Pkcs11ObjectQuery(type, labelPrefix, id, usage, cursor, limit);
+    }
+
+    // Follows nextCursor until the last page and returns every item seen
+    private List<Pkcs11ObjectInfo> allPages(InventorySnapshot<List<Pkcs11ObjectInfo>> objects, String type, String labelPrefix,
+                                            String id, String usage, int limit) {
+        List<Pkcs11ObjectInfo> items = new ArrayList<>();
+        String cursor = null;
+        do {
+            Pkcs11ObjectPage page = index.page(0, objects, query(type, labelPrefix, id, usage, cursor, limit)).getData();
+            assertTrue(page.getItems().size() <= limit);
+            items.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return items;
+    }
+
+    @Test
+    void test_pagesAreSortedByLabelAndCarryValidators() {
+        var objects = snapshot("v1", key("charlie", "03", "sign"), key("alpha", "01", "sign"), key("bravo", "02", "sign"));
+
+        InventorySnapshot<Pkcs11ObjectPage> first = index.page(0, objects, query(null, null, null, null, null, 2));
+        assertEquals("v1", first.getEtag());
+        assertEquals(1000L, first.getLastModified());
+        assertEquals(3, first.getData().getTotal());
+        assertEquals(List.of("alpha", "bravo"), first.getData().getItems().stream().map(Pkcs11ObjectInfo::getLabel).toList());
+        assertNotNull(first.getData().getNextCursor());
+
+        Pkcs11ObjectPage second = index.page(0, objects, query(null, null, null, null, first.getData().getNextCursor(), 2)).getData();
+        assertEquals(List.of("charlie"), second.getItems().stream().map(Pkcs11ObjectInfo::getLabel).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void test_limitDefaultsAndIsCapped() {
+        var objects = snapshot("v1", key("a", "01", null), key("b", "02", null), key("c", "03", null),
+                key("d", "04", null), key("e", "05", null));
+
+        assertEquals(2, index.page(0, objects, query(null, null, null, null, null, 0)).getData().getItems().size());
+        assertEquals(3, index.page(0, objects, query(null, null, null, null, null, 100)).getData().getItems().size());
+    }
+
+    @Test
+    void test_cursorPagingVisitsDuplicatesOnce() {
+        var objects = snapshot("v1", key("dup", "01", "sign"), key("dup", "01", "sign"), key("dup", "01", "sign"),
+                key("dup", "01", "sign"), key("other", "02", "sign"));
+
+        List<Pkcs11ObjectInfo> items = allPages(objects, null, null, null, null, 1);
+
+        assertEquals(5, items.size());
+        assertEquals(4, items.stream().filter(item -> item.getLabel().equals("dup")).count());
+    }
+
+    @Test
+    void test_cursorPagingVisitsDuplicatesOnceWithFilters() {
+        var objects = snapshot("v1", key("dup", "01", "sign"), key("dup", "01", "sign"), key("dup", "01", "sign"),
+                cert("dup", "01"));
+
+        List<Pkcs11ObjectInfo> items = allPages(objects, "key", null, null, "sign", 2);
+
+        assertEquals(3, items.size());
+    }
+
+    @Test
+    void test_labelPrefixSelectsRange() {
+        var objects = snapshot("v1", key("app-a", "01", null), key("app-b", "02", null), key("apple", "03", null),
+                key("db-a", "04", null), key("ap", "05", null));
+
+        Pkcs11ObjectPage page = index.page(0, objects, query(null, "app-", null, null, null, 3)).getData();
+
+        assertEquals(2, page.getTotal());
+        assertEquals(List.of("app-a", "app-b"), page.getItems().stream().map(Pkcs11ObjectInfo::getLabel).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void test_filtersCombineAndCountTotal() {
+        var objects = snapshot("v1", key("a", "01", "sign,decrypt"), key("b", "02", "decrypt"), key("c", "01", "sign"),
+                cert("a", "01"), cert("d", "03"));
+
+        Pkcs11ObjectPage keys = index.page(0, objects, query("KEY", null, null, null, null, 1)).getData();
+        assertEquals(3, keys.getTotal());
+        assertEquals(1, keys.getItems().size());
+        assertNotNull(keys.getNextCursor());
+
+        Pkcs11ObjectPage signing = index.page(0, objects, query(null, null, "01", "sign", null, 3)).getData();
+        assertEquals(2, signing.getTotal());
+        assertEquals(List.of("a", "c"), signing.getItems().stream().map(Pkcs11ObjectInfo::getLabel).toList());
+        assertTrue(signing.getItems().stream().allMatch(item -> item.getType().equals("key")));
+
+        Pkcs11ObjectPage none = index.page(0, objects, query("key", null, null, "wrap", null, 3)).getData();
+        assertEquals(0, none.getTotal());
+        assertTrue(none.getItems().isEmpty());
+        assertNull(none.getNextCursor());
+    }
+
+    @Test
+    void test_totalIgnoresCursor() {
+        var objects = snapshot("v1", key("a", "01", "sign"), key("b", "02", "sign"), key("c", "03", "sign"));
+
+        Pkcs11ObjectPage first = index.page(0, objects, query(null, null, null, "sign", null, 1)).getData();
+        Pkcs11ObjectPage second = index.page(0, objects, query(null, null, null, "sign", first.getNextCursor(), 1)).getData();
+
+        assertEquals(3, second.getTotal());
+        assertEquals("b", second.getItems().get(0).getLabel());
+    }
+
+    @Test
+    void test_combinedFilterTotalSameOnEveryPage() {
+        var objects = snapshot("v1", key("a", "01", "sign"), key("b", "02", "sign"), key("c", "01", "sign"),
+                key("d", "01", "decrypt"), key("e", "01", "sign"));
+
+        Pkcs11ObjectPage first = index.page(0, objects, query("key", null, "01", "sign", null, 1)).getData();
+        Pkcs11ObjectPage second = index.page(0, objects, query("key", null, "01", "sign", first.getNextCursor(), 1)).getData();
+        Pkcs11ObjectPage last = index.page(0, objects, query("key", null, "01", "sign", second.getNextCursor(), 1)).getData();
+
+        assertEquals(List.of(3, 3, 3), List.of(first.getTotal(), second.getTotal(), last.getTotal()));
+        assertEquals(List.of("a", "c", "e"), List.of(first.getItems().get(0).getLabel(), second.getItems().get(0).getLabel(),
+                last.getItems().get(0).getLabel()));
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void test_invalidCursorRejected() {
+        var objects = snapshot("v1", key("a", "01", null));
+
+        assertThrows(CryptoException.class, () -> index.page(0, objects, query(null, null, null, null, "not*base64", 1)));
+    }
+
+    @Test
+    void test_indexRebuiltForNewEtag() {
+        index.page(0, snapshot("v1", key("a", "01", null)), query(null, null, null, null, null, 3));
+
+        // Same ETag means the same listing, so the cached index is reused
+        assertEquals(1, index.page(0, snapshot("v1", key("a", "01", null), key("b", "02", null)),
+                query(null, null, null, null, null, 3)).getData().getTotal());
+        assertEquals(2, index.page(0, snapshot("v2", key("a", "01", null), key("b", "02", null)),
+                query(null, null, null, null, null, 3)).getData().getTotal());
+    }
+
+    @Test
+    void test_cursorSurvivesReload() {
+        var before = snapshot("v1", key("a", "01", null), key("c", "03", null), key("e", "05", null));
+        String cursor = index.page(0, before, query(null, null, null, null, null, 1)).getData().getNextCursor();
+
+        var after = snapshot("v2", key("a", "01", null), key("b", "02", null), key("c", "03", null), key("e", "05", null));
+        Pkcs11ObjectPage page = index.page(0, after, query(null, null, null, null, cursor, 2)).getData();
+
+        assertEquals(List.of("b", "c"), page.getItems().stream().map(Pkcs11ObjectInfo::getLabel).toList());
+    }
+}